@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common;
+
+import io.esastack.codec.common.constant.Constants;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durations and rendering of the moments of a call, which are kept as primitive {@link System#nanoTime()} values on
+ * the {@link RpcResult} itself, {@code 0} when not taken: the first byte and the end of the decoding of the response,
+ * the flush of the request and the deserialization of the response.
+ * <p>
+ * The moments are only rendered to the legacy {@link Constants.TRACE} attachments, as milliseconds since the epoch,
+ * when a caller asks for them by {@link #addTo(RpcResult, Map)}.
+ */
+public final class RequestTiming {
+
+    private static final long BASE_NANOS = System.nanoTime();
+    private static final long BASE_MILLIS = System.currentTimeMillis();
+
+    private RequestTiming() {
+    }
+
+    /**
+     * Milliseconds since the epoch of a moment taken by {@link System#nanoTime()}.
+     */
+    public static long toEpochMillis(long nanos) {
+        return BASE_MILLIS + TimeUnit.NANOSECONDS.toMillis(nanos - BASE_NANOS);
+    }
+
+    /**
+     * Time spent deserializing the response, {@code -1} if not deserialized yet.
+     */
+    public static long deserializeNanos(RpcResult result) {
+        return result.getDeserializeBeginNanos() == 0L || result.getDeserializeEndNanos() == 0L
+                ? -1L : result.getDeserializeEndNanos() - result.getDeserializeBeginNanos();
+    }
+
+    /**
+     * Time from the flush of the request to the first byte of the response, {@code -1} if unknown.
+     */
+    public static long firstByteLatencyNanos(RpcResult result) {
+        return result.getFlushedNanos() == 0L || result.getFirstByteNanos() == 0L
+                ? -1L : result.getFirstByteNanos() - result.getFlushedNanos();
+    }
+
+    /**
+     * Renders the moments taken as the {@link Constants.TRACE} attachments, such as for a trace filter.
+     */
+    public static void addTo(RpcResult result, Map<String, String> attachments) {
+        if (result.getFirstByteNanos() != 0L) {
+            attachments.put(Constants.TRACE.TTFB_KEY, String.valueOf(toEpochMillis(result.getFirstByteNanos())));
+        }
+        if (result.getDecodedNanos() != 0L) {
+            attachments.put(Constants.TRACE.TTFB_COMPLETE_KEY,
+                    String.valueOf(toEpochMillis(result.getDecodedNanos())));
+        }
+        if (result.getFlushedNanos() != 0L) {
+            attachments.put(Constants.TRACE.TIME_OF_REQ_FLUSH_KEY,
+                    String.valueOf(toEpochMillis(result.getFlushedNanos())));
+        }
+        if (result.getDeserializeBeginNanos() != 0L) {
+            attachments.put(Constants.TRACE.TIME_OF_RSP_DESERIALIZE_BEGIN_KEY,
+                    String.valueOf(toEpochMillis(result.getDeserializeBeginNanos())));
+        }
+        final long deserializeNanos = deserializeNanos(result);
+        if (deserializeNanos >= 0L) {
+            attachments.put(Constants.TRACE.TIME_OF_RSP_DESERIALIZE_COST_KEY,
+                    String.valueOf(TimeUnit.NANOSECONDS.toMillis(deserializeNanos)));
+        }
+    }
+}
@@ -26,6 +26,15 @@ public class RpcResult {
     protected Object value;
     protected Throwable exception;
 
+    /**
+     * Moments of the call taken by {@link System#nanoTime()} on the client, 0 when not taken; see {@link RequestTiming}
+     */
+    protected long firstByteNanos;
+    protected long decodedNanos;
+    protected long flushedNanos;
+    protected long deserializeBeginNanos;
+    protected long deserializeEndNanos;
+
     public RpcResult() {
 
     }
@@ -51,6 +60,55 @@ public class RpcResult {
         this.exception = exception;
     }
 
+    /**
+     * Moment the first byte of the response was read.
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    public void setFirstByteNanos(long firstByteNanos) {
+        this.firstByteNanos = firstByteNanos;
+    }
+
+    /**
+     * Moment the response was decoded, once all its bytes were read.
+     */
+    public long getDecodedNanos() {
+        return decodedNanos;
+    }
+
+    public void setDecodedNanos(long decodedNanos) {
+        this.decodedNanos = decodedNanos;
+    }
+
+    /**
+     * Moment the request was written to the network.
+     */
+    public long getFlushedNanos() {
+        return flushedNanos;
+    }
+
+    public void setFlushedNanos(long flushedNanos) {
+        this.flushedNanos = flushedNanos;
+    }
+
+    public long getDeserializeBeginNanos() {
+        return deserializeBeginNanos;
+    }
+
+    public void setDeserializeBeginNanos(long deserializeBeginNanos) {
+        this.deserializeBeginNanos = deserializeBeginNanos;
+    }
+
+    public long getDeserializeEndNanos() {
+        return deserializeEndNanos;
+    }
+
+    public void setDeserializeEndNanos(long deserializeEndNanos) {
+        this.deserializeEndNanos = deserializeEndNanos;
+    }
+
     public Map<String, String> getAttachments() {
         return attachments;
     }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.buffer;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+
+import java.util.List;
+
+/**
+ * Snapshot of the memory usage of a {@link ByteBufAllocator}. The arena numbers are only available for
+ * {@link PooledByteBufAllocator} and are 0 otherwise.
+ */
+public final class AllocatorMetrics {
+
+    private final long usedHeapMemory;
+    private final long usedDirectMemory;
+    private final int numHeapArenas;
+    private final int numDirectArenas;
+    private final int numThreadLocalCaches;
+    private final long numAllocations;
+    private final long numActiveAllocations;
+    private final long numActiveBytes;
+
+    private AllocatorMetrics(final long usedHeapMemory,
+                             final long usedDirectMemory,
+                             final int numHeapArenas,
+                             final int numDirectArenas,
+                             final int numThreadLocalCaches,
+                             final long numAllocations,
+                             final long numActiveAllocations,
+                             final long numActiveBytes) {
+        this.usedHeapMemory = usedHeapMemory;
+        this.usedDirectMemory = usedDirectMemory;
+        this.numHeapArenas = numHeapArenas;
+        this.numDirectArenas = numDirectArenas;
+        this.numThreadLocalCaches = numThreadLocalCaches;
+        this.numAllocations = numAllocations;
+        this.numActiveAllocations = numActiveAllocations;
+        this.numActiveBytes = numActiveBytes;
+    }
+
+    public static AllocatorMetrics of(final ByteBufAllocator allocator) {
+        if (allocator instanceof PooledByteBufAllocator) {
+            final PooledByteBufAllocatorMetric metric = ((PooledByteBufAllocator) allocator).metric();
+            final long[] arenaCounters = new long[3];
+            sumArenas(metric.heapArenas(), arenaCounters);
+            sumArenas(metric.directArenas(), arenaCounters);
+            return new AllocatorMetrics(metric.usedHeapMemory(), metric.usedDirectMemory(),
+                    metric.numHeapArenas(), metric.numDirectArenas(), metric.numThreadLocalCaches(),
+                    arenaCounters[0], arenaCounters[1], arenaCounters[2]);
+        }
+        if (allocator instanceof ByteBufAllocatorMetricProvider) {
+            final ByteBufAllocatorMetric metric = ((ByteBufAllocatorMetricProvider) allocator).metric();
+            return new AllocatorMetrics(metric.usedHeapMemory(), metric.usedDirectMemory(),
+                    0, 0, 0, 0, 0, 0);
+        }
+        return new AllocatorMetrics(-1, -1, 0, 0, 0, 0, 0, 0);
+    }
+
+    private static void sumArenas(final List<PoolArenaMetric> arenas, final long[] counters) {
+        for (PoolArenaMetric arena : arenas) {
+            counters[0] += arena.numAllocations();
+            counters[1] += arena.numActiveAllocations();
+            counters[2] += arena.numActiveBytes();
+        }
+    }
+
+    /**
+     * Heap memory held by the allocator, -1 if unknown.
+     */
+    public long getUsedHeapMemory() {
+        return usedHeapMemory;
+    }
+
+    /**
+     * Direct memory held by the allocator, -1 if unknown.
+     */
+    public long getUsedDirectMemory() {
+        return usedDirectMemory;
+    }
+
+    public int getNumHeapArenas() {
+        return numHeapArenas;
+    }
+
+    public int getNumDirectArenas() {
+        return numDirectArenas;
+    }
+
+    public int getNumThreadLocalCaches() {
+        return numThreadLocalCaches;
+    }
+
+    /**
+     * Allocations served by the arenas, allocations served by the thread local caches are not included.
+     */
+    public long getNumAllocations() {
+        return numAllocations;
+    }
+
+    public long getNumActiveAllocations() {
+        return numActiveAllocations;
+    }
+
+    public long getNumActiveBytes() {
+        return numActiveBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "AllocatorMetrics{" +
+                "usedHeapMemory=" + usedHeapMemory +
+                ", usedDirectMemory=" + usedDirectMemory +
+                ", numHeapArenas=" + numHeapArenas +
+                ", numDirectArenas=" + numDirectArenas +
+                ", numThreadLocalCaches=" + numThreadLocalCaches +
+                ", numAllocations=" + numAllocations +
+                ", numActiveAllocations=" + numActiveAllocations +
+                ", numActiveBytes=" + numActiveBytes +
+                '}';
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.buffer;
+
+import esa.commons.StringUtils;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * ByteBuf分配策略
+ * <p>
+ * The process wide default is {@link #POOLED_DIRECT} and can be changed by the system property
+ * {@code -Dcodec.allocator.type=pooled_direct|pooled_heap|thread_local_cached|unpooled}. It is used by the codec
+ * helpers when no allocator is given and by every client and server which does not configure its own strategy.
+ */
+public enum AllocatorType {
+
+    /**
+     * Netty's shared {@link PooledByteBufAllocator#DEFAULT}, which prefers direct buffers.
+     */
+    POOLED_DIRECT {
+        @Override
+        ByteBufAllocator newAllocator() {
+            return PooledByteBufAllocator.DEFAULT;
+        }
+    },
+
+    /**
+     * Pooled heap buffers, for environments where direct memory is tightly limited.
+     */
+    POOLED_HEAP {
+        @Override
+        ByteBufAllocator newAllocator() {
+            return new PooledByteBufAllocator(false);
+        }
+    },
+
+    /**
+     * Pooled direct buffers with larger per thread caches which are also enabled for threads that are not netty
+     * threads, so that serialization on business threads is served from the thread cache instead of the arenas.
+     */
+    THREAD_LOCAL_CACHED {
+        @Override
+        ByteBufAllocator newAllocator() {
+            return new PooledByteBufAllocator(true,
+                    PooledByteBufAllocator.defaultNumHeapArena(),
+                    PooledByteBufAllocator.defaultNumDirectArena(),
+                    PooledByteBufAllocator.defaultPageSize(),
+                    PooledByteBufAllocator.defaultMaxOrder(),
+                    PooledByteBufAllocator.defaultSmallCacheSize() * THREAD_CACHE_FACTOR,
+                    PooledByteBufAllocator.defaultNormalCacheSize() * THREAD_CACHE_FACTOR,
+                    true);
+        }
+    },
+
+    /**
+     * {@link UnpooledByteBufAllocator#DEFAULT}, the behaviour of the former versions.
+     */
+    UNPOOLED {
+        @Override
+        ByteBufAllocator newAllocator() {
+            return UnpooledByteBufAllocator.DEFAULT;
+        }
+    };
+
+    private static final int THREAD_CACHE_FACTOR = 4;
+
+    private static final AllocatorType DEFAULT_TYPE = parse(System.getProperty("codec.allocator.type"));
+
+    private volatile ByteBufAllocator allocator;
+
+    public static AllocatorType defaultType() {
+        return DEFAULT_TYPE;
+    }
+
+    /**
+     * The allocator of this strategy, which is created on first use and shared afterwards.
+     */
+    public ByteBufAllocator allocator() {
+        ByteBufAllocator alloc = allocator;
+        if (alloc == null) {
+            synchronized (this) {
+                alloc = allocator;
+                if (alloc == null) {
+                    alloc = newAllocator();
+                    allocator = alloc;
+                }
+            }
+        }
+        return alloc;
+    }
+
+    public AllocatorMetrics metrics() {
+        return AllocatorMetrics.of(allocator());
+    }
+
+    abstract ByteBufAllocator newAllocator();
+
+    static AllocatorType parse(final String type) {
+        if (StringUtils.isEmpty(type)) {
+            return POOLED_DIRECT;
+        }
+        try {
+            return valueOf(type.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown allocator type: " + type, e);
+        }
+    }
+}
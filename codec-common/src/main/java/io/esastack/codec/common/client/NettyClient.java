@@ -18,11 +18,14 @@ package io.esastack.codec.common.client;
 import esa.commons.StringUtils;
 import esa.commons.concurrent.ThreadFactories;
 import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.buffer.AllocatorMetrics;
+import io.esastack.codec.common.connection.ClientTransport;
 import io.esastack.codec.common.connection.ConnectionInitializer;
 import io.esastack.codec.common.connection.NettyConnection;
 import io.esastack.codec.common.connection.NettyConnectionConfig;
 import io.esastack.codec.common.connection.NettyConnectionConfig.MultiplexPoolBuilder;
 import io.esastack.codec.common.connection.PooledNettyConnectionFactory;
+import io.esastack.codec.common.connection.WriteQueueStats;
 import io.esastack.codec.common.exception.ConnectFailedException;
 import io.esastack.codec.commons.pool.DefaultMultiplexPool;
 import io.esastack.codec.commons.pool.MultiplexPool;
@@ -41,22 +44,43 @@ public abstract class NettyClient {
 
     protected final NettyConnectionConfig connectionConfig;
     protected final MultiplexPool<NettyConnection> connectionPool;
+    private final WriteQueueStats writeQueueStats = new WriteQueueStats();
+    private final ClientTransport transport;
 
     public NettyClient(final NettyConnectionConfig connectionConfig) {
         this.connectionConfig = connectionConfig;
+        if (connectionConfig.getTransport() != null) {
+            this.transport = connectionConfig.getTransport();
+        } else if (connectionConfig.getIoThreads() > 0) {
+            this.transport = ClientTransport.newTransport(connectionConfig.getIoThreads(),
+                    "NettyClient-" + connectionConfig.getAddress());
+        } else {
+            this.transport = ClientTransport.shared();
+        }
         this.connectionConfig.setConnectionInitializer(createConnectionInitializer(connectionConfig));
         final MultiplexPoolBuilder multiplexPoolBuilder = connectionConfig.getMultiplexPoolBuilder();
         //构建异步连接池
         this.connectionPool = new DefaultMultiplexPool.Builder<NettyConnection>()
                 .maxPoolSize(multiplexPoolBuilder.getMaxPoolSize())
                 .blockCreateWhenInit(multiplexPoolBuilder.isBlockCreateWhenInit())
-                .waitCreateWhenLastTryAcquire(multiplexPoolBuilder.isWaitCreateWhenLastTryAcquire())
+                .waitCreateWhenLastTryAcquire(multiplexPoolBuilder.isWaitCreateWhenLastTryAcquire()
+                        && !multiplexPoolBuilder.isEventLoopAffinity())
                 .maxRetryTimes(multiplexPoolBuilder.getMaxRetryTimes())
-                .factory(new PooledNettyConnectionFactory(connectionConfig))
+                .selectionStrategy(multiplexPoolBuilder.isEventLoopAffinity()
+                        ? MultiplexPoolBuilder.eventLoopAffinity(multiplexPoolBuilder.getSelectionStrategy())
+                        : multiplexPoolBuilder.getSelectionStrategy())
+                .factory(new PooledNettyConnectionFactory(connectionConfig, writeQueueStats, transport))
                 .init(multiplexPoolBuilder.isInit())
                 .build();
     }
 
+    /**
+     * Schedules the task on a timer shared by all the clients, with a tick of 30 ms.
+     *
+     * @deprecated use {@link NettyConnection#addInFlight(long, ResponseCallback, long)}, which expires the request
+     * on the event loop of the connection
+     */
+    @Deprecated
     protected static void addTimeoutTask(TimerTask task, long delayMillis) {
         TIME_OUT_TIMER.newTimeout(task, delayMillis, TimeUnit.MILLISECONDS);
     }
@@ -71,13 +95,16 @@ public abstract class NettyClient {
 
         //通知网络写入事件
         if (channelFuture.isSuccess()) {
+            connection.getInFlightRequests().markWritten(requestId);
             callback.onWriteToNetwork(true, null);
             return;
         }
 
-        //发送失败
+        //发送失败, 超时或连接断开时已回调
+        if (connection.getInFlightRequests().remove(requestId) == null) {
+            return;
+        }
         final String errMsg = StringUtils.concat("write request to ", connection.getName(), " error.");
-        connection.getCallbackMap().remove(requestId);
         try {
             callback.onWriteToNetwork(false, channelFuture.cause().toString());
         } finally {
@@ -91,8 +118,39 @@ public abstract class NettyClient {
         return connectionPool.canAcquire();
     }
 
+    /**
+     * Memory usage of the allocator used by the connections of this client, which may be shared with other clients
+     * using the same {@link io.esastack.codec.common.buffer.AllocatorType}.
+     */
+    public AllocatorMetrics getAllocatorMetrics() {
+        return connectionConfig.getAllocatorType().metrics();
+    }
+
+    /**
+     * Requests parked by the connections of this client while their write buffer is full.
+     *
+     * @see NettyConnectionConfig#setWriteQueueSize(int)
+     */
+    public WriteQueueStats getWriteQueueStats() {
+        return writeQueueStats;
+    }
+
+    /**
+     * Event loops of the connections of this client.
+     *
+     * @see NettyConnectionConfig#setTransport(ClientTransport)
+     * @see NettyConnectionConfig#setIoThreads(int)
+     */
+    public ClientTransport getTransport() {
+        return transport;
+    }
+
     public void close() {
         this.connectionPool.closeAll();
+        if (connectionConfig.getTransport() == null) {
+            // only the event loops created for this client
+            transport.close();
+        }
     }
 
 
@@ -16,6 +16,7 @@
 package io.esastack.codec.common.client;
 
 import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.connection.InFlightRequests;
 import io.esastack.codec.common.exception.ConnectFailedException;
 import io.esastack.codec.common.exception.RequestTimeoutException;
 import io.esastack.codec.common.exception.ResponseTimeoutException;
@@ -31,20 +32,29 @@ import java.util.Map;
 public class ReadTimeoutListener implements TimerTask {
     private final long requestId;
     private final long requestTimeout;
-    private final Map<Long, ResponseCallback> callbackMap;
+    private final InFlightRequests inFlightRequests;
     private final ChannelFuture channelFuture;
 
+    /**
+     * @deprecated use {@link #ReadTimeoutListener(long, long, InFlightRequests, ChannelFuture)}
+     */
+    @Deprecated
     public ReadTimeoutListener(long requestTimeout, long requestId,
                                Map<Long, ResponseCallback> callbackMap, ChannelFuture channelFuture) {
+        this(requestTimeout, requestId, InFlightRequests.of(callbackMap), channelFuture);
+    }
+
+    public ReadTimeoutListener(long requestTimeout, long requestId,
+                               InFlightRequests inFlightRequests, ChannelFuture channelFuture) {
         this.requestTimeout = requestTimeout;
         this.requestId = requestId;
-        this.callbackMap = callbackMap;
+        this.inFlightRequests = inFlightRequests;
         this.channelFuture = channelFuture;
     }
 
     @Override
     public void run(Timeout timeout) {
-        final ResponseCallback callback = callbackMap.remove(requestId);
+        final ResponseCallback callback = inFlightRequests.remove(requestId);
         if (callback != null) {
             if (channelFuture.isDone()) {
                 if (channelFuture.isSuccess()) {
@@ -0,0 +1,139 @@
+package io.esastack.codec.common.connection;
+
+import esa.commons.concurrent.ThreadFactories;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Event loop group, channel class and timer of the connections of the clients.
+ * <p>
+ * The clients share {@link #shared()} unless configured otherwise by
+ * {@link NettyConnectionConfig#setTransport(ClientTransport)}, or by {@link NettyConnectionConfig#setIoThreads(int)}
+ * for a client with its own event loops. The shared event loops have {@code codec.client.ioThreads} threads, by
+ * default as many as the processors.
+ */
+public final class ClientTransport {
+
+    private static final Timer DEFAULT_TIMER =
+            new HashedWheelTimer(ThreadFactories.namedThreadFactory("DubboConnect-Timer-", true));
+
+    private static volatile ClientTransport shared;
+
+    private final EventLoopGroup eventLoopGroup;
+    private final Class<? extends Channel> channelClass;
+    private final Timer timer;
+    private final boolean owned;
+
+    private ClientTransport(EventLoopGroup eventLoopGroup, Class<? extends Channel> channelClass, Timer timer,
+                            boolean owned) {
+        this.eventLoopGroup = eventLoopGroup;
+        this.channelClass = channelClass;
+        this.timer = timer;
+        this.owned = owned;
+    }
+
+    /**
+     * The transport shared by the clients by default, created on first use and never closed.
+     */
+    public static ClientTransport shared() {
+        ClientTransport transport = shared;
+        if (transport == null) {
+            synchronized (ClientTransport.class) {
+                transport = shared;
+                if (transport == null) {
+                    transport = create(defaultIoThreads(), "NettyClient", false);
+                    shared = transport;
+                }
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Creates event loops of {@code ioThreads} threads, epoll ones if available, which are shut down by
+     * {@link #close()}.
+     */
+    public static ClientTransport newTransport(int ioThreads, String name) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("ioThreads must be positive: " + ioThreads);
+        }
+        return create(ioThreads, name, true);
+    }
+
+    private static ClientTransport create(int ioThreads, String name, boolean owned) {
+        if (Epoll.isAvailable()) {
+            final EventLoopGroup group = new EpollEventLoopGroup(ioThreads,
+                    new DefaultThreadFactory(name + "-Epoll-I/O", true));
+            return new ClientTransport(group, EpollSocketChannel.class, DEFAULT_TIMER, owned);
+        }
+        final EventLoopGroup group = new NioEventLoopGroup(ioThreads,
+                new DefaultThreadFactory(name + "-Nio-I/O", true));
+        return new ClientTransport(group, NioSocketChannel.class, DEFAULT_TIMER, owned);
+    }
+
+    /**
+     * Uses the given event loops, such as the ones of the application, which are not shut down by {@link #close()}.
+     *
+     * @param channelClass class of the channels, which must fit the event loops; {@code null} for the epoll or NIO
+     *                     socket channel according to the event loops
+     * @param timer        timer of the connect timeouts; {@code null} for a shared one
+     */
+    public static ClientTransport of(EventLoopGroup eventLoopGroup, Class<? extends Channel> channelClass,
+                                     Timer timer) {
+        if (eventLoopGroup == null) {
+            throw new IllegalArgumentException("eventLoopGroup cannot be null");
+        }
+        if (channelClass == null) {
+            channelClass = eventLoopGroup instanceof EpollEventLoopGroup
+                    ? EpollSocketChannel.class : NioSocketChannel.class;
+        }
+        return new ClientTransport(eventLoopGroup, channelClass, timer == null ? DEFAULT_TIMER : timer, false);
+    }
+
+    static int defaultIoThreads() {
+        final int threads = Integer.getInteger("codec.client.ioThreads", 0);
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public EventLoopGroup getEventLoopGroup() {
+        return eventLoopGroup;
+    }
+
+    public Class<? extends Channel> getChannelClass() {
+        return channelClass;
+    }
+
+    /**
+     * Class of the unix domain socket channels, only available with epoll.
+     */
+    public Class<? extends Channel> getDomainSocketChannelClass() {
+        return eventLoopGroup instanceof EpollEventLoopGroup ? EpollDomainSocketChannel.class : null;
+    }
+
+    public Timer getTimer() {
+        return timer;
+    }
+
+    /**
+     * Whether the event loops have been created by {@link #newTransport(int, String)}, and so are shut down by
+     * {@link #close()}.
+     */
+    public boolean isOwned() {
+        return owned;
+    }
+
+    public void close() {
+        if (owned) {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+}
@@ -7,5 +7,15 @@ import java.util.Map;
 
 public interface ConnectionInitializer {
 
-    void initialize(final Channel channel, final String connectionName, final Map<Long, ResponseCallback> callbackMap);
+    void initialize(final Channel channel, final String connectionName, final InFlightRequests inFlightRequests);
+
+    /**
+     * @deprecated use {@link #initialize(Channel, String, InFlightRequests)}
+     */
+    @Deprecated
+    default void initialize(final Channel channel,
+                            final String connectionName,
+                            final Map<Long, ResponseCallback> callbackMap) {
+        initialize(channel, connectionName, InFlightRequests.of(callbackMap));
+    }
 }
@@ -0,0 +1,78 @@
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.ResponseCallback;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Callbacks of the requests which have been sent by a connection and are waiting for their responses, keyed by the
+ * request id.
+ * <p>
+ * The callback of a request must be put before the request is written, so that {@link #remove(long)} of the response,
+ * the timeout and the write failure never race with the {@link #put(long, ResponseCallback)} of the same id.
+ */
+public interface InFlightRequests {
+
+    /**
+     * Deadline of the requests which are not expired by {@link #expire(long, ExpiredHandler)}.
+     */
+    long NO_DEADLINE = Long.MAX_VALUE;
+
+    void put(long requestId, ResponseCallback callback);
+
+    /**
+     * Puts the callback of a request which expires after the timeout.
+     *
+     * @return the deadline of the request in {@link System#nanoTime()}
+     */
+    long put(long requestId, ResponseCallback callback, long timeoutMillis);
+
+    ResponseCallback get(long requestId);
+
+    /**
+     * Removes the callback of the request, only one of the concurrent removers of the same id gets it.
+     *
+     * @return the callback, or {@code null} if it has been removed already
+     */
+    ResponseCallback remove(long requestId);
+
+    /**
+     * Marks the request as written to the network, so that its expiry is reported as a response timeout rather than
+     * a sending timeout.
+     */
+    void markWritten(long requestId);
+
+    /**
+     * Removes the requests whose deadline is not after {@code nowNanos} and passes each of them to the handler.
+     *
+     * @return the earliest deadline of the remaining requests, or {@link #NO_DEADLINE}
+     */
+    long expire(long nowNanos, ExpiredHandler handler);
+
+    /**
+     * Removes all the in-flight callbacks and passes each of them to the action, used to fail the pending requests
+     * when the connection is broken.
+     */
+    void drain(Consumer<ResponseCallback> action);
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Table over a callback map, for the deprecated APIs which still take a {@code Map<Long, ResponseCallback>}; its
+     * requests never expire.
+     */
+    static InFlightRequests of(Map<Long, ResponseCallback> callbackMap) {
+        return new MapInFlightRequests(callbackMap);
+    }
+
+    @FunctionalInterface
+    interface ExpiredHandler {
+
+        void onExpired(ResponseCallback callback, long timeoutMillis, boolean written);
+    }
+}
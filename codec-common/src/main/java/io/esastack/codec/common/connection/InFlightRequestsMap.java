@@ -0,0 +1,64 @@
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.ResponseCallback;
+
+import java.util.AbstractMap;
+import java.util.Set;
+
+/**
+ * Map view of {@link InFlightRequests}, behind the deprecated {@link NettyConnection#getCallbackMap()}.
+ * <p>
+ * The table cannot be iterated without removing its callbacks, so the view only supports the operations by request
+ * id and the size: {@link #entrySet()}, and so iterating, comparing or printing the view, is not supported.
+ */
+final class InFlightRequestsMap extends AbstractMap<Long, ResponseCallback> {
+
+    private final InFlightRequests inFlightRequests;
+
+    InFlightRequestsMap(InFlightRequests inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    @Override
+    public ResponseCallback get(Object key) {
+        return key instanceof Long ? inFlightRequests.get((Long) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public ResponseCallback put(Long key, ResponseCallback value) {
+        final ResponseCallback previous = inFlightRequests.remove(key);
+        inFlightRequests.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public ResponseCallback remove(Object key) {
+        return key instanceof Long ? inFlightRequests.remove((Long) key) : null;
+    }
+
+    @Override
+    public void clear() {
+        inFlightRequests.drain(callback -> {
+        });
+    }
+
+    @Override
+    public int size() {
+        return inFlightRequests.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return inFlightRequests.isEmpty();
+    }
+
+    @Override
+    public Set<Entry<Long, ResponseCallback>> entrySet() {
+        throw new UnsupportedOperationException("The in-flight requests cannot be iterated");
+    }
+}
@@ -0,0 +1,70 @@
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.ResponseCallback;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * {@link InFlightRequests} over a callback map, behind the deprecated constructors which still take a
+ * {@code Map<Long, ResponseCallback>}.
+ * <p>
+ * The requests never expire: the callers of the map APIs time them out by themselves, such as by a
+ * {@link io.esastack.codec.common.client.ReadTimeoutListener}.
+ */
+final class MapInFlightRequests implements InFlightRequests {
+
+    private final Map<Long, ResponseCallback> callbackMap;
+
+    MapInFlightRequests(Map<Long, ResponseCallback> callbackMap) {
+        if (callbackMap == null) {
+            throw new IllegalArgumentException("callbackMap cannot be null");
+        }
+        this.callbackMap = callbackMap;
+    }
+
+    @Override
+    public void put(long requestId, ResponseCallback callback) {
+        callbackMap.put(requestId, callback);
+    }
+
+    @Override
+    public long put(long requestId, ResponseCallback callback, long timeoutMillis) {
+        callbackMap.put(requestId, callback);
+        return NO_DEADLINE;
+    }
+
+    @Override
+    public ResponseCallback get(long requestId) {
+        return callbackMap.get(requestId);
+    }
+
+    @Override
+    public ResponseCallback remove(long requestId) {
+        return callbackMap.remove(requestId);
+    }
+
+    @Override
+    public void markWritten(long requestId) {
+    }
+
+    @Override
+    public long expire(long nowNanos, ExpiredHandler handler) {
+        return NO_DEADLINE;
+    }
+
+    @Override
+    public void drain(Consumer<ResponseCallback> action) {
+        for (Long requestId : callbackMap.keySet()) {
+            final ResponseCallback callback = callbackMap.remove(requestId);
+            if (callback != null) {
+                action.accept(callback);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return callbackMap.size();
+    }
+}
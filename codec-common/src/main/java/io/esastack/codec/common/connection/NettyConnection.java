@@ -1,7 +1,6 @@
 package io.esastack.codec.common.connection;
 
 import esa.commons.StringUtils;
-import esa.commons.concurrent.ThreadFactories;
 import esa.commons.logging.Logger;
 import esa.commons.logging.LoggerFactory;
 import io.esastack.codec.common.ResponseCallback;
@@ -12,22 +11,17 @@ import io.esastack.codec.common.ssl.SslUtils;
 import io.esastack.codec.common.utils.NettyUtils;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.epoll.Epoll;
-import io.netty.channel.epoll.EpollDomainSocketChannel;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
-import io.netty.util.HashedWheelTimer;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.Timeout;
-import io.netty.util.Timer;
-import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
 
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,28 +32,18 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class NettyConnection {
 
-    private static final EventLoopGroup GROUP;
     private static final Logger LOGGER = LoggerFactory.getLogger(NettyConnection.class);
     private static final AtomicInteger CONNECT_NUMBER = new AtomicInteger(0);
-    private static final ThreadFactory THREAD_FACTORY =
-            ThreadFactories.namedThreadFactory("DubboConnect-Timer-", true);
-    private static final Timer INSTANCE = new HashedWheelTimer(THREAD_FACTORY);
-
-    static {
-        int threads = Math.min(10, Runtime.getRuntime().availableProcessors());
-        if (Epoll.isAvailable()) {
-            GROUP = new EpollEventLoopGroup(threads,
-                    new DefaultThreadFactory("NettyClient-Epoll-I/O", true));
-        } else {
-            GROUP = new NioEventLoopGroup(threads,
-                    new DefaultThreadFactory("NettyClient-Nio-I/O", true));
-        }
-    }
+    private static final int UNWRITABLE_LOAD = Integer.MAX_VALUE / 2;
 
     private final SslContext sslContext;
     private final AtomicLong requestIdAtomic;
     private final NettyConnectionConfig connectionConfig;
-    private final Map<Long, ResponseCallback> callbackMap;
+    private final ClientTransport transport;
+    private final InFlightRequests inFlightRequests;
+    private final RequestTimeouts requestTimeouts;
+    private final AtomicLong pendingOneWayBytes = new AtomicLong();
+    private final ParkedWrites parkedWrites;
     private final CompletableFuture<Boolean> completedFuture;
     private volatile Channel channel;
     private volatile String connectionName;
@@ -71,10 +55,24 @@ public class NettyConnection {
     private volatile Future<Channel> tlsHandshakeFuture;
 
     public NettyConnection(NettyConnectionConfig connectionConfig, SslContext sslContext) {
+        this(connectionConfig, sslContext, new WriteQueueStats());
+    }
+
+    public NettyConnection(NettyConnectionConfig connectionConfig, SslContext sslContext,
+                           WriteQueueStats writeQueueStats) {
+        this(connectionConfig, sslContext, writeQueueStats, connectionConfig.getTransport() == null
+                ? ClientTransport.shared() : connectionConfig.getTransport());
+    }
+
+    public NettyConnection(NettyConnectionConfig connectionConfig, SslContext sslContext,
+                           WriteQueueStats writeQueueStats, ClientTransport transport) {
         this.connectionConfig = connectionConfig;
+        this.transport = transport;
         this.sslContext = sslContext;
-        // capacity suggest to set small number because easy to get oom and low tps
-        this.callbackMap = new ConcurrentHashMap<>(16);
+        this.inFlightRequests = new RingInFlightRequests(connectionConfig.getInFlightSlots());
+        this.requestTimeouts = new RequestTimeouts(inFlightRequests);
+        this.parkedWrites = connectionConfig.getWriteQueueSize() > 0
+                ? new ParkedWrites(connectionConfig.getWriteQueueSize(), writeQueueStats) : null;
         this.requestIdAtomic = new AtomicLong(0);
         this.completedFuture = new CompletableFuture<>();
     }
@@ -105,17 +103,17 @@ public class NettyConnection {
         final Bootstrap bootstrap = newBootStrap();
         final ChannelFuture connectFuture = bootstrap.connect();
         this.channel = connectFuture.channel();
-        this.connectTimeout = INSTANCE.newTimeout(
+        this.connectTimeout = transport.getTimer().newTimeout(
                 to -> handleTimeout(connectFuture), connectionConfig.getConnectTimeout(), TimeUnit.MILLISECONDS);
-        //The listener is executed before the ChannelHandlers, so the attr set by the listener would been seen by
-        //all the handlers.
+        if (completedFuture.isDone()) {
+            //connected, or failed, before the timeout is set
+            connectTimeout.cancel();
+        }
+        //NO active event handling, success should be handled in Last ChannelHandler, which sees the attr set when
+        //the channel is initialized.
         connectFuture.addListener(future -> {
             if (!future.isSuccess()) {
                 handleConnectFailure(future);
-            } else {
-                //NO active event handling, success should be handled in Last ChannelHandler.
-                //Just set the attr, to make it been seen at channel handler.
-                ConnUtil.setConnectionAttr(channel, this);
             }
         });
         return this.completedFuture;
@@ -140,9 +138,9 @@ public class NettyConnection {
         close();
     }
 
-    public void handleConnectFailure(final Future future) {
+    public void handleConnectFailure(final Future<?> future) {
         close();
-        connectTimeout.cancel();
+        cancelConnectTimeout();
         final String errMsg = "Client connect to the " +
                 connectionConfig.getHost() +
                 ":" +
@@ -167,14 +165,14 @@ public class NettyConnection {
              */
             tlsHandshakeFuture.addListener(f -> handleTlsComplete());
         } else {
-            connectTimeout.cancel();
+            cancelConnectTimeout();
             completedFuture.complete(true);
             LOGGER.info("Client connect to the " + connectionConfig.getAddress() + " success.");
         }
     }
 
     void handleTlsComplete() {
-        connectTimeout.cancel();
+        cancelConnectTimeout();
         if (tlsHandshakeFuture.isSuccess()) {
             //save TLS certificate
             SslUtils.extractSslPeerCertificate(channel);
@@ -190,6 +188,13 @@ public class NettyConnection {
         }
     }
 
+    private void cancelConnectTimeout() {
+        final Timeout timeout = this.connectTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
     public boolean isActive() {
         return this.channel != null &&
                 this.channel.isActive() &&
@@ -223,21 +228,37 @@ public class NettyConnection {
         return closeFuture;
     }
 
+    /**
+     * With {@link NettyConnectionConfig.MultiplexPoolBuilder#setEventLoopAffinity(boolean)}, a connection created by
+     * an event loop of the transport is registered on that event loop.
+     */
+    private EventLoopGroup eventLoopGroup() {
+        final EventLoopGroup group = transport.getEventLoopGroup();
+        final NettyConnectionConfig.MultiplexPoolBuilder poolBuilder = connectionConfig.getMultiplexPoolBuilder();
+        if (poolBuilder != null && poolBuilder.isEventLoopAffinity()) {
+            for (EventExecutor executor : group) {
+                if (executor instanceof EventLoop && executor.inEventLoop()) {
+                    return (EventLoop) executor;
+                }
+            }
+        }
+        return group;
+    }
+
     @SuppressWarnings({"rawtypes", "unchecked"})
     private Bootstrap newBootStrap() {
         Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(GROUP);
+        bootstrap.group(eventLoopGroup());
 
-        if (Epoll.isAvailable() && !StringUtils.isEmpty(connectionConfig.getUnixDomainSocketFile())) {
+        if (transport.getDomainSocketChannelClass() != null
+                && !StringUtils.isEmpty(connectionConfig.getUnixDomainSocketFile())) {
             bootstrap.remoteAddress(new DomainSocketAddress(connectionConfig.getUnixDomainSocketFile()));
-            bootstrap.channel(EpollDomainSocketChannel.class);
-        } else if (Epoll.isAvailable()) {
-            bootstrap.remoteAddress(new InetSocketAddress(connectionConfig.getHost(), connectionConfig.getPort()));
-            bootstrap.channel(EpollSocketChannel.class);
+            bootstrap.channel(transport.getDomainSocketChannelClass());
         } else {
             bootstrap.remoteAddress(new InetSocketAddress(connectionConfig.getHost(), connectionConfig.getPort()));
-            bootstrap.channel(NioSocketChannel.class);
+            bootstrap.channel(transport.getChannelClass());
         }
+        bootstrap.option(ChannelOption.ALLOCATOR, connectionConfig.getAllocatorType().allocator());
         for (Map.Entry<ChannelOption, Object> entry : connectionConfig.getChannelOptions().entrySet()) {
             bootstrap.option(entry.getKey(), entry.getValue());
         }
@@ -251,6 +272,9 @@ public class NettyConnection {
 
                 //将连接名称放到channel附加属性中
                 NettyUtils.setChannelAttr(ch, Constants.CHANNEL_ATTR_KEY.CONNECTION_NAME, connectionName);
+                //连接建立前设置, 连接可能在connect()返回前就已建立, 由connect的listener设置会晚于channelActive
+                ConnUtil.setConnectionAttr(ch, NettyConnection.this);
+                NettyConnection.this.channel = ch;
                 //添加SSL Handler
                 if (sslContext != null) {
                     SslHandler sslHandler = new SslHandler(sslContext.newEngine(ch.alloc()));
@@ -259,12 +283,20 @@ public class NettyConnection {
                     NettyConnection.this.tlsHandshakeFuture = sslHandler.handshakeFuture();
                     ch.pipeline().addLast(sslHandler);
                 }
+                if (connectionConfig.getFlushConsolidationThreshold() > 0) {
+                    // after the SslHandler, so that the consolidated flushes are encrypted into fewer records
+                    ch.pipeline().addLast(new FlushConsolidationHandler(
+                            connectionConfig.getFlushConsolidationThreshold(), true));
+                }
                 ch.pipeline().addLast(connectionConfig.getChannelHandlers().toArray(new ChannelHandler[0]));
                 if (connectionConfig.getConnectionInitializer() != null) {
-                    connectionConfig.getConnectionInitializer().initialize(ch, connectionName, callbackMap);
+                    connectionConfig.getConnectionInitializer().initialize(ch, connectionName, inFlightRequests);
                 } else {
                     LOGGER.warn("No connectionInitializer configured for " + connectionName);
                 }
+                if (parkedWrites != null) {
+                    ch.pipeline().addLast(parkedWrites);
+                }
                 ch.pipeline().addLast(ConnectionActiveHandler.INSTANCE);
 
                 //打印连接、关闭连接调试信息
@@ -281,18 +313,136 @@ public class NettyConnection {
         return channel.isWritable();
     }
 
+    /**
+     * Load of this connection for the selection in the pool: the outstanding requests, a connection whose write
+     * buffer is full is loaded more than any writable one.
+     */
+    public int load() {
+        final Channel ch = this.channel;
+        final int inFlight = inFlightRequests.size();
+        return ch != null && ch.isWritable() ? inFlight : UNWRITABLE_LOAD + inFlight;
+    }
+
+    /**
+     * Whether the caller runs on the event loop of this connection, so that a write and its response need no thread
+     * hop.
+     */
+    public boolean isInEventLoop() {
+        final Channel ch = this.channel;
+        return ch != null && ch.isRegistered() && ch.eventLoop().inEventLoop();
+    }
+
     public AtomicLong getRequestIdAtomic() {
         return this.requestIdAtomic;
     }
 
+    public InFlightRequests getInFlightRequests() {
+        return this.inFlightRequests;
+    }
+
+    /**
+     * Map view of {@link #getInFlightRequests()}, which only supports the operations by request id and the size.
+     *
+     * @deprecated use {@link #getInFlightRequests()}
+     */
+    @Deprecated
     public Map<Long, ResponseCallback> getCallbackMap() {
-        return this.callbackMap;
+        return new InFlightRequestsMap(inFlightRequests);
+    }
+
+    /**
+     * Tracks the callback of a request before it is written, the callback fails with a timeout on the event loop of
+     * this connection if the response does not arrive in time.
+     */
+    public void addInFlight(long requestId, ResponseCallback callback, long timeoutMillis) {
+        final long deadline = inFlightRequests.put(requestId, callback, timeoutMillis);
+        requestTimeouts.schedule(channel.eventLoop(), deadline);
+    }
+
+    /**
+     * Adds the bytes of a one-way request being written, or subtracts them when the write completes.
+     *
+     * @return whether the pending one-way bytes are within {@link NettyConnectionConfig#getOneWayPendingBytesLimit()}
+     */
+    public boolean addPendingOneWayBytes(long delta) {
+        return pendingOneWayBytes.addAndGet(delta) <= connectionConfig.getOneWayPendingBytesLimit();
+    }
+
+    public long getPendingOneWayBytes() {
+        return pendingOneWayBytes.get();
     }
 
     public ChannelFuture writeAndFlush(Object request) {
         return channel.writeAndFlush(request);
     }
 
+    /**
+     * Writes and flushes the request. If the write queue is enabled and the write buffer is full, the request is
+     * parked until the channel becomes writable again, the listener fails if the queue is full or the timeout expires
+     * first.
+     *
+     * @see NettyConnectionConfig#setWriteQueueSize(int)
+     */
+    public void writeAndFlush(Object request, long timeoutMillis, ChannelFutureListener listener) {
+        if (parkedWrites == null) {
+            channel.writeAndFlush(request).addListener(listener);
+        } else {
+            parkedWrites.writeAndFlush(channel, request, timeoutMillis, listener);
+        }
+    }
+
+    /**
+     * Writes the requests in a single task of the event loop and flushes them once, the requests are parked as by
+     * {@link #writeAndFlush(Object, long, ChannelFutureListener)} while the write buffer is full.
+     *
+     * @param listeners listeners of the requests, at the same indexes
+     */
+    public void writeAndFlush(List<?> requests, long timeoutMillis, List<ChannelFutureListener> listeners) {
+        final EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            writeAndFlush0(requests, timeoutMillis, listeners);
+            return;
+        }
+        try {
+            eventLoop.execute(() -> writeAndFlush0(requests, timeoutMillis, listeners));
+        } catch (RejectedExecutionException e) {
+            for (int i = 0; i < requests.size(); i++) {
+                ReferenceCountUtil.release(requests.get(i));
+                try {
+                    listeners.get(i).operationComplete(channel.newFailedFuture(e));
+                } catch (Exception ex) {
+                    LOGGER.warn("Failed to notify the listener of a request", ex);
+                }
+            }
+        }
+    }
+
+    private void writeAndFlush0(List<?> requests, long timeoutMillis, List<ChannelFutureListener> listeners) {
+        for (int i = 0; i < requests.size(); i++) {
+            if (parkedWrites == null) {
+                channel.write(requests.get(i)).addListener(listeners.get(i));
+            } else {
+                parkedWrites.write(channel, requests.get(i), timeoutMillis, listeners.get(i), false);
+            }
+        }
+        channel.flush();
+    }
+
+    /**
+     * Whether requests can be sent on this connection: the write buffer is not full, or the requests are parked in the
+     * write queue until it is drained.
+     */
+    public boolean isAcceptingWrites() {
+        return parkedWrites != null || channel.isWritable();
+    }
+
+    /**
+     * Requests parked until the write buffer is drained, 0 if the write queue is disabled.
+     */
+    public int getParkedWrites() {
+        return parkedWrites == null ? 0 : parkedWrites.size();
+    }
+
     public String getName() {
         return this.connectionName;
     }
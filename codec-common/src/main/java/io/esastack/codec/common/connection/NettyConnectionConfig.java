@@ -15,9 +15,12 @@
  */
 package io.esastack.codec.common.connection;
 
+import io.esastack.codec.common.buffer.AllocatorType;
 import io.esastack.codec.common.ssl.SslContextBuilder;
+import io.esastack.codec.commons.pool.SelectionStrategy;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelOption;
+import io.netty.util.concurrent.FastThreadLocalThread;
 
 import java.util.Collections;
 import java.util.List;
@@ -45,6 +48,13 @@ public class NettyConnectionConfig {
     private boolean useNativeTransports = false;
     private int heartbeatTimeoutSeconds = 60;
     private int defaultRequestTimeout = 1000;
+    private AllocatorType allocatorType = AllocatorType.defaultType();
+    private int inFlightSlots = RingInFlightRequests.DEFAULT_SLOTS;
+    private int flushConsolidationThreshold;
+    private int oneWayPendingBytesLimit = 32 * 1024;
+    private int writeQueueSize;
+    private ClientTransport transport;
+    private int ioThreads;
 
     public int getWriteBufferHighWaterMark() {
         return writeBufferHighWaterMark;
@@ -131,6 +141,104 @@ public class NettyConnectionConfig {
         return this;
     }
 
+    public AllocatorType getAllocatorType() {
+        return allocatorType;
+    }
+
+    /**
+     * ByteBuf allocator of the connections, an {@link ChannelOption#ALLOCATOR} in the channel options wins.
+     */
+    public NettyConnectionConfig setAllocatorType(AllocatorType allocatorType) {
+        this.allocatorType = allocatorType;
+        return this;
+    }
+
+    public int getInFlightSlots() {
+        return inFlightSlots;
+    }
+
+    /**
+     * Slots of the in-flight request table of each connection, rounded up to a power of two. Requests beyond the
+     * slots are still accepted and kept in an overflow map.
+     */
+    public NettyConnectionConfig setInFlightSlots(int inFlightSlots) {
+        this.inFlightSlots = inFlightSlots;
+        return this;
+    }
+
+    public int getFlushConsolidationThreshold() {
+        return flushConsolidationThreshold;
+    }
+
+    /**
+     * Consolidates the flushes of the connections: the flushes issued in the same event loop tick, or while
+     * reading, are merged into one, and a flush is forced after the given number of consolidated flushes. 0 disables
+     * it.
+     * <p>
+     * The messages waiting for the flush count against the write buffer high water mark, keep the threshold times
+     * the message size below it.
+     */
+    public NettyConnectionConfig setFlushConsolidationThreshold(int flushConsolidationThreshold) {
+        this.flushConsolidationThreshold = flushConsolidationThreshold;
+        return this;
+    }
+
+    public int getOneWayPendingBytesLimit() {
+        return oneWayPendingBytesLimit;
+    }
+
+    /**
+     * Budget of the one-way bytes a connection may have written but not yet flushed to the network. Within the budget
+     * a fire-and-forget request completes as soon as it is handed to the connection, beyond it the request completes
+     * when its write completes, so the producers waiting for the completion are slowed down. Keep it below the write
+     * buffer high water mark, the requests on a connection whose write buffer is full are rejected.
+     */
+    public NettyConnectionConfig setOneWayPendingBytesLimit(int oneWayPendingBytesLimit) {
+        this.oneWayPendingBytesLimit = oneWayPendingBytesLimit;
+        return this;
+    }
+
+    public int getWriteQueueSize() {
+        return writeQueueSize;
+    }
+
+    /**
+     * Requests each connection parks while its write buffer is full, they are written when the channel becomes
+     * writable again and fail with a sending timeout if their deadline expires first. The requests beyond the queue
+     * fail right away. 0 disables the queue, then every request on a connection with a full write buffer fails right
+     * away.
+     */
+    public NettyConnectionConfig setWriteQueueSize(int writeQueueSize) {
+        this.writeQueueSize = writeQueueSize;
+        return this;
+    }
+
+    public ClientTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Event loops, channel class and timer of the connections, {@code null} for {@link ClientTransport#shared()}
+     * unless {@link #setIoThreads(int)} is set. A transport given here is not closed by the client.
+     */
+    public NettyConnectionConfig setTransport(ClientTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Threads of the event loops the client creates for its own connections, isolated from the other clients, and
+     * shut down when the client is closed. 0 uses the {@link #getTransport()}, which takes precedence.
+     */
+    public NettyConnectionConfig setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
     public Map<ChannelOption, Object> getChannelOptions() {
         return channelOptions;
     }
@@ -185,6 +293,37 @@ public class NettyConnectionConfig {
         return this;
     }
 
+    /**
+     * Copies this config, such as for a client of another host, since a client sets its
+     * {@link #getConnectionInitializer()}. The handlers, options and builders are shared by the copies.
+     */
+    public NettyConnectionConfig copy() {
+        final NettyConnectionConfig copy = new NettyConnectionConfig();
+        copy.host = host;
+        copy.port = port;
+        copy.tlsFallback2Normal = tlsFallback2Normal;
+        copy.sslContextBuilder = sslContextBuilder;
+        copy.multiplexPoolBuilder = multiplexPoolBuilder;
+        copy.connectionInitializer = connectionInitializer;
+        copy.channelHandlers = channelHandlers;
+        copy.channelOptions = channelOptions;
+        copy.connectTimeout = connectTimeout;
+        copy.payload = payload;
+        copy.unixDomainSocketFile = unixDomainSocketFile;
+        copy.writeBufferHighWaterMark = writeBufferHighWaterMark;
+        copy.useNativeTransports = useNativeTransports;
+        copy.heartbeatTimeoutSeconds = heartbeatTimeoutSeconds;
+        copy.defaultRequestTimeout = defaultRequestTimeout;
+        copy.allocatorType = allocatorType;
+        copy.inFlightSlots = inFlightSlots;
+        copy.flushConsolidationThreshold = flushConsolidationThreshold;
+        copy.oneWayPendingBytesLimit = oneWayPendingBytesLimit;
+        copy.writeQueueSize = writeQueueSize;
+        copy.transport = transport;
+        copy.ioThreads = ioThreads;
+        return copy;
+    }
+
     public static final class MultiplexPoolBuilder {
 
         private static final int MAX_TIMES = 5;
@@ -199,6 +338,10 @@ public class NettyConnectionConfig {
 
         private boolean waitCreateWhenLastTryAcquire = true;
 
+        private SelectionStrategy<NettyConnection> selectionStrategy = SelectionStrategy.random();
+
+        private boolean eventLoopAffinity;
+
         private MultiplexPoolBuilder() {
         }
 
@@ -251,5 +394,55 @@ public class NettyConnectionConfig {
             return this;
         }
 
+        public SelectionStrategy<NettyConnection> getSelectionStrategy() {
+            return selectionStrategy;
+        }
+
+        /**
+         * How a connection is chosen from the pool, random by default. {@link #leastInFlight()} prefers the
+         * connection with fewer outstanding requests and a writable channel.
+         */
+        public MultiplexPoolBuilder setSelectionStrategy(SelectionStrategy<NettyConnection> selectionStrategy) {
+            this.selectionStrategy = selectionStrategy;
+            return this;
+        }
+
+        public boolean isEventLoopAffinity() {
+            return eventLoopAffinity;
+        }
+
+        /**
+         * When the caller runs on an event loop of the {@link ClientTransport}, prefer a connection registered on
+         * that event loop, and register the connections created by the caller on it, so that the write and the
+         * response need no thread hop. Otherwise the {@link #getSelectionStrategy()} chooses. Use the event loops of
+         * the calling server by {@link NettyConnectionConfig#setTransport(ClientTransport)}, and a pool of a multiple
+         * of the event loops with {@link #setInit(boolean)}, whose connections are spread over the event loops.
+         * <p>
+         * The event loop cannot wait for a connection created on itself, so the pool does not wait for the connection
+         * being created whatever {@link #isWaitCreateWhenLastTryAcquire()}.
+         */
+        public MultiplexPoolBuilder setEventLoopAffinity(boolean eventLoopAffinity) {
+            this.eventLoopAffinity = eventLoopAffinity;
+            return this;
+        }
+
+        /**
+         * {@link SelectionStrategy#affinity} over {@link NettyConnection#isInEventLoop()} for the callers running on
+         * an event loop, the {@code fallback} for the others.
+         */
+        public static SelectionStrategy<NettyConnection> eventLoopAffinity(
+                final SelectionStrategy<NettyConnection> fallback) {
+            final SelectionStrategy<NettyConnection> affinity =
+                    SelectionStrategy.affinity(NettyConnection::isInEventLoop, fallback);
+            return slots -> Thread.currentThread() instanceof FastThreadLocalThread
+                    ? affinity.select(slots) : fallback.select(slots);
+        }
+
+        /**
+         * Power of two choices over {@link NettyConnection#load()}.
+         */
+        public static SelectionStrategy<NettyConnection> leastInFlight() {
+            return SelectionStrategy.powerOfTwoChoices(NettyConnection::load);
+        }
     }
 }
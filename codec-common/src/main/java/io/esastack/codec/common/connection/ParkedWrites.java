@@ -0,0 +1,140 @@
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.exception.ConnectFailedException;
+import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue of the requests of a connection whose write buffer is full, the requests are written when the channel
+ * becomes writable again.
+ * <p>
+ * A parked request expires with the timeout of the request: a request tracked by the {@link InFlightRequests} fails
+ * with a sending timeout at its deadline, the queue drops it when it is drained. The queue is filled by any thread and
+ * drained on the event loop.
+ */
+final class ParkedWrites extends ChannelInboundHandlerAdapter {
+
+    private final int capacity;
+    private final WriteQueueStats stats;
+    private final Queue<Parked> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    ParkedWrites(int capacity, WriteQueueStats stats) {
+        this.capacity = capacity;
+        this.stats = stats;
+    }
+
+    /**
+     * Writes and flushes the request, or parks it for at most {@code timeoutMillis} while the channel is not writable.
+     * The listener fails if the queue is full or the request expires.
+     */
+    void writeAndFlush(final Channel channel, final Object request, final long timeoutMillis,
+                       final ChannelFutureListener listener) {
+        write(channel, request, timeoutMillis, listener, true);
+    }
+
+    /**
+     * Same as {@link #writeAndFlush(Channel, Object, long, ChannelFutureListener)}, but leaves the flush of a request
+     * written right away to the caller when {@code flush} is {@code false}.
+     */
+    void write(final Channel channel, final Object request, final long timeoutMillis,
+               final ChannelFutureListener listener, final boolean flush) {
+        if (channel.isWritable() && queue.isEmpty()) {
+            if (flush) {
+                channel.writeAndFlush(request).addListener(listener);
+            } else {
+                channel.write(request).addListener(listener);
+            }
+            return;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            stats.onRejected();
+            fail(channel, request, listener,
+                    new ConnectFailedException("Got connection which has a full write buffer and write queue"));
+            return;
+        }
+        queue.offer(new Parked(request, listener, System.nanoTime(), timeoutMillis));
+        stats.onParked();
+        // the channel may have become writable, or been closed, before the request was parked
+        if (channel.isWritable() || !channel.isActive()) {
+            channel.eventLoop().execute(() -> drain(channel));
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        drain(ctx.channel());
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        drain(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
+    void drain(final Channel channel) {
+        final boolean active = channel.isActive();
+        final long now = System.nanoTime();
+        boolean written = false;
+        Parked parked;
+        while ((!active || channel.isWritable()) && (parked = queue.poll()) != null) {
+            size.decrementAndGet();
+            if (!active) {
+                fail(channel, parked.request, parked.listener, new ClosedChannelException());
+            } else if (now - parked.deadline >= 0L) {
+                stats.onExpired();
+                fail(channel, parked.request, parked.listener,
+                        new RequestTimeoutException("Client sends data timeout: " + parked.timeoutMillis + " ms."));
+            } else {
+                stats.onWritten(now - parked.parkedAt);
+                channel.write(parked.request).addListener(parked.listener);
+                written = true;
+            }
+        }
+        if (written) {
+            channel.flush();
+        }
+    }
+
+    private static void fail(final Channel channel, final Object request, final ChannelFutureListener listener,
+                             final Throwable cause) {
+        ReferenceCountUtil.release(request);
+        try {
+            listener.operationComplete(channel.newFailedFuture(cause));
+        } catch (Exception e) {
+            channel.pipeline().fireExceptionCaught(e);
+        }
+    }
+
+    private static final class Parked {
+        private final Object request;
+        private final ChannelFutureListener listener;
+        private final long parkedAt;
+        private final long deadline;
+        private final long timeoutMillis;
+
+        private Parked(Object request, ChannelFutureListener listener, long parkedAt, long timeoutMillis) {
+            this.request = request;
+            this.listener = listener;
+            this.parkedAt = parkedAt;
+            this.deadline = parkedAt + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+}
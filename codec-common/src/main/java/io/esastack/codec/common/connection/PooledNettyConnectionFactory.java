@@ -30,9 +30,23 @@ public class PooledNettyConnectionFactory implements PooledObjectFactory<NettyCo
 
     private final SslContext sslContext;
     private final NettyConnectionConfig connectionConfig;
+    private final WriteQueueStats writeQueueStats;
+    private final ClientTransport transport;
 
     public PooledNettyConnectionFactory(NettyConnectionConfig connectionConfig) {
+        this(connectionConfig, new WriteQueueStats());
+    }
+
+    public PooledNettyConnectionFactory(NettyConnectionConfig connectionConfig, WriteQueueStats writeQueueStats) {
+        this(connectionConfig, writeQueueStats, connectionConfig.getTransport() == null
+                ? ClientTransport.shared() : connectionConfig.getTransport());
+    }
+
+    public PooledNettyConnectionFactory(NettyConnectionConfig connectionConfig, WriteQueueStats writeQueueStats,
+                                        ClientTransport transport) {
         this.connectionConfig = connectionConfig;
+        this.writeQueueStats = writeQueueStats;
+        this.transport = transport;
         this.sslContext = createSslContext(connectionConfig);
     }
 
@@ -51,7 +65,7 @@ public class PooledNettyConnectionFactory implements PooledObjectFactory<NettyCo
         if (throwable instanceof TslHandshakeFailedException) {
             LOGGER.error("TLS handle shake failed, retry connecting to "
                     + connectionConfig.getHost() + ":" + connectionConfig.getPort() + " without tls.", throwable);
-            final NettyConnection ch = new NettyConnection(connectionConfig, null);
+            final NettyConnection ch = new NettyConnection(connectionConfig, null, writeQueueStats, transport);
             ch.connectSync();
             return ch;
         } else if (throwable instanceof ConnectFailedException) {
@@ -65,7 +79,8 @@ public class PooledNettyConnectionFactory implements PooledObjectFactory<NettyCo
 
     @Override
     public CompletableFuture<NettyConnection> create() {
-        final NettyConnection connection = new NettyConnection(this.connectionConfig, this.sslContext);
+        final NettyConnection connection =
+                new NettyConnection(this.connectionConfig, this.sslContext, this.writeQueueStats, this.transport);
         final CompletableFuture<NettyConnection> future = connection.connect().thenApply(aBoolean -> connection);
         if (!connectionConfig.isTlsFallback2Normal()) {
             return future;
@@ -0,0 +1,73 @@
+package io.esastack.codec.common.connection;
+
+import esa.commons.logging.Logger;
+import esa.commons.logging.LoggerFactory;
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.netty.channel.EventLoop;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expires the in-flight requests of a connection on the event loop of the connection.
+ * <p>
+ * Only one sweep is scheduled at a time, at the earliest deadline rounded up to {@link #TICK_NANOS}, so the requests
+ * of the same tick share the sweep and a request whose deadline is after the scheduled sweep costs nothing more than
+ * a read of {@link #nextSweep}. Every sweep schedules the next one at the earliest remaining deadline.
+ */
+final class RequestTimeouts implements InFlightRequests.ExpiredHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestTimeouts.class);
+
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final InFlightRequests inFlightRequests;
+    private final AtomicLong nextSweep = new AtomicLong(InFlightRequests.NO_DEADLINE);
+
+    RequestTimeouts(InFlightRequests inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    void schedule(final EventLoop eventLoop, final long deadline) {
+        if (deadline == InFlightRequests.NO_DEADLINE) {
+            return;
+        }
+        final long sweepAt = deadline - Math.floorMod(deadline, TICK_NANOS) + TICK_NANOS;
+        for (; ; ) {
+            final long current = nextSweep.get();
+            if (current != InFlightRequests.NO_DEADLINE && sweepAt - current >= 0L) {
+                return;
+            }
+            if (nextSweep.compareAndSet(current, sweepAt)) {
+                try {
+                    eventLoop.schedule(() -> sweep(eventLoop),
+                            sweepAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    nextSweep.compareAndSet(sweepAt, InFlightRequests.NO_DEADLINE);
+                    LOGGER.warn("Failed to schedule the request timeout check, the event loop is shut down.", e);
+                }
+                return;
+            }
+        }
+    }
+
+    void sweep(final EventLoop eventLoop) {
+        // reset before the sweep, so that a request put during the sweep either is seen by it or schedules again
+        nextSweep.set(InFlightRequests.NO_DEADLINE);
+        final long next = inFlightRequests.expire(System.nanoTime(), this);
+        schedule(eventLoop, next);
+    }
+
+    @Override
+    public void onExpired(ResponseCallback callback, long timeoutMillis, boolean written) {
+        if (written) {
+            callback.onError(new ResponseTimeoutException("Response timeout: " + timeoutMillis + " ms."));
+        } else {
+            // Client sends data timeout
+            callback.onError(new RequestTimeoutException("Client sends data timeout: " + timeoutMillis + " ms."));
+        }
+    }
+}
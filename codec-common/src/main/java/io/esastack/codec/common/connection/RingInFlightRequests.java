@@ -0,0 +1,240 @@
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.ResponseCallback;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free {@link InFlightRequests} backed by a power-of-two ring of slots indexed by the low bits of the request id.
+ * <p>
+ * The request ids of a connection are sequential, so a slot is free again long before the ids wrap around to it.
+ * A slot is owned by whoever CAS its id: {@link #put(long, ResponseCallback)} claims a free slot and then publishes
+ * the callback, {@link #remove(long)} claims the slot of the id and then frees it. Ids are never reused, so the CAS
+ * on the id has no ABA problem. When the slot is still held by a slow request, the callback falls back to an
+ * overflow map.
+ * <p>
+ * The deadline of a request is kept in its slot, the lowest bit of which tells whether the request has been written,
+ * so removing the callback cancels the timeout as well.
+ */
+public final class RingInFlightRequests implements InFlightRequests {
+
+    public static final int DEFAULT_SLOTS = 1024;
+
+    private static final int MAX_SLOTS = 1 << 20;
+    private static final long FREE = Long.MIN_VALUE;
+    private static final long BUSY = Long.MIN_VALUE + 1;
+    private static final long WRITTEN = 1L;
+
+    private final int mask;
+    private final AtomicLongArray ids;
+    private final AtomicReferenceArray<ResponseCallback> callbacks;
+    private final AtomicLongArray deadlines;
+    /**
+     * Written before the callback is published and read after it, so the volatile callback guards it.
+     */
+    private final int[] timeouts;
+    private final Map<Long, Pending> overflow = new ConcurrentHashMap<>(16);
+    private final AtomicInteger size = new AtomicInteger();
+
+    public RingInFlightRequests() {
+        this(DEFAULT_SLOTS);
+    }
+
+    public RingInFlightRequests(int slots) {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("slots must be positive: " + slots);
+        }
+        final int capacity = slots >= MAX_SLOTS ? MAX_SLOTS : 1 << (32 - Integer.numberOfLeadingZeros(slots - 1));
+        this.mask = capacity - 1;
+        this.ids = new AtomicLongArray(capacity);
+        this.callbacks = new AtomicReferenceArray<>(capacity);
+        this.deadlines = new AtomicLongArray(capacity);
+        this.timeouts = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ids.lazySet(i, FREE);
+        }
+    }
+
+    @Override
+    public void put(long requestId, ResponseCallback callback) {
+        put(requestId, callback, NO_DEADLINE, 0);
+    }
+
+    @Override
+    public long put(long requestId, ResponseCallback callback, long timeoutMillis) {
+        final long deadline = (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) & ~WRITTEN;
+        put(requestId, callback, deadline, (int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+        return deadline;
+    }
+
+    private void put(long requestId, ResponseCallback callback, long deadline, int timeoutMillis) {
+        size.incrementAndGet();
+        final int index = index(requestId);
+        if (ids.compareAndSet(index, FREE, requestId)) {
+            deadlines.lazySet(index, deadline);
+            timeouts[index] = timeoutMillis;
+            callbacks.set(index, callback);
+        } else {
+            overflow.put(requestId, new Pending(callback, deadline, timeoutMillis));
+        }
+    }
+
+    @Override
+    public ResponseCallback get(long requestId) {
+        final int index = index(requestId);
+        if (ids.get(index) == requestId) {
+            final ResponseCallback callback = callbacks.get(index);
+            if (ids.get(index) == requestId) {
+                return callback;
+            }
+            return null;
+        }
+        if (overflow.isEmpty()) {
+            return null;
+        }
+        final Pending pending = overflow.get(requestId);
+        return pending == null ? null : pending.callback;
+    }
+
+    @Override
+    public ResponseCallback remove(long requestId) {
+        final int index = index(requestId);
+        if (ids.get(index) == requestId) {
+            return ids.compareAndSet(index, requestId, BUSY) ? release(index) : null;
+        }
+        if (overflow.isEmpty()) {
+            return null;
+        }
+        final Pending pending = overflow.remove(requestId);
+        if (pending == null) {
+            return null;
+        }
+        size.decrementAndGet();
+        return pending.callback;
+    }
+
+    @Override
+    public void markWritten(long requestId) {
+        final int index = index(requestId);
+        if (ids.get(index) == requestId) {
+            final long deadline = deadlines.get(index);
+            // the CAS fails if the slot has been taken by another request in the meantime
+            if (deadline != NO_DEADLINE && ids.get(index) == requestId) {
+                deadlines.compareAndSet(index, deadline, deadline | WRITTEN);
+            }
+            return;
+        }
+        if (!overflow.isEmpty()) {
+            final Pending pending = overflow.get(requestId);
+            if (pending != null) {
+                pending.written = true;
+            }
+        }
+    }
+
+    @Override
+    public long expire(long nowNanos, ExpiredHandler handler) {
+        long next = NO_DEADLINE;
+        for (int i = 0; i <= mask; i++) {
+            final long id = ids.get(i);
+            if (id == FREE || id == BUSY || callbacks.get(i) == null) {
+                continue;
+            }
+            final long deadline = deadlines.get(i);
+            if (deadline == NO_DEADLINE) {
+                continue;
+            }
+            if ((deadline & ~WRITTEN) - nowNanos > 0L) {
+                next = earlier(next, deadline & ~WRITTEN);
+                continue;
+            }
+            if (ids.compareAndSet(i, id, BUSY)) {
+                final int timeoutMillis = timeouts[i];
+                handler.onExpired(release(i), timeoutMillis, (deadline & WRITTEN) != 0L);
+            }
+        }
+        if (overflow.isEmpty()) {
+            return next;
+        }
+        for (Map.Entry<Long, Pending> entry : overflow.entrySet()) {
+            final Pending pending = entry.getValue();
+            if (pending.deadline == NO_DEADLINE) {
+                continue;
+            }
+            if (pending.deadline - nowNanos > 0L) {
+                next = earlier(next, pending.deadline);
+            } else if (overflow.remove(entry.getKey(), pending)) {
+                size.decrementAndGet();
+                handler.onExpired(pending.callback, pending.timeoutMillis, pending.written);
+            }
+        }
+        return next;
+    }
+
+    @Override
+    public void drain(Consumer<ResponseCallback> action) {
+        for (int i = 0; i <= mask; i++) {
+            final long id = ids.get(i);
+            if (id == FREE || id == BUSY || callbacks.get(i) == null || !ids.compareAndSet(i, id, BUSY)) {
+                // free, being removed, or the callback of the put is not published yet
+                continue;
+            }
+            action.accept(release(i));
+        }
+        for (Long id : overflow.keySet()) {
+            final Pending pending = overflow.remove(id);
+            if (pending != null) {
+                size.decrementAndGet();
+                action.accept(pending.callback);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    int slots() {
+        return mask + 1;
+    }
+
+    int overflowSize() {
+        return overflow.size();
+    }
+
+    private ResponseCallback release(int index) {
+        final ResponseCallback callback = callbacks.get(index);
+        callbacks.set(index, null);
+        ids.set(index, FREE);
+        size.decrementAndGet();
+        return callback;
+    }
+
+    private int index(long requestId) {
+        return (int) requestId & mask;
+    }
+
+    private static long earlier(long deadline, long other) {
+        return deadline == NO_DEADLINE || other - deadline < 0L ? other : deadline;
+    }
+
+    private static final class Pending {
+        private final ResponseCallback callback;
+        private final long deadline;
+        private final int timeoutMillis;
+        private volatile boolean written;
+
+        private Pending(ResponseCallback callback, long deadline, int timeoutMillis) {
+            this.callback = callback;
+            this.deadline = deadline;
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+}
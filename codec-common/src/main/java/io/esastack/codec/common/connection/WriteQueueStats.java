@@ -0,0 +1,96 @@
+package io.esastack.codec.common.connection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the requests parked by the connections of a client while their write buffer is full, see
+ * {@link NettyConnectionConfig#setWriteQueueSize(int)}.
+ * <p>
+ * A growing {@link #getMaxQueuedNanos()} or a non-zero {@link #getExpired()} tells that the connections cannot keep up
+ * with the requests, rather than a short burst.
+ */
+public final class WriteQueueStats {
+
+    private final LongAdder parked = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queuedNanos = new LongAdder();
+    private final AtomicLong maxQueuedNanos = new AtomicLong();
+
+    void onParked() {
+        parked.increment();
+    }
+
+    void onWritten(long nanos) {
+        written.increment();
+        queuedNanos.add(nanos);
+        maxQueuedNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void onExpired() {
+        expired.increment();
+    }
+
+    void onRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Requests parked since the creation of the client.
+     */
+    public long getParked() {
+        return parked.sum();
+    }
+
+    /**
+     * Parked requests written when their connection became writable again.
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Parked requests whose deadline expired before their connection became writable again.
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Requests failed because the queue of their connection was full.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Total time the written requests spent in the queues.
+     */
+    public long getQueuedNanos() {
+        return queuedNanos.sum();
+    }
+
+    public long getMaxQueuedNanos() {
+        return maxQueuedNanos.get();
+    }
+
+    public long getMeanQueuedNanos() {
+        final long count = written.sum();
+        return count == 0L ? 0L : queuedNanos.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteQueueStats{" +
+                "parked=" + getParked() +
+                ", written=" + getWritten() +
+                ", expired=" + getExpired() +
+                ", rejected=" + getRejected() +
+                ", meanQueuedMicros=" + TimeUnit.NANOSECONDS.toMicros(getMeanQueuedNanos()) +
+                ", maxQueuedMicros=" + TimeUnit.NANOSECONDS.toMicros(getMaxQueuedNanos()) +
+                '}';
+    }
+}
@@ -19,9 +19,18 @@ import io.netty.util.AttributeKey;
 
 public class Constants {
 
+    /**
+     * @deprecated no longer set, the moments are recorded per response, see
+     * {@link io.esastack.codec.common.RequestTiming}
+     */
+    @Deprecated
     public static final AttributeKey<Long> DECODE_TTFB_KEY =
             AttributeKey.newInstance("DECODE_TTFB");
 
+    /**
+     * @deprecated no longer set, see {@link io.esastack.codec.common.RequestTiming}
+     */
+    @Deprecated
     public static final AttributeKey<Long> DECODE_TTFB_COMPLETE_KEY =
             AttributeKey.newInstance("DECODE_TTFB_COMPLETE");
 
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.limiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Additive increase, multiplicative decrease: the limit grows by one for every request completed in time while the
+ * limit is in use, and is multiplied by the backoff ratio for every request which timed out or whose round trip time
+ * is beyond the threshold.
+ */
+public final class AimdLimit implements ConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long rttThresholdNanos;
+    private final AtomicInteger limit;
+
+    public AimdLimit() {
+        this(20, 1, 1000, 0.9, 1000L);
+    }
+
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long rttThresholdMillis) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Illegal limits, initial: " + initialLimit + ", min: " + minLimit +
+                    ", max: " + maxLimit);
+        }
+        if (backoffRatio <= 0.0 || backoffRatio >= 1.0) {
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1): " + backoffRatio);
+        }
+        this.limit = new AtomicInteger(initialLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttThresholdNanos = TimeUnit.MILLISECONDS.toNanos(rttThresholdMillis);
+    }
+
+    @Override
+    public int getLimit() {
+        return limit.get();
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        final boolean backoff = dropped || rttNanos > rttThresholdNanos;
+        int current;
+        int next;
+        do {
+            current = limit.get();
+            if (backoff) {
+                next = Math.max(minLimit, (int) (current * backoffRatio));
+            } else if (inFlight * 2 >= current) {
+                // grow only when the limit is in use, an idle client does not prove the provider can take more
+                next = Math.min(maxLimit, current + 1);
+            } else {
+                return;
+            }
+        } while (next != current && !limit.compareAndSet(current, next));
+    }
+
+    @Override
+    public String toString() {
+        return "AimdLimit{limit=" + limit + '}';
+    }
+}
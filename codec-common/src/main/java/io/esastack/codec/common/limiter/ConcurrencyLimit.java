@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.limiter;
+
+/**
+ * Algorithm of a {@link ConcurrencyLimiter}, which adjusts the limit of the concurrent requests from the round trip
+ * times of the completed requests.
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * Current limit of the concurrent requests.
+     */
+    int getLimit();
+
+    /**
+     * Updates the limit with a completed request.
+     *
+     * @param rttNanos round trip time of the request
+     * @param inFlight concurrent requests when the request completed, itself included
+     * @param dropped  whether the request timed out, which is a sign of overload regardless of the round trip time
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped);
+}
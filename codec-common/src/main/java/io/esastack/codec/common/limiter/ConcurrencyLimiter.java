@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the concurrent requests to the adaptive limit of a {@link ConcurrencyLimit}; a request beyond the limit is
+ * rejected right away rather than queued behind the ones the provider cannot take.
+ * <p>
+ * Every acquired permit must be released once, by {@link #onSuccess(long)}, {@link #onDropped(long)} or
+ * {@link #onIgnore()}.
+ */
+public final class ConcurrencyLimiter {
+
+    private final ConcurrencyLimit limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimiter(ConcurrencyLimit limit) {
+        if (limit == null) {
+            throw new IllegalArgumentException("limit cannot be null");
+        }
+        this.limit = limit;
+    }
+
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit.getLimit()) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases the permit of a request completed with a response.
+     */
+    public void onSuccess(long rttNanos) {
+        limit.onSample(rttNanos, inFlight.getAndDecrement(), false);
+    }
+
+    /**
+     * Releases the permit of a request which timed out.
+     */
+    public void onDropped(long rttNanos) {
+        limit.onSample(rttNanos, inFlight.getAndDecrement(), true);
+    }
+
+    /**
+     * Releases the permit of a request which failed before reaching the provider, it says nothing of the provider.
+     */
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Requests rejected since the creation of the limiter.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter{" +
+                "limit=" + limit +
+                ", inFlight=" + inFlight.get() +
+                ", rejected=" + rejected.sum() +
+                '}';
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.limiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gradient of the round trip times: the limit follows the ratio of the long term round trip time, as the time of an
+ * unloaded provider, to the latest one. When the provider queues the requests the latest round trip time rises above
+ * the long term one and the limit shrinks, otherwise it grows by the square root of the limit, the room left for the
+ * queueing.
+ * <p>
+ * The long term round trip time is an exponential moving average, which is pulled down to twice the latest round
+ * trip time when it drifts too far up, so that a long overload does not become the new normal.
+ * <p>
+ * The estimated limit and the long term round trip time are updated together by a compare and set of one long which
+ * holds both as floats, so that the responses of a client do not contend on a lock.
+ */
+public final class GradientLimit implements ConcurrencyLimit {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final int longWindow;
+    /**
+     * The estimated limit in the high and the long term round trip time in the low 32 bits, as float bits.
+     */
+    private final AtomicLong state;
+
+    public GradientLimit() {
+        this(20, 1, 1000, 1.5, 600);
+    }
+
+    /**
+     * @param tolerance  how much the latest round trip time may exceed the long term one before the limit shrinks
+     * @param longWindow samples of the exponential moving average of the long term round trip time
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, int longWindow) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Illegal limits, initial: " + initialLimit + ", min: " + minLimit +
+                    ", max: " + maxLimit);
+        }
+        if (tolerance < 1.0) {
+            throw new IllegalArgumentException("tolerance must not be less than 1: " + tolerance);
+        }
+        if (longWindow <= 0) {
+            throw new IllegalArgumentException("longWindow must be positive: " + longWindow);
+        }
+        this.state = new AtomicLong(pack(initialLimit, 0.0F));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.longWindow = longWindow;
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) estimatedLimit(state.get());
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        long current;
+        long next;
+        do {
+            current = state.get();
+            next = next(current, rttNanos, inFlight, dropped);
+        } while (next != current && !state.compareAndSet(current, next));
+    }
+
+    private long next(long current, long rttNanos, int inFlight, boolean dropped) {
+        final double estimatedLimit = estimatedLimit(current);
+        double longRttNanos = longRttNanos(current);
+        if (dropped) {
+            return pack(Math.max(minLimit, estimatedLimit * DROP_BACKOFF), longRttNanos);
+        }
+        final double shortRtt = Math.max(1L, rttNanos);
+        longRttNanos = longRttNanos == 0.0 ? shortRtt : longRttNanos + (shortRtt - longRttNanos) / longWindow;
+        if (longRttNanos / shortRtt > 2.0) {
+            longRttNanos = shortRtt * 2.0;
+        }
+        // an idle client does not prove the provider can take more
+        if (inFlight < estimatedLimit / 2.0) {
+            return pack(estimatedLimit, longRttNanos);
+        }
+        final double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+        final double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        return pack(Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1.0 - SMOOTHING) + newLimit * SMOOTHING)), longRttNanos);
+    }
+
+    private static long pack(double estimatedLimit, double longRttNanos) {
+        return ((long) Float.floatToIntBits((float) estimatedLimit) << 32)
+                | (Float.floatToIntBits((float) longRttNanos) & 0xFFFFFFFFL);
+    }
+
+    private static double estimatedLimit(long state) {
+        return Float.intBitsToFloat((int) (state >>> 32));
+    }
+
+    private static double longRttNanos(long state) {
+        return Float.intBitsToFloat((int) state);
+    }
+
+    @Override
+    public String toString() {
+        final long current = state.get();
+        return "GradientLimit{limit=" + (int) estimatedLimit(current) +
+                ", longRttMicros=" + (long) (longRttNanos(current) / 1000.0) + '}';
+    }
+}
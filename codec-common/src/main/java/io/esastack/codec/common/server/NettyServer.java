@@ -18,6 +18,7 @@ package io.esastack.codec.common.server;
 import esa.commons.StringUtils;
 import esa.commons.logging.Logger;
 import esa.commons.logging.LoggerFactory;
+import io.esastack.codec.common.buffer.AllocatorMetrics;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.epoll.Epoll;
@@ -27,6 +28,7 @@ import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
@@ -77,7 +79,9 @@ public abstract class NettyServer {
         try {
             final ServerBootstrap serverBootstrap = new ServerBootstrap();
             serverBootstrap.group(bossEventLoopGroup, ioEventLoopGroup)
-                    .channel(serverChannelClass);
+                    .channel(serverChannelClass)
+                    .option(ChannelOption.ALLOCATOR, serverConfig.getAllocatorType().allocator())
+                    .childOption(ChannelOption.ALLOCATOR, serverConfig.getAllocatorType().allocator());
             for (Map.Entry<ChannelOption, Object> entry : serverConfig.getChannelOptions().entrySet()) {
                 serverBootstrap.option(entry.getKey(), entry.getValue());
             }
@@ -88,6 +92,10 @@ public abstract class NettyServer {
             serverBootstrap.childHandler(new ChannelInitializer<Channel>() {
                 @Override
                 protected void initChannel(Channel sh) {
+                    if (serverConfig.getFlushConsolidationThreshold() > 0) {
+                        sh.pipeline().addLast(
+                                new FlushConsolidationHandler(serverConfig.getFlushConsolidationThreshold(), true));
+                    }
                     sh.pipeline().addLast(serverConfig.getChannelHandlers().toArray(new ChannelHandler[0]));
                     serverConfig.getConnectionInitializer().initialize(sh);
                 }
@@ -110,6 +118,14 @@ public abstract class NettyServer {
                 serverConfig.getPort() + "] closed!***************************************");
     }
 
+    /**
+     * Memory usage of the allocator used by this server, which may be shared with other servers and clients
+     * using the same {@link io.esastack.codec.common.buffer.AllocatorType}.
+     */
+    public AllocatorMetrics getAllocatorMetrics() {
+        return serverConfig.getAllocatorType().metrics();
+    }
+
     protected SslContext createSslContext(final NettyServerConfig serverConfig) throws IOException {
         if (serverConfig.getSslContextBuilder() == null) {
             LOGGER.info("Netty server does not enable SSL encryption");
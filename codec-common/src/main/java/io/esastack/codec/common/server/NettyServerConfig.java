@@ -15,6 +15,7 @@
  */
 package io.esastack.codec.common.server;
 
+import io.esastack.codec.common.buffer.AllocatorType;
 import io.esastack.codec.common.ssl.SslContextBuilder;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelOption;
@@ -33,6 +34,8 @@ public class NettyServerConfig {
     private int heartbeatTimeoutSeconds = 65;
     private String bindIp = "0.0.0.0";
     private String unixDomainSocketFile;
+    private AllocatorType allocatorType = AllocatorType.defaultType();
+    private int flushConsolidationThreshold;
     private SslContextBuilder sslContextBuilder;
     private ServerConnectionInitializer connectionInitializer;
     private Map<ChannelOption, Object> channelOptions = Collections.emptyMap();
@@ -111,6 +114,35 @@ public class NettyServerConfig {
         return this;
     }
 
+    public int getFlushConsolidationThreshold() {
+        return flushConsolidationThreshold;
+    }
+
+    /**
+     * Consolidates the flushes of the accepted connections: the flushes issued in the same event loop tick, or while
+     * reading, are merged into one, and a flush is forced after the given number of consolidated flushes. 0 disables
+     * it.
+     * <p>
+     * The messages waiting for the flush count against the write buffer high water mark, keep the threshold times
+     * the message size below it.
+     */
+    public NettyServerConfig setFlushConsolidationThreshold(int flushConsolidationThreshold) {
+        this.flushConsolidationThreshold = flushConsolidationThreshold;
+        return this;
+    }
+
+    public AllocatorType getAllocatorType() {
+        return allocatorType;
+    }
+
+    /**
+     * ByteBuf allocator of the server, an {@link ChannelOption#ALLOCATOR} in the channel options wins.
+     */
+    public NettyServerConfig setAllocatorType(AllocatorType allocatorType) {
+        this.allocatorType = allocatorType;
+        return this;
+    }
+
     public Map<ChannelOption, Object> getChannelOptions() {
         return channelOptions;
     }
@@ -163,6 +195,8 @@ public class NettyServerConfig {
                 ", heartbeatTimeoutSeconds=" + heartbeatTimeoutSeconds +
                 ", bindIp='" + bindIp + '\'' +
                 ", unixDomainSocketFile='" + unixDomainSocketFile + '\'' +
+                ", allocatorType=" + allocatorType +
+                ", flushConsolidationThreshold=" + flushConsolidationThreshold +
                 ", soBacklogSize=" + soBacklogSize +
                 ", payload=" + payload +
                 ", channelOptions=" + channelOptions +
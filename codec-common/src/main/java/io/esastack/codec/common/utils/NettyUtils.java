@@ -55,7 +55,8 @@ public class NettyUtils {
                             ", maybe it not included in the classpath, please check your (maven/gradle) dependencies!";
                     throw new SerializationException(msg);
                 }
-                byteBufOutputStream = new ByteBufOutputStream(Unpooled.buffer());
+                //direct buffer, so that the cached value is not copied again on each socket write
+                byteBufOutputStream = new ByteBufOutputStream(Unpooled.directBuffer());
                 out = serialization.serialize(byteBufOutputStream);
                 out.writeObject(null);
                 out.flush();
@@ -133,7 +134,10 @@ public class NettyUtils {
      *
      * @param attachments attachments
      * @param channel     channel may with ttfb key
+     * @deprecated the channel attr is no longer set, the moments are kept per response, see
+     * {@link io.esastack.codec.common.RequestTiming#addTo(io.esastack.codec.common.RpcResult, Map)}
      */
+    @Deprecated
     public static void setAttachmentsTtfbKey(Map<String, String> attachments, Channel channel) {
         if (attachments == null || channel == null) {
             return;
@@ -153,7 +157,11 @@ public class NettyUtils {
 
     /**
      * extract ttfb key to attachments from channel attr see TTFBLengthFieldBasedFrameDecoder
+     *
+     * @deprecated the channel attr is no longer set, the moments are kept per response, see
+     * {@link io.esastack.codec.common.RequestTiming#addTo(io.esastack.codec.common.RpcResult, Map)}
      */
+    @Deprecated
     public static Map<String, String> extractTtfbKey(final Channel channel) {
         final Map<String, String> attachments = new HashMap<>();
         //构建首字节收包事件产生时间,TTFBLengthFieldBasedFrameDecoder 用于调用链上报监控
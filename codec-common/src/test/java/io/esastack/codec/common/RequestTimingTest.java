@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common;
+
+import io.esastack.codec.common.constant.Constants;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestTimingTest {
+
+    @Test
+    public void testDurations() {
+        final RpcResult result = new RpcResult();
+        assertEquals(-1L, RequestTiming.deserializeNanos(result));
+        assertEquals(-1L, RequestTiming.firstByteLatencyNanos(result));
+
+        result.setFlushedNanos(100L);
+        result.setFirstByteNanos(250L);
+        result.setDecodedNanos(300L);
+        result.setDeserializeBeginNanos(400L);
+        result.setDeserializeEndNanos(1400L);
+        assertEquals(150L, RequestTiming.firstByteLatencyNanos(result));
+        assertEquals(1000L, RequestTiming.deserializeNanos(result));
+    }
+
+    @Test
+    public void testAddTo() {
+        final RpcResult result = new RpcResult();
+        final Map<String, String> attachments = new HashMap<>();
+        RequestTiming.addTo(result, attachments);
+        assertTrue(attachments.isEmpty());
+
+        final long now = System.nanoTime();
+        final long millis = System.currentTimeMillis();
+        result.setFirstByteNanos(now);
+        result.setDeserializeBeginNanos(now);
+        result.setDeserializeEndNanos(now + TimeUnit.MILLISECONDS.toNanos(3L));
+        RequestTiming.addTo(result, attachments);
+        assertEquals(3, attachments.size());
+        assertTrue(Math.abs(Long.parseLong(attachments.get(Constants.TRACE.TTFB_KEY)) - millis) < 1000L);
+        assertEquals("3", attachments.get(Constants.TRACE.TIME_OF_RSP_DESERIALIZE_COST_KEY));
+        assertTrue(result.getAttachments().isEmpty());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AllocatorTypeTest {
+
+    @Test
+    public void testAllocator() {
+        Assert.assertEquals(AllocatorType.POOLED_DIRECT, AllocatorType.defaultType());
+        Assert.assertSame(PooledByteBufAllocator.DEFAULT, AllocatorType.POOLED_DIRECT.allocator());
+        Assert.assertSame(UnpooledByteBufAllocator.DEFAULT, AllocatorType.UNPOOLED.allocator());
+        Assert.assertSame(AllocatorType.POOLED_HEAP.allocator(), AllocatorType.POOLED_HEAP.allocator());
+
+        ByteBuf heap = AllocatorType.POOLED_HEAP.allocator().buffer();
+        Assert.assertFalse(heap.isDirect());
+        heap.release();
+        ByteBuf direct = AllocatorType.THREAD_LOCAL_CACHED.allocator().buffer();
+        Assert.assertTrue(direct.isDirect());
+        direct.release();
+    }
+
+    @Test
+    public void testParse() {
+        Assert.assertEquals(AllocatorType.POOLED_DIRECT, AllocatorType.parse(null));
+        Assert.assertEquals(AllocatorType.POOLED_HEAP, AllocatorType.parse("pooled_heap"));
+        Assert.assertEquals(AllocatorType.THREAD_LOCAL_CACHED, AllocatorType.parse(" THREAD_LOCAL_CACHED "));
+        Assert.assertThrows(IllegalArgumentException.class, () -> AllocatorType.parse("unknown"));
+    }
+
+    @Test
+    public void testMetrics() {
+        AllocatorMetrics metrics = AllocatorType.POOLED_HEAP.metrics();
+        Assert.assertTrue(metrics.getNumHeapArenas() > 0);
+
+        ByteBuf buf = AllocatorType.POOLED_HEAP.allocator().heapBuffer(64 * 1024);
+        metrics = AllocatorType.POOLED_HEAP.metrics();
+        Assert.assertTrue(metrics.getUsedHeapMemory() > 0);
+        Assert.assertTrue(metrics.getNumActiveAllocations() > 0);
+        Assert.assertTrue(metrics.getNumActiveBytes() >= 64 * 1024);
+        buf.release();
+
+        metrics = AllocatorType.UNPOOLED.metrics();
+        Assert.assertEquals(0, metrics.getNumHeapArenas());
+        Assert.assertTrue(metrics.getUsedHeapMemory() >= 0);
+        Assert.assertNotNull(metrics.toString());
+    }
+}
@@ -0,0 +1,65 @@
+package io.esastack.codec.common.connection;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClientTransportTest {
+
+    @Test
+    public void testShared() {
+        final ClientTransport shared = ClientTransport.shared();
+        assertSame(shared, ClientTransport.shared());
+        assertFalse(shared.isOwned());
+        shared.close();
+        assertFalse(shared.getEventLoopGroup().isShuttingDown());
+        assertTrue(ClientTransport.defaultIoThreads() > 0);
+    }
+
+    @Test
+    public void testNewTransport() {
+        final ClientTransport transport = ClientTransport.newTransport(2, "test");
+        assertTrue(transport.isOwned());
+        assertNotNull(transport.getChannelClass());
+        assertNotNull(transport.getTimer());
+        transport.close();
+        assertTrue(transport.getEventLoopGroup().isShuttingDown());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalIoThreads() {
+        ClientTransport.newTransport(0, "test");
+    }
+
+    @Test
+    public void testOf() {
+        final EventLoopGroup group = new NioEventLoopGroup(1);
+        final Timer timer = new HashedWheelTimer();
+        try {
+            final ClientTransport transport = ClientTransport.of(group, null, timer);
+            assertSame(group, transport.getEventLoopGroup());
+            assertEquals(NioSocketChannel.class, transport.getChannelClass());
+            assertNull(transport.getDomainSocketChannelClass());
+            assertSame(timer, transport.getTimer());
+            assertFalse(transport.isOwned());
+            // the event loops of the application are left to it
+            transport.close();
+            assertFalse(group.isShuttingDown());
+
+            final ClientTransport withClass = ClientTransport.of(new DefaultEventLoopGroup(1), NioSocketChannel.class,
+                    null);
+            assertEquals(NioSocketChannel.class, withClass.getChannelClass());
+            assertNotNull(withClass.getTimer());
+            withClass.getEventLoopGroup().shutdownGracefully();
+        } finally {
+            group.shutdownGracefully();
+            timer.stop();
+        }
+    }
+}
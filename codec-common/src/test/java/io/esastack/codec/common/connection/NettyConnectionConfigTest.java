@@ -15,7 +15,9 @@
  */
 package io.esastack.codec.common.connection;
 
+import io.esastack.codec.common.buffer.AllocatorType;
 import io.esastack.codec.common.ssl.SslContextBuilder;
+import io.esastack.codec.commons.pool.SelectionStrategy;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.codec.string.StringDecoder;
 import org.junit.Test;
@@ -24,6 +26,8 @@ import java.util.Collections;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class NettyConnectionConfigTest {
@@ -37,9 +41,15 @@ public class NettyConnectionConfigTest {
         assertEquals(1000, config.getDefaultRequestTimeout());
         assertEquals(0, config.getChannelHandlers().size());
         assertEquals(0, config.getChannelOptions().size());
+        assertEquals(AllocatorType.POOLED_DIRECT, config.getAllocatorType());
+        assertEquals(RingInFlightRequests.DEFAULT_SLOTS, config.getInFlightSlots());
+        assertEquals(0, config.getFlushConsolidationThreshold());
+        assertEquals(32 * 1024, config.getOneWayPendingBytesLimit());
+        assertNull(config.getTransport());
+        assertEquals(0, config.getIoThreads());
 
         StringDecoder decoder = new StringDecoder();
-        ConnectionInitializer initializer = (channel, connectionName, callbackMap) -> {
+        ConnectionInitializer initializer = (channel, connectionName, inFlightRequests) -> {
         };
         NettyConnectionConfig.MultiplexPoolBuilder builder = NettyConnectionConfig.MultiplexPoolBuilder.newBuilder();
         SslContextBuilder sslContextBuilder = new SslContextBuilder();
@@ -58,11 +68,20 @@ public class NettyConnectionConfigTest {
         config.setUseNativeTransports(false);
         config.setWriteBufferHighWaterMark(64 * 1024 * 1024);
         config.setUnixDomainSocketFile("unix");
+        config.setAllocatorType(AllocatorType.POOLED_HEAP);
+        config.setInFlightSlots(64);
+        config.setFlushConsolidationThreshold(32);
+        config.setOneWayPendingBytesLimit(1024);
         builder.setInit(false);
         builder.setMaxPoolSize(200);
         builder.setBlockCreateWhenInit(false);
         builder.setMaxRetryTimes(2);
         builder.setWaitCreateWhenLastTryAcquire(false);
+        assertFalse(builder.isEventLoopAffinity());
+        builder.setEventLoopAffinity(true);
+        assertNotNull(builder.getSelectionStrategy());
+        SelectionStrategy<NettyConnection> strategy = NettyConnectionConfig.MultiplexPoolBuilder.leastInFlight();
+        builder.setSelectionStrategy(strategy);
 
         assertEquals("localhost", config.getHost());
         assertEquals(8080, config.getPort());
@@ -78,13 +97,39 @@ public class NettyConnectionConfigTest {
         assertEquals(128, config.getChannelOptions().get(ChannelOption.SO_BACKLOG));
         assertEquals(initializer, config.getConnectionInitializer());
         assertEquals(builder, config.getMultiplexPoolBuilder());
+        assertEquals(AllocatorType.POOLED_HEAP, config.getAllocatorType());
+        assertEquals(64, config.getInFlightSlots());
+        assertEquals(32, config.getFlushConsolidationThreshold());
+        assertEquals(1024, config.getOneWayPendingBytesLimit());
         assertEquals(sslContextBuilder, config.getSslContextBuilder());
         assertEquals(64 * 1024 * 1024, config.getWriteBufferHighWaterMark());
         assertEquals("unix", config.getUnixDomainSocketFile());
         assertFalse(builder.isBlockCreateWhenInit());
         assertFalse(builder.isInit());
         assertFalse(builder.isWaitCreateWhenLastTryAcquire());
+        assertTrue(builder.isEventLoopAffinity());
         assertEquals(200, builder.getMaxPoolSize());
         assertEquals(2, builder.getMaxRetryTimes());
+        assertEquals(strategy, builder.getSelectionStrategy());
+    }
+
+    @Test
+    public void testCopy() {
+        NettyConnectionConfig config = new NettyConnectionConfig()
+                .setHost("localhost")
+                .setPort(8080)
+                .setConnectTimeout(2000)
+                .setInFlightSlots(64)
+                .setWriteQueueSize(16)
+                .setIoThreads(2);
+        NettyConnectionConfig copy = config.copy().setPort(8081);
+        assertEquals("localhost", copy.getHost());
+        assertEquals(8081, copy.getPort());
+        assertEquals(8080, config.getPort());
+        assertEquals(2000, copy.getConnectTimeout());
+        assertEquals(64, copy.getInFlightSlots());
+        assertEquals(16, copy.getWriteQueueSize());
+        assertEquals(2, copy.getIoThreads());
+        assertEquals(config.getMultiplexPoolBuilder(), copy.getMultiplexPoolBuilder());
     }
 }
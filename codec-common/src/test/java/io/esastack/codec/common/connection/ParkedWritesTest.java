@@ -0,0 +1,124 @@
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.exception.ConnectFailedException;
+import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParkedWritesTest {
+
+    private final WriteQueueStats stats = new WriteQueueStats();
+    private final List<ChannelFuture> completed = new ArrayList<>();
+    private final ChannelFutureListener listener = completed::add;
+
+    private EmbeddedChannel unwritableChannel(ParkedWrites parkedWrites) {
+        final EmbeddedChannel channel = new EmbeddedChannel(parkedWrites);
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(channel.isWritable());
+        return channel;
+    }
+
+    @Test
+    public void testWriteWhenWritable() {
+        final ParkedWrites parkedWrites = new ParkedWrites(4, stats);
+        final EmbeddedChannel channel = new EmbeddedChannel(parkedWrites);
+        final ByteBuf request = Unpooled.wrappedBuffer(new byte[4]);
+        parkedWrites.writeAndFlush(channel, request, 1000L, listener);
+        assertEquals(0, parkedWrites.size());
+        assertEquals(1, completed.size());
+        assertTrue(completed.get(0).isSuccess());
+        assertSame(request, channel.readOutbound());
+        assertEquals(0L, stats.getParked());
+    }
+
+    @Test
+    public void testWriteWithoutFlush() {
+        final ParkedWrites parkedWrites = new ParkedWrites(4, stats);
+        final EmbeddedChannel channel = new EmbeddedChannel(parkedWrites);
+        final ByteBuf request = Unpooled.wrappedBuffer(new byte[4]);
+        parkedWrites.write(channel, request, 1000L, listener, false);
+        assertNull(channel.readOutbound());
+
+        channel.flush();
+        assertEquals(1, completed.size());
+        assertTrue(completed.get(0).isSuccess());
+        assertSame(request, channel.readOutbound());
+    }
+
+    @Test
+    public void testDrainWhenWritable() {
+        final ParkedWrites parkedWrites = new ParkedWrites(4, stats);
+        final EmbeddedChannel channel = unwritableChannel(parkedWrites);
+        final ByteBuf request = Unpooled.wrappedBuffer(new byte[4]);
+        parkedWrites.writeAndFlush(channel, request, 1000L, listener);
+        assertEquals(1, parkedWrites.size());
+        assertTrue(completed.isEmpty());
+
+        // flushing the pending bytes makes the channel writable again and drains the queue
+        channel.flush();
+        assertEquals(0, parkedWrites.size());
+        assertEquals(1, completed.size());
+        assertTrue(completed.get(0).isSuccess());
+        ((ByteBuf) channel.readOutbound()).release();
+        assertSame(request, channel.readOutbound());
+        assertEquals(1L, stats.getParked());
+        assertEquals(1L, stats.getWritten());
+        assertTrue(stats.getMaxQueuedNanos() > 0L);
+    }
+
+    @Test
+    public void testExpired() throws InterruptedException {
+        final ParkedWrites parkedWrites = new ParkedWrites(4, stats);
+        final EmbeddedChannel channel = unwritableChannel(parkedWrites);
+        final ByteBuf request = Unpooled.wrappedBuffer(new byte[4]);
+        parkedWrites.writeAndFlush(channel, request, 1L, listener);
+        Thread.sleep(5L);
+
+        channel.flush();
+        assertEquals(1, completed.size());
+        assertTrue(completed.get(0).cause() instanceof RequestTimeoutException);
+        assertEquals(0, request.refCnt());
+        assertEquals(1L, stats.getExpired());
+        assertEquals(0L, stats.getWritten());
+    }
+
+    @Test
+    public void testRejectedWhenFull() {
+        final ParkedWrites parkedWrites = new ParkedWrites(1, stats);
+        final EmbeddedChannel channel = unwritableChannel(parkedWrites);
+        parkedWrites.writeAndFlush(channel, Unpooled.wrappedBuffer(new byte[4]), 1000L, listener);
+        final ByteBuf rejected = Unpooled.wrappedBuffer(new byte[4]);
+        parkedWrites.writeAndFlush(channel, rejected, 1000L, listener);
+        assertEquals(1, parkedWrites.size());
+        assertEquals(1, completed.size());
+        assertTrue(completed.get(0).cause() instanceof ConnectFailedException);
+        assertEquals(0, rejected.refCnt());
+        assertEquals(1L, stats.getRejected());
+    }
+
+    @Test
+    public void testFailedWhenClosed() {
+        final ParkedWrites parkedWrites = new ParkedWrites(4, stats);
+        final EmbeddedChannel channel = unwritableChannel(parkedWrites);
+        final ByteBuf request = Unpooled.wrappedBuffer(new byte[4]);
+        parkedWrites.writeAndFlush(channel, request, 1000L, listener);
+
+        channel.close();
+        assertEquals(0, parkedWrites.size());
+        assertEquals(1, completed.size());
+        assertTrue(completed.get(0).cause() instanceof ClosedChannelException);
+        assertEquals(0, request.refCnt());
+    }
+}
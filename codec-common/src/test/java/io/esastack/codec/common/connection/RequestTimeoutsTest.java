@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class RequestTimeoutsTest {
+
+    private static final EventLoop EVENT_LOOP = new DefaultEventLoop();
+
+    @AfterClass
+    public static void close() {
+        EVENT_LOOP.shutdownGracefully();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final InFlightRequests requests = new RingInFlightRequests(16);
+        final RequestTimeouts timeouts = new RequestTimeouts(requests);
+        final TestCallback written = new TestCallback();
+        final TestCallback unwritten = new TestCallback();
+        final TestCallback answered = new TestCallback();
+
+        final long start = System.nanoTime();
+        timeouts.schedule(EVENT_LOOP, requests.put(1L, written, 20L));
+        timeouts.schedule(EVENT_LOOP, requests.put(2L, unwritten, 40L));
+        timeouts.schedule(EVENT_LOOP, requests.put(3L, answered, 20L));
+        requests.markWritten(1L);
+        Assert.assertSame(answered, requests.remove(3L));
+
+        Assert.assertTrue(written.error.get(1L, TimeUnit.SECONDS) instanceof ResponseTimeoutException);
+        final long firstElapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue(unwritten.error.get(1L, TimeUnit.SECONDS) instanceof RequestTimeoutException);
+        final long secondElapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue(firstElapsed >= 20L);
+        Assert.assertTrue(secondElapsed >= 40L);
+        Assert.assertFalse(answered.error.isDone());
+        Assert.assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void testEarlierDeadline() throws Exception {
+        final InFlightRequests requests = new RingInFlightRequests(16);
+        final RequestTimeouts timeouts = new RequestTimeouts(requests);
+        final TestCallback slow = new TestCallback();
+        final TestCallback fast = new TestCallback();
+        timeouts.schedule(EVENT_LOOP, requests.put(1L, slow, 5000L));
+        final long start = System.nanoTime();
+        timeouts.schedule(EVENT_LOOP, requests.put(2L, fast, 10L));
+        Assert.assertNotNull(fast.error.get(1L, TimeUnit.SECONDS));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000L);
+        Assert.assertFalse(slow.error.isDone());
+        Assert.assertSame(slow, requests.remove(1L));
+    }
+
+    private static final class TestCallback implements ResponseCallback {
+
+        private final CompletableFuture<Throwable> error = new CompletableFuture<>();
+
+        @Override
+        public void onResponse(Object result) {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error.complete(e);
+        }
+    }
+}
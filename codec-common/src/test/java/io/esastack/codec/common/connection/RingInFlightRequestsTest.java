@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.connection;
+
+import io.esastack.codec.common.ResponseCallback;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RingInFlightRequestsTest {
+
+    @Test
+    public void testSlots() {
+        Assert.assertEquals(1, new RingInFlightRequests(1).slots());
+        Assert.assertEquals(16, new RingInFlightRequests(9).slots());
+        Assert.assertEquals(16, new RingInFlightRequests(16).slots());
+        Assert.assertEquals(RingInFlightRequests.DEFAULT_SLOTS, new RingInFlightRequests().slots());
+        Assert.assertThrows(IllegalArgumentException.class, () -> new RingInFlightRequests(0));
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        final RingInFlightRequests requests = new RingInFlightRequests(8);
+        final ResponseCallback callback0 = new TestCallback();
+        final ResponseCallback callback1 = new TestCallback();
+        Assert.assertTrue(requests.isEmpty());
+        requests.put(0L, callback0);
+        requests.put(1L, callback1);
+        Assert.assertEquals(2, requests.size());
+        Assert.assertSame(callback0, requests.get(0L));
+        Assert.assertNull(requests.get(8L));
+
+        Assert.assertSame(callback0, requests.remove(0L));
+        Assert.assertNull(requests.remove(0L));
+        Assert.assertNull(requests.get(0L));
+        Assert.assertSame(callback1, requests.remove(1L));
+        Assert.assertTrue(requests.isEmpty());
+        Assert.assertEquals(0, requests.overflowSize());
+    }
+
+    @Test
+    public void testWrapAround() {
+        final RingInFlightRequests requests = new RingInFlightRequests(4);
+        final ResponseCallback slow = new TestCallback();
+        requests.put(1L, slow);
+        final List<ResponseCallback> callbacks = new ArrayList<>();
+        for (long id = 2L; id < 10L; id++) {
+            final ResponseCallback callback = new TestCallback();
+            callbacks.add(callback);
+            requests.put(id, callback);
+        }
+        // 5..9 find their slots still held by 1..4
+        Assert.assertEquals(9, requests.size());
+        Assert.assertEquals(5, requests.overflowSize());
+        for (long id = 2L; id < 10L; id++) {
+            Assert.assertSame(callbacks.get((int) id - 2), requests.remove(id));
+        }
+        Assert.assertSame(slow, requests.get(1L));
+        Assert.assertSame(slow, requests.remove(1L));
+        Assert.assertTrue(requests.isEmpty());
+        Assert.assertEquals(0, requests.overflowSize());
+
+        // the slot is free again
+        requests.put(13L, slow);
+        Assert.assertEquals(0, requests.overflowSize());
+        Assert.assertSame(slow, requests.remove(13L));
+    }
+
+    @Test
+    public void testDrain() {
+        final RingInFlightRequests requests = new RingInFlightRequests(4);
+        for (long id = 0L; id < 10L; id++) {
+            requests.put(id, new TestCallback());
+        }
+        final AtomicInteger drained = new AtomicInteger();
+        requests.drain(callback -> drained.incrementAndGet());
+        Assert.assertEquals(10, drained.get());
+        Assert.assertTrue(requests.isEmpty());
+        Assert.assertEquals(0, requests.overflowSize());
+        Assert.assertNull(requests.remove(3L));
+    }
+
+    @Test
+    public void testExpire() {
+        final RingInFlightRequests requests = new RingInFlightRequests(2);
+        final ResponseCallback sent = new TestCallback();
+        final ResponseCallback unsent = new TestCallback();
+        final ResponseCallback overflowed = new TestCallback();
+        final ResponseCallback later = new TestCallback();
+        final ResponseCallback untimed = new TestCallback();
+        final long deadline = requests.put(0L, sent, 10L);
+        requests.put(1L, unsent, 10L);
+        requests.put(2L, overflowed, 10L);
+        requests.put(3L, later, 1000L);
+        requests.put(4L, untimed);
+        requests.markWritten(0L);
+        requests.markWritten(2L);
+
+        Assert.assertEquals(deadline, requests.expire(deadline - 1L, (callback, timeout, written) -> Assert.fail()));
+
+        final List<ResponseCallback> expired = new ArrayList<>();
+        final List<Boolean> writtens = new ArrayList<>();
+        final long next = requests.expire(deadline + TimeUnit.MILLISECONDS.toNanos(10L),
+                (callback, timeout, written) -> {
+                    Assert.assertEquals(10L, timeout);
+                    expired.add(callback);
+                    writtens.add(written);
+                });
+        Assert.assertEquals(3, expired.size());
+        Assert.assertEquals(Boolean.TRUE, writtens.get(expired.indexOf(sent)));
+        Assert.assertEquals(Boolean.FALSE, writtens.get(expired.indexOf(unsent)));
+        Assert.assertEquals(Boolean.TRUE, writtens.get(expired.indexOf(overflowed)));
+        Assert.assertTrue(next - deadline >= TimeUnit.MILLISECONDS.toNanos(990L));
+        Assert.assertEquals(2, requests.size());
+        Assert.assertNull(requests.remove(0L));
+        Assert.assertSame(later, requests.remove(3L));
+        Assert.assertEquals(InFlightRequests.NO_DEADLINE,
+                requests.expire(Long.MAX_VALUE, (callback, timeout, written) -> Assert.fail()));
+        Assert.assertSame(untimed, requests.remove(4L));
+    }
+
+    @Test
+    public void testConcurrentRemove() throws InterruptedException {
+        final RingInFlightRequests requests = new RingInFlightRequests(64);
+        final int count = 10000;
+        final AtomicInteger removed = new AtomicInteger();
+        final AtomicLong published = new AtomicLong();
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Thread[] removers = new Thread[2];
+        for (int i = 0; i < removers.length; i++) {
+            removers[i] = new Thread(() -> {
+                long id = 0L;
+                while (id < count) {
+                    if (published.get() <= id) {
+                        Thread.yield();
+                        continue;
+                    }
+                    if (requests.remove(id) != null) {
+                        removed.incrementAndGet();
+                    }
+                    id++;
+                }
+                latch.countDown();
+            });
+            removers[i].start();
+        }
+        for (long id = 0L; id < count; id++) {
+            while (requests.size() >= 32) {
+                Thread.yield();
+            }
+            requests.put(id, new TestCallback());
+            published.incrementAndGet();
+        }
+        latch.await();
+        Assert.assertEquals(count, removed.get());
+        Assert.assertTrue(requests.isEmpty());
+    }
+
+    private static final class TestCallback implements ResponseCallback {
+
+        @Override
+        public void onResponse(Object result) {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+        }
+
+        @Override
+        public Class<?> getReturnType() {
+            return Object.class;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.common.limiter;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testRejectBeyondLimit() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(2, 1, 2, 0.5, 1000L));
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1L, limiter.getRejected());
+
+        limiter.onIgnore();
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testAimd() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(4, 1, 10, 0.5, 1000L));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        limiter.onSuccess(RTT);
+        assertEquals(5, limiter.getLimit());
+        limiter.onDropped(RTT);
+        assertEquals(2, limiter.getLimit());
+        // beyond the threshold counts as a drop
+        limiter.onSuccess(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, limiter.getLimit());
+        limiter.onSuccess(RTT);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testConcurrentSamples() throws InterruptedException {
+        final AimdLimit aimd = new AimdLimit(1, 1, 100000, 0.5, 1000L);
+        final GradientLimit gradient = new GradientLimit(100, 1, 1000, 1.5, 600);
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    aimd.onSample(RTT, 1000000, false);
+                    gradient.onSample(RTT, 1000000, false);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // no increase is lost without the lock
+        assertEquals(1 + 4 * 10000, aimd.getLimit());
+        assertEquals(1000, gradient.getLimit());
+    }
+
+    @Test
+    public void testAimdIdle() {
+        final AimdLimit limit = new AimdLimit(10, 1, 100, 0.5, 1000L);
+        limit.onSample(RTT, 1, false);
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    public void testGradient() {
+        final GradientLimit limit = new GradientLimit(100, 1, 1000, 1.5, 600);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+        final int grown = limit.getLimit();
+        assertTrue(grown > 100);
+
+        // the provider queues the requests
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT * 10, limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() < grown / 2);
+
+        final int current = limit.getLimit();
+        limit.onSample(RTT, 1, false);
+        assertEquals(current, limit.getLimit());
+        limit.onSample(RTT, current, true);
+        assertTrue(limit.getLimit() < current);
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter(null));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(0, 1, 10, 0.5, 1000L));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(5, 1, 10, 1.0, 1000L));
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimit(5, 10, 20, 1.5, 600));
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimit(5, 1, 20, 0.5, 600));
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimit(5, 1, 20, 1.5, 0));
+    }
+}
@@ -38,6 +38,7 @@ public class NettyServerConfigTest {
         assertEquals(0, config.getChannelOptions().size());
         assertEquals(0, config.getChildChannelOptions().size());
         assertEquals(0, config.getChannelHandlers().size());
+        assertEquals(0, config.getFlushConsolidationThreshold());
 
         SslContextBuilder builder = new SslContextBuilder();
         ChannelOption<SocketChannel> channelOption = ChannelOption.valueOf("test");
@@ -60,6 +61,7 @@ public class NettyServerConfigTest {
         config.setChannelOptions(Collections.singletonMap(channelOption, "v"));
         config.setChildChannelOptions(Collections.singletonMap(channelOption, "v"));
         config.setChannelHandlers(Collections.singletonList(encoder));
+        config.setFlushConsolidationThreshold(32);
 
         assertEquals(8080, config.getPort());
         assertEquals("localhost", config.getBindIp());
@@ -75,6 +77,7 @@ public class NettyServerConfigTest {
         assertEquals("v", config.getChildChannelOptions().get(channelOption));
         assertEquals(1, config.getChannelHandlers().size());
         assertEquals(encoder, config.getChannelHandlers().get(0));
+        assertEquals(32, config.getFlushConsolidationThreshold());
         assertNotNull(config.toString());
     }
 }
@@ -30,6 +30,19 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
 
     private final ConcurrentMap<Integer, AcquireTask> pool;
 
+    private final SelectionStrategy.Slots<T> slots = new SelectionStrategy.Slots<T>() {
+        @Override
+        public int size() {
+            return builder.maxPoolSize;
+        }
+
+        @Override
+        public T get(int index) {
+            final AcquireTask acquireTask = pool.get(index);
+            return acquireTask != null && acquireTask.isAcquired() ? acquireTask.getResult() : null;
+        }
+    };
+
     private DefaultMultiplexPool(final Builder<T> builder) {
         this.builder = builder;
         this.pool = new ConcurrentHashMap<>(builder.maxPoolSize);
@@ -49,6 +62,10 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
             throw new IllegalArgumentException("Pool element factory cannot be null");
         }
 
+        if (builder.selectionStrategy == null) {
+            throw new IllegalArgumentException("selectionStrategy cannot be null");
+        }
+
         if (builder.init) {
             try {
                 for (int i = 0; i < builder.maxPoolSize; i++) {
@@ -79,6 +96,19 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
         return future;
     }
 
+    @Override
+    public T acquireOther(final T excluded) {
+        final int size = builder.maxPoolSize;
+        final int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            final T element = slots.get((start + i) % size);
+            if (element != null && !element.equals(excluded)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
     /**
      * time cost is same as acquire();
      * if continual 'maxRetryTimes' elements are invalid, assume it cannot acquire now;
@@ -100,7 +130,7 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
 
     private AcquireTask doAcquire0() {
         AcquireTask acquireTask = null;
-        int index = ThreadLocalRandom.current().nextInt(builder.maxPoolSize);
+        int index = selectIndex();
         for (int i = 1; i <= builder.maxRetryTimes; i++) {
             final int idxCopy = index;
             acquireTask = acquireFromPool(index);
@@ -123,6 +153,14 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
         return acquireTask;
     }
 
+    private int selectIndex() {
+        final int index = builder.selectionStrategy.select(slots);
+        if (index < 0 || index >= builder.maxPoolSize) {
+            return ThreadLocalRandom.current().nextInt(builder.maxPoolSize);
+        }
+        return index;
+    }
+
     @Override
     public void closeAll() {
         for (AcquireTask task : pool.values()) {
@@ -250,6 +288,7 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
         private boolean blockCreateWhenInit = true;
         private boolean waitCreateWhenLastTryAcquire = true;
         private PooledObjectFactory<T> factory;
+        private SelectionStrategy<T> selectionStrategy = SelectionStrategy.random();
 
         public DefaultMultiplexPool<T> build() {
             return new DefaultMultiplexPool<>(this);
@@ -300,6 +339,15 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
             return this;
         }
 
+        public SelectionStrategy<T> getSelectionStrategy() {
+            return selectionStrategy;
+        }
+
+        public Builder<T> selectionStrategy(SelectionStrategy<T> selectionStrategy) {
+            this.selectionStrategy = selectionStrategy;
+            return this;
+        }
+
         public Builder<T> waitCreateWhenLastTryAcquire(boolean waitCreateWhenLastTryAcquire) {
             this.waitCreateWhenLastTryAcquire = waitCreateWhenLastTryAcquire;
             return this;
@@ -349,21 +397,18 @@ public class DefaultMultiplexPool<T> implements MultiplexPool<T> {
         private void handleWhenCreateCompleted(T result, Throwable throwable) {
             acquireResult = new AcquireResult(result, throwable);
             completed = true;
-            synchronized (this) {
-                notifyAll();
-            }
         }
 
+        /**
+         * Parks on the {@link #createFuture} rather than on the monitor of the task, which would pin a virtual
+         * thread to its carrier thread.
+         */
         public void waitForCreated() {
-            final int timeout = builder.getMaxWaitCreateTime();
-            synchronized (this) {
-                final long start = System.currentTimeMillis();
-                while (!completed && System.currentTimeMillis() - start < timeout) {
-                    try {
-                        wait(start + timeout - System.currentTimeMillis());
-                    } catch (Throwable ignored) {
-                    }
-                }
+            try {
+                createFuture.get(builder.getMaxWaitCreateTime(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException ignored) {
             }
         }
 
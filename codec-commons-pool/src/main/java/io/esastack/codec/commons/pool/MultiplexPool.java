@@ -32,6 +32,16 @@ public interface MultiplexPool<T> {
      */
     CompletableFuture<T> acquire();
 
+    /**
+     * acquire an element other than the given {@code excluded} one which is ready at current time, without creating
+     * or waiting for any element, such as for sending a backup request on another connection.
+     *
+     * @return the element, or {@code null} if there is no other element ready
+     */
+    default T acquireOther(T excluded) {
+        return null;
+    }
+
     /**
      * estimate whether there is element ready for acquiring at current time
      * the result is just a estimation, will soon be expired
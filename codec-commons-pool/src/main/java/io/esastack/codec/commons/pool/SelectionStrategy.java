@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.commons.pool;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Chooses the slot of the {@link DefaultMultiplexPool} to acquire from. When the chosen slot is not ready, the pool
+ * walks backwards from it, the same as before the strategy existed.
+ */
+@FunctionalInterface
+public interface SelectionStrategy<T> {
+
+    /**
+     * @param slots the slots of the pool
+     * @return the index of the slot to acquire from, in [0, slots.size())
+     */
+    int select(Slots<T> slots);
+
+    /**
+     * Picks a random slot.
+     */
+    static <T> SelectionStrategy<T> random() {
+        return slots -> ThreadLocalRandom.current().nextInt(slots.size());
+    }
+
+    /**
+     * Power of two choices: picks two random slots and takes the less loaded one. A slot which has no ready element
+     * is taken first, so the pool is still filled up to its max size.
+     *
+     * @param load load of an element, e.g. the outstanding requests of a connection
+     */
+    static <T> SelectionStrategy<T> powerOfTwoChoices(final ToIntFunction<? super T> load) {
+        return new PowerOfTwoChoices<>(load);
+    }
+
+    /**
+     * Picks a ready element for which {@code local} holds, e.g. a connection on the event loop of the caller,
+     * otherwise asks the {@code fallback}. The slots are scanned from a random one, so that the local elements share
+     * the load.
+     */
+    static <T> SelectionStrategy<T> affinity(final Predicate<? super T> local, final SelectionStrategy<T> fallback) {
+        return new Affinity<>(local, fallback);
+    }
+
+    interface Slots<T> {
+
+        int size();
+
+        /**
+         * @return the ready element of the slot, or {@code null} if the slot is empty, or its element is being
+         * created or is invalid
+         */
+        T get(int index);
+    }
+
+    final class PowerOfTwoChoices<T> implements SelectionStrategy<T> {
+
+        private final ToIntFunction<? super T> load;
+
+        private PowerOfTwoChoices(final ToIntFunction<? super T> load) {
+            if (load == null) {
+                throw new IllegalArgumentException("load must not be null");
+            }
+            this.load = load;
+        }
+
+        @Override
+        public int select(final Slots<T> slots) {
+            final int size = slots.size();
+            if (size == 1) {
+                return 0;
+            }
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            final T firstElement = slots.get(first);
+            if (firstElement == null) {
+                return first;
+            }
+            final T secondElement = slots.get(second);
+            if (secondElement == null) {
+                return second;
+            }
+            return load.applyAsInt(secondElement) < load.applyAsInt(firstElement) ? second : first;
+        }
+    }
+
+    final class Affinity<T> implements SelectionStrategy<T> {
+
+        private final Predicate<? super T> local;
+        private final SelectionStrategy<T> fallback;
+
+        private Affinity(final Predicate<? super T> local, final SelectionStrategy<T> fallback) {
+            if (local == null || fallback == null) {
+                throw new IllegalArgumentException("local and fallback must not be null");
+            }
+            this.local = local;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public int select(final Slots<T> slots) {
+            final int size = slots.size();
+            final int start = size == 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+            for (int i = 0; i < size; i++) {
+                final int index = (start + i) % size;
+                final T element = slots.get(index);
+                if (element != null && local.test(element)) {
+                    return index;
+                }
+            }
+            return fallback.select(slots);
+        }
+    }
+}
@@ -190,6 +190,35 @@ public class MultiplexPoolTests {
         Assert.assertNotNull(worker2.getResult());
     }
 
+    @Test
+    public void testAcquireOther() throws Exception {
+        MultiplexPool<String> pool = new DefaultMultiplexPool.Builder<String>()
+                .maxPoolSize(2)
+                .factory(new MockPooledObjectFactory(0))
+                .init(true)
+                .blockCreateWhenInit(true)
+                .build();
+
+        String element = pool.acquire().get();
+        for (int i = 0; i < 10; i++) {
+            String other = pool.acquireOther(element);
+            Assert.assertNotNull(other);
+            Assert.assertNotEquals(element, other);
+        }
+
+        MultiplexPool<String> single = new DefaultMultiplexPool.Builder<String>()
+                .maxPoolSize(1)
+                .factory(new MockPooledObjectFactory(0))
+                .build();
+        assertNull(single.acquireOther(single.acquire().get()));
+        assertNull(new DefaultMultiplexPool.Builder<String>()
+                .maxPoolSize(1)
+                .factory(new ValidateFalsePoolFactory())
+                .waitCreateWhenLastTryAcquire(false)
+                .build()
+                .acquireOther(null));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testAcquire_createExceptionally() {
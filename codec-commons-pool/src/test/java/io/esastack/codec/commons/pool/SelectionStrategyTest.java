@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.commons.pool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SelectionStrategyTest {
+
+    @Test
+    public void testRandom() {
+        final SelectionStrategy<String> strategy = SelectionStrategy.random();
+        final Slots slots = new Slots(Arrays.asList("a", "b", "c"));
+        for (int i = 0; i < 100; i++) {
+            final int index = strategy.select(slots);
+            Assert.assertTrue(index >= 0 && index < 3);
+        }
+    }
+
+    @Test
+    public void testPowerOfTwoChoices() {
+        final SelectionStrategy<String> strategy = SelectionStrategy.powerOfTwoChoices(String::length);
+        final Slots slots = new Slots(Arrays.asList("xxxx", "x", "xxxxxxxx"));
+        final int[] selected = new int[3];
+        for (int i = 0; i < 300; i++) {
+            selected[strategy.select(slots)]++;
+        }
+        // the most loaded one always loses the comparison
+        Assert.assertEquals(0, selected[2]);
+        Assert.assertTrue(selected[1] > selected[0]);
+
+        Assert.assertEquals(0, strategy.select(new Slots(Arrays.asList("xxxx"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPowerOfTwoChoicesWithoutLoad() {
+        SelectionStrategy.powerOfTwoChoices(null);
+    }
+
+    @Test
+    public void testPowerOfTwoChoicesPrefersEmptySlot() {
+        final SelectionStrategy<String> strategy = SelectionStrategy.powerOfTwoChoices(String::length);
+        final Slots slots = new Slots(Arrays.asList("x", null));
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(1, strategy.select(slots));
+        }
+    }
+
+    @Test
+    public void testAffinity() {
+        final SelectionStrategy<String> strategy = SelectionStrategy.affinity("local"::equals, slots -> 0);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(2, strategy.select(new Slots(Arrays.asList("a", null, "local"))));
+        }
+        // no local element
+        Assert.assertEquals(0, strategy.select(new Slots(Arrays.asList("a", null, "b"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAffinityWithoutFallback() {
+        SelectionStrategy.affinity("local"::equals, null);
+    }
+
+    @Test
+    public void testPoolUsesStrategy() throws Exception {
+        final AtomicInteger selections = new AtomicInteger();
+        final MultiplexPool<String> pool = new DefaultMultiplexPool.Builder<String>()
+                .maxPoolSize(2)
+                .factory(new ImmediateFactory())
+                .selectionStrategy(slots -> {
+                    selections.incrementAndGet();
+                    // fill the slot 0 first, then always pick the slot 1
+                    return slots.get(0) == null ? 0 : 1;
+                })
+                .build();
+        Assert.assertEquals("element-0", pool.acquire().get());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("element-1", pool.acquire().get());
+        }
+        Assert.assertEquals(6, selections.get());
+    }
+
+    @Test
+    public void testOutOfRangeSelection() throws Exception {
+        final MultiplexPool<String> pool = new DefaultMultiplexPool.Builder<String>()
+                .maxPoolSize(1)
+                .factory(new ImmediateFactory())
+                .selectionStrategy(slots -> 5)
+                .build();
+        Assert.assertEquals("element-0", pool.acquire().get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullSelectionStrategy() {
+        new DefaultMultiplexPool.Builder<String>()
+                .maxPoolSize(1)
+                .factory(new ImmediateFactory())
+                .selectionStrategy(null)
+                .build();
+    }
+
+    private static final class Slots implements SelectionStrategy.Slots<String> {
+
+        private final List<String> elements;
+
+        private Slots(List<String> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
+        }
+
+        @Override
+        public String get(int index) {
+            return elements.get(index);
+        }
+    }
+
+    private static final class ImmediateFactory implements PooledObjectFactory<String> {
+
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<String> create() {
+            return CompletableFuture.completedFuture("element-" + index.getAndIncrement());
+        }
+
+        @Override
+        public CompletableFuture<Void> destroy(String object) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public Boolean validate(String object) {
+            return true;
+        }
+    }
+}
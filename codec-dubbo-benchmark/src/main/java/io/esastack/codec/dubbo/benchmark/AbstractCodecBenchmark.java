@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.benchmark;
+
+import io.esastack.codec.dubbo.core.codec.DubboMessageDecoder;
+import io.esastack.codec.dubbo.core.codec.DubboMessageEncoder;
+import io.esastack.codec.dubbo.core.codec.TTFBLengthFieldBasedFrameDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common parameters of the codec benchmarks: every registered serialization crossed with three payload sizes.
+ * The encoder and decoder are driven through {@link EmbeddedChannel}s, so the numbers include the same
+ * {@link DubboMessageEncoder}/{@link DubboMessageDecoder} work that happens on the IO threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class AbstractCodecBenchmark {
+
+    private static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
+
+    @Param({"hessian2", "kryo", "fst", "protostuff", "protobuf", "json", "fastjson"})
+    protected String serialization;
+
+    @Param({BenchmarkPayloads.SMALL, BenchmarkPayloads.MEDIUM, BenchmarkPayloads.LARGE})
+    protected String size;
+
+    protected byte seriType;
+    protected Object payload;
+    protected Class<?> payloadType;
+    protected EmbeddedChannel encoder;
+    protected EmbeddedChannel decoder;
+
+    protected void setupCodec() {
+        this.seriType = BenchmarkPayloads.seriType(serialization);
+        this.payload = BenchmarkPayloads.payload(seriType, size);
+        this.payloadType = BenchmarkPayloads.payloadType(seriType);
+        this.encoder = new EmbeddedChannel(new DubboMessageEncoder());
+        this.decoder = new EmbeddedChannel(
+                new TTFBLengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 12, 4, 0, 0),
+                new DubboMessageDecoder());
+    }
+
+    protected void closeCodec() {
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    /**
+     * Copies the encoded frame into a buffer owned by the benchmark, so it can be replayed to the decoder.
+     */
+    protected static ByteBuf copyFrame(final ByteBuf frame) {
+        try {
+            return frame.copy();
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.benchmark;
+
+import com.google.protobuf.StringValue;
+import io.esastack.codec.serialization.api.Serialization;
+import io.esastack.codec.serialization.api.SerializeConstants;
+import io.esastack.codec.serialization.api.SerializeFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the arguments and return values of the codec benchmarks.
+ * <p>
+ * The protobuf serialization only accepts google protobuf messages, so its payload is a {@link StringValue} holding
+ * the same content as the {@link BenchmarkModel} used by the other serializations.
+ */
+public final class BenchmarkPayloads {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String LARGE = "large";
+
+    private static final int TAG_COUNT = 8;
+
+    private BenchmarkPayloads() {
+    }
+
+    public static byte seriType(final String seriName) {
+        final Serialization serialization = SerializeFactory.getSerialization(seriName);
+        if (serialization == null) {
+            throw new IllegalArgumentException("Serialization " + seriName +
+                    " is not loaded, please check the dependencies of codec-dubbo-benchmark");
+        }
+        return serialization.getSeriTypeId();
+    }
+
+    /**
+     * @param size one of {@link #SMALL}, {@link #MEDIUM} and {@link #LARGE}
+     * @return approximate content length in bytes
+     */
+    public static int contentLength(final String size) {
+        switch (size) {
+            case SMALL:
+                return 64;
+            case MEDIUM:
+                return 4 * 1024;
+            case LARGE:
+                return 128 * 1024;
+            default:
+                throw new IllegalArgumentException("Unknown payload size: " + size);
+        }
+    }
+
+    public static Class<?> payloadType(final byte seriType) {
+        return seriType == SerializeConstants.PROTOBUF_SERIALIZATION_ID ? StringValue.class : BenchmarkModel.class;
+    }
+
+    public static Object payload(final byte seriType, final String size) {
+        final String content = content(contentLength(size));
+        if (seriType == SerializeConstants.PROTOBUF_SERIALIZATION_ID) {
+            return StringValue.newBuilder().setValue(content).build();
+        }
+        final List<String> tags = new ArrayList<>(TAG_COUNT);
+        for (int i = 0; i < TAG_COUNT; i++) {
+            tags.add("tag-" + i);
+        }
+        return new BenchmarkModel(1024L, "codec-dubbo-benchmark", tags, content);
+    }
+
+    private static String content(final int length) {
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        return sb.toString();
+    }
+}
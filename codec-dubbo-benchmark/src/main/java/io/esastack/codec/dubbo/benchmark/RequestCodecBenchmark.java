@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.benchmark;
+
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.esastack.codec.dubbo.core.codec.helper.ServerCodecHelper;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request path: {@link ClientCodecHelper#toDubboMessage(RpcInvocation)} + encoder on the client side,
+ * frame decoder + {@link ServerCodecHelper#toRpcInvocation(DubboMessage)} on the server side.
+ */
+@State(Scope.Thread)
+public class RequestCodecBenchmark extends AbstractCodecBenchmark {
+
+    private RpcInvocation invocation;
+    private ByteBuf frame;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        setupCodec();
+        final Map<String, String> attachments = new HashMap<>();
+        attachments.put("benchmark", "request");
+        this.invocation = new RpcInvocation()
+                .setSeriType(seriType)
+                .setInterfaceName("io.esastack.codec.dubbo.benchmark.BenchmarkService")
+                .setVersion("1.0.0")
+                .setMethodName("echo")
+                .setParameterTypes(new Class<?>[]{payloadType})
+                .setArguments(new Object[]{payload})
+                .setAttachments(attachments);
+        this.frame = copyFrame(encode());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        frame.release();
+        closeCodec();
+    }
+
+    @Benchmark
+    public void encodeRequest(final Blackhole bh) throws Exception {
+        final ByteBuf encoded = encode();
+        bh.consume(encoded.readableBytes());
+        encoded.release();
+    }
+
+    @Benchmark
+    public void decodeRequest(final Blackhole bh) throws Exception {
+        bh.consume(decode(frame.retainedDuplicate()));
+    }
+
+    @Benchmark
+    public void roundTripRequest(final Blackhole bh) throws Exception {
+        bh.consume(decode(encode()));
+    }
+
+    private ByteBuf encode() throws Exception {
+        encoder.writeOutbound(ClientCodecHelper.toDubboMessage(invocation));
+        return encoder.readOutbound();
+    }
+
+    private RpcInvocation decode(final ByteBuf encoded) throws Exception {
+        decoder.writeInbound(encoded);
+        final DubboMessage request = decoder.readInbound();
+        try {
+            return ServerCodecHelper.toRpcInvocation(request);
+        } finally {
+            request.release();
+        }
+    }
+}
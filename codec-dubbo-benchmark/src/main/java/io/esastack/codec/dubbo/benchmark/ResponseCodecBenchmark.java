@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.benchmark;
+
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.esastack.codec.dubbo.core.codec.helper.ServerCodecHelper;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Response path: {@link ServerCodecHelper#toDubboMessage(DubboRpcResult)} + encoder on the server side,
+ * frame decoder + {@link ClientCodecHelper#toRpcResult(DubboMessage, Class)} on the client side.
+ */
+@State(Scope.Thread)
+public class ResponseCodecBenchmark extends AbstractCodecBenchmark {
+
+    private DubboRpcResult rpcResult;
+    private ByteBuf frame;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        setupCodec();
+        this.rpcResult = DubboRpcResult.success(1L, seriType, payload);
+        this.frame = copyFrame(encode());
+        final DubboRpcResult decoded = decode(frame.retainedDuplicate());
+        if (decoded.getException() != null) {
+            throw new IllegalStateException("Failed to decode response of " + serialization, decoded.getException());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        frame.release();
+        closeCodec();
+    }
+
+    @Benchmark
+    public void encodeResponse(final Blackhole bh) throws Exception {
+        final ByteBuf encoded = encode();
+        bh.consume(encoded.readableBytes());
+        encoded.release();
+    }
+
+    @Benchmark
+    public void decodeResponse(final Blackhole bh) {
+        bh.consume(decode(frame.retainedDuplicate()));
+    }
+
+    @Benchmark
+    public void roundTripResponse(final Blackhole bh) throws Exception {
+        bh.consume(decode(encode()));
+    }
+
+    private ByteBuf encode() throws Exception {
+        encoder.writeOutbound(ServerCodecHelper.toDubboMessage(rpcResult));
+        return encoder.readOutbound();
+    }
+
+    private DubboRpcResult decode(final ByteBuf encoded) {
+        decoder.writeInbound(encoded);
+        final DubboMessage response = decoder.readInbound();
+        try {
+            return ClientCodecHelper.toRpcResult(response, payloadType);
+        } finally {
+            response.release();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Responses of the requests sent by {@link NettyDubboClient#sendBatch(List, Class, java.lang.reflect.Type, long)},
+ * at the same indexes as the requests.
+ */
+public final class BatchResponses {
+
+    private final List<CompletableFuture<DubboRpcResult>> futures;
+    private final CompletableFuture<List<DubboRpcResult>> all;
+
+    BatchResponses(final List<CompletableFuture<DubboRpcResult>> futures) {
+        this.futures = Collections.unmodifiableList(futures);
+        this.all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            final List<DubboRpcResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<DubboRpcResult> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    public int size() {
+        return futures.size();
+    }
+
+    /**
+     * Response of the request at {@code index}.
+     */
+    public CompletableFuture<DubboRpcResult> get(final int index) {
+        return futures.get(index);
+    }
+
+    public List<CompletableFuture<DubboRpcResult>> getFutures() {
+        return futures;
+    }
+
+    /**
+     * Completes with all the results in the order of the requests once every request completes, or exceptionally if
+     * any request failed, in which case the other results are still available by {@link #get(int)}.
+     */
+    public CompletableFuture<List<DubboRpcResult>> all() {
+        return all;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.exception.InternalException;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Synchronous facade of a {@link DubboClient}, made for a large number of blocking callers such as virtual threads.
+ * <p>
+ * The caller parks on the future of the response, which does not pin a virtual thread to its carrier thread, and then
+ * deserializes the response itself, so that the event loops and the deserialization executor of the client are not
+ * shared by the callers. The facade keeps no state per caller and may be shared by any number of threads.
+ */
+public class BlockingDubboClient {
+
+    /**
+     * The client times the requests out by itself, the caller only waits longer to never hang on a lost response.
+     */
+    private static final long WAIT_GRACE_MILLIS = 1000L;
+
+    private final DubboClient client;
+    private final long timeout;
+
+    /**
+     * @param client  client sending the requests
+     * @param timeout timeout of the requests in milliseconds, unless given per request
+     */
+    public BlockingDubboClient(final DubboClient client, final long timeout) {
+        if (client == null) {
+            throw new IllegalArgumentException("client cannot be null");
+        }
+        if (timeout <= 0L) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout);
+        }
+        this.client = client;
+        this.timeout = timeout;
+    }
+
+    public DubboRpcResult invoke(final DubboMessage request, final Class<?> returnType) {
+        return invoke(request, returnType, returnType, timeout);
+    }
+
+    public DubboRpcResult invoke(final DubboMessage request, final Class<?> returnType, final Type genericReturnType) {
+        return invoke(request, returnType, genericReturnType, timeout);
+    }
+
+    /**
+     * Sends the request and waits for its response, deserialized by the calling thread.
+     *
+     * @return the result, with a {@code CLIENT_ERROR} status if the response cannot be deserialized
+     * @throws RuntimeException the failure of the request, such as a {@link ResponseTimeoutException}, or an
+     *                          {@link InternalException} if the caller is interrupted
+     */
+    public DubboRpcResult invoke(final DubboMessage request,
+                                 final Class<?> returnType,
+                                 final Type genericReturnType,
+                                 final long timeout) {
+        final CompletableFuture<DubboMessageWrapper> future =
+                client.sendReqWithoutRespDeserialize(request, returnType, timeout);
+        final DubboMessageWrapper wrapper;
+        try {
+            wrapper = future.get(timeout + WAIT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseLater(future);
+            throw new InternalException("Interrupted while waiting for the response", e);
+        } catch (TimeoutException e) {
+            releaseLater(future);
+            throw new ResponseTimeoutException("Response timeout: " + timeout + " ms.");
+        } catch (ExecutionException e) {
+            throw asRuntimeException(e.getCause());
+        }
+        return deserialize(wrapper, returnType, genericReturnType);
+    }
+
+    private static DubboRpcResult deserialize(final DubboMessageWrapper wrapper,
+                                              final Class<?> returnType,
+                                              final Type genericReturnType) {
+        final DubboMessage response = wrapper.getMessage();
+        try {
+            final long startAt = System.nanoTime();
+            final DubboRpcResult rpcResult = ClientCodecHelper.toRpcResult(
+                    response, returnType, genericReturnType, wrapper.getAttachments());
+            rpcResult.setFlushedNanos(wrapper.getFlushedNanos());
+            rpcResult.setDeserializeBeginNanos(startAt);
+            rpcResult.setDeserializeEndNanos(System.nanoTime());
+            return rpcResult;
+        } finally {
+            response.release();
+        }
+    }
+
+    /**
+     * Releases the response arriving after the caller gave up.
+     */
+    private static void releaseLater(final CompletableFuture<DubboMessageWrapper> future) {
+        future.whenComplete((wrapper, t) -> {
+            if (wrapper != null) {
+                wrapper.getMessage().release();
+            }
+        });
+    }
+
+    private static RuntimeException asRuntimeException(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new InternalException(t);
+    }
+
+    public DubboClient getClient() {
+        return client;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public boolean isActive() {
+        return client.isActive();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.dubbo.client.serialize.SerializeHandler;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+
+import java.lang.reflect.Type;
+
+/**
+ * Stores the raw response of a cached method in the {@link ResponseCache} before it is deserialized, so the response
+ * is always received serialized and then deserialized by the {@link SerializeHandler} of the client if the delegate
+ * expects it so.
+ */
+final class CachingResponseCallback implements ResponseCallback {
+
+    private final ResponseCallback delegate;
+    private final ResponseCache cache;
+    private final InvocationKey key;
+    private final SerializeHandler serializeHandler;
+
+    CachingResponseCallback(ResponseCallback delegate,
+                            ResponseCache cache,
+                            InvocationKey key,
+                            SerializeHandler serializeHandler) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.key = key;
+        this.serializeHandler = serializeHandler;
+    }
+
+    @Override
+    public void onResponse(Object result) {
+        if (!(result instanceof DubboMessageWrapper)) {
+            delegate.onResponse(result);
+            return;
+        }
+        final DubboMessageWrapper wrapper = (DubboMessageWrapper) result;
+        try {
+            cache.put(key, wrapper.getMessage());
+        } catch (Throwable t) {
+            wrapper.getMessage().release();
+            delegate.onError(t);
+            return;
+        }
+        if (delegate.deserialized()) {
+            serializeHandler.deserialize(wrapper.getMessage(), delegate);
+        } else {
+            delegate.onResponse(wrapper);
+        }
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        delegate.onError(e);
+    }
+
+    @Override
+    public boolean deserialized() {
+        return false;
+    }
+
+    @Override
+    public void onGotConnection(boolean b, String errMsg) {
+        delegate.onGotConnection(b, errMsg);
+    }
+
+    @Override
+    public void onWriteToNetwork(boolean isSuccess, String errMsg) {
+        delegate.onWriteToNetwork(isSuccess, errMsg);
+    }
+
+    @Override
+    public Class<?> getReturnType() {
+        return delegate.getReturnType();
+    }
+
+    @Override
+    public Type getGenericReturnType() {
+        return delegate.getGenericReturnType();
+    }
+}
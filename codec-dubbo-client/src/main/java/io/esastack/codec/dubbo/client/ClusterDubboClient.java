@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import esa.commons.logging.Logger;
+import esa.commons.logging.LoggerFactory;
+import io.esastack.codec.common.exception.ConnectFailedException;
+import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.esastack.codec.common.exception.UnknownResponseStatusException;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+import io.netty.util.ReferenceCountUtil;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Client of several providers of the same service, each {@link ClusterEndpoint} has its own {@link NettyDubboClient}
+ * built from the template of {@link ClusterDubboClientBuilder#getClientBuilder()}.
+ * <p>
+ * Every request goes to the less loaded of two endpoints picked at random, see {@link ClusterEndpoint} for the load.
+ * An endpoint failing {@link ClusterDubboClientBuilder#getFailuresToEject()} times in a row, by a connection failure
+ * or a timeout, is ejected for {@link ClusterDubboClientBuilder#getEjectionMillis()}, unless too many endpoints are
+ * ejected already. The endpoints may be added and removed at any time, a removed endpoint is closed once its
+ * outstanding requests complete.
+ */
+public class ClusterDubboClient implements DubboClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterDubboClient.class);
+
+    private static final ClusterEndpoint[] EMPTY = new ClusterEndpoint[0];
+
+    private final ClusterDubboClientBuilder builder;
+    private final long ejectionNanos;
+    private volatile ClusterEndpoint[] endpoints = EMPTY;
+
+    public ClusterDubboClient(final ClusterDubboClientBuilder builder) {
+        if (builder.getClientBuilder() == null) {
+            throw new IllegalArgumentException("clientBuilder cannot be null");
+        }
+        if (builder.getDecayMillis() <= 0L) {
+            throw new IllegalArgumentException("decayMillis must be positive: " + builder.getDecayMillis());
+        }
+        if (builder.getFailuresToEject() < 0 || builder.getEjectionMillis() < 0L) {
+            throw new IllegalArgumentException("failuresToEject and ejectionMillis must not be negative");
+        }
+        if (builder.getMaxEjectionPercent() < 0 || builder.getMaxEjectionPercent() > 100) {
+            throw new IllegalArgumentException("maxEjectionPercent must be in [0, 100]: " +
+                    builder.getMaxEjectionPercent());
+        }
+        this.builder = builder;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(builder.getEjectionMillis());
+        for (String endpoint : builder.getEndpoints()) {
+            final int idx = endpoint.lastIndexOf(':');
+            addEndpoint(endpoint.substring(0, idx), Integer.parseInt(endpoint.substring(idx + 1)));
+        }
+    }
+
+    public static ClusterDubboClientBuilder newBuilder() {
+        return new ClusterDubboClientBuilder();
+    }
+
+    /**
+     * @return {@code false} if the endpoint exists already
+     */
+    public synchronized boolean addEndpoint(final String host, final int port) {
+        final String address = ClusterEndpoint.address(host, port);
+        final ClusterEndpoint[] current = this.endpoints;
+        for (ClusterEndpoint endpoint : current) {
+            if (endpoint.getAddress().equals(address)) {
+                return false;
+            }
+        }
+        final DubboClientBuilder clientBuilder = builder.getClientBuilder().copy();
+        clientBuilder.getConnectionConfig().setHost(host).setPort(port);
+        final ClusterEndpoint[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = new ClusterEndpoint(host, port, clientBuilder.build(), builder.getDecayMillis());
+        this.endpoints = next;
+        LOGGER.info("Added endpoint " + address + " to the cluster client.");
+        return true;
+    }
+
+    /**
+     * Removes the endpoint from the selection, it is closed once its outstanding requests complete.
+     *
+     * @return {@code false} if the endpoint does not exist
+     */
+    public synchronized boolean removeEndpoint(final String host, final int port) {
+        final String address = ClusterEndpoint.address(host, port);
+        final ClusterEndpoint[] current = this.endpoints;
+        for (int i = 0; i < current.length; i++) {
+            final ClusterEndpoint endpoint = current[i];
+            if (!endpoint.getAddress().equals(address)) {
+                continue;
+            }
+            final ClusterEndpoint[] next = new ClusterEndpoint[current.length - 1];
+            System.arraycopy(current, 0, next, 0, i);
+            System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+            this.endpoints = next;
+            if (endpoint.markRemoved()) {
+                endpoint.getClient().close();
+            }
+            LOGGER.info("Removed endpoint " + address + " from the cluster client.");
+            return true;
+        }
+        return false;
+    }
+
+    public List<ClusterEndpoint> getEndpoints() {
+        return Collections.unmodifiableList(Arrays.asList(endpoints));
+    }
+
+    /**
+     * Power of two choices: the less loaded of two distinct endpoints picked at random, skipping the ejected ones.
+     * If all the endpoints are ejected, they are all used again.
+     */
+    ClusterEndpoint select() {
+        final ClusterEndpoint[] current = this.endpoints;
+        final int size = current.length;
+        if (size <= 1) {
+            return size == 0 ? null : current[0];
+        }
+        final long now = System.nanoTime();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        final ClusterEndpoint a = current[first];
+        final ClusterEndpoint b = current[second];
+        final boolean aEjected = a.isEjected(now);
+        final boolean bEjected = b.isEjected(now);
+        if (aEjected && bEjected) {
+            for (int i = 1; i < size; i++) {
+                final ClusterEndpoint endpoint = current[(first + i) % size];
+                if (!endpoint.isEjected(now)) {
+                    return endpoint;
+                }
+            }
+            return a;
+        }
+        if (aEjected) {
+            return b;
+        }
+        if (bEjected) {
+            return a;
+        }
+        return a.load() <= b.load() ? a : b;
+    }
+
+    @Override
+    public CompletableFuture<DubboRpcResult> sendRequest(final DubboMessage request,
+                                                         final Class<?> returnType) {
+        return send(request, client -> client.sendRequest(request, returnType));
+    }
+
+    @Override
+    public CompletableFuture<DubboRpcResult> sendRequest(final DubboMessage request,
+                                                         final Class<?> returnType,
+                                                         final Type genericReturnType) {
+        return send(request, client -> client.sendRequest(request, returnType, genericReturnType));
+    }
+
+    @Override
+    public CompletableFuture<DubboRpcResult> sendRequest(final DubboMessage request,
+                                                         final Class<?> returnType,
+                                                         final long timeout) {
+        return send(request, client -> client.sendRequest(request, returnType, timeout));
+    }
+
+    @Override
+    public CompletableFuture<DubboRpcResult> sendRequest(final DubboMessage request,
+                                                         final Class<?> returnType,
+                                                         final Type genericReturnType,
+                                                         final long timeout) {
+        return send(request, client -> client.sendRequest(request, returnType, genericReturnType, timeout));
+    }
+
+    @Override
+    public CompletableFuture<DubboMessageWrapper> sendReqWithoutRespDeserialize(final DubboMessage request,
+                                                                                final Class<?> returnType,
+                                                                                final long timeout) {
+        return send(request, client -> client.sendReqWithoutRespDeserialize(request, returnType, timeout));
+    }
+
+    private <T> CompletableFuture<T> send(final DubboMessage request,
+                                          final Function<NettyDubboClient, CompletableFuture<T>> sender) {
+        ClusterEndpoint selected = select();
+        // an endpoint removed since its selection is left out of the selection already, so the next one differs
+        while (selected != null && !selected.onStart()) {
+            selected = select();
+        }
+        if (selected == null) {
+            ReferenceCountUtil.release(request);
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new ConnectFailedException("No endpoint in the cluster client"));
+            return future;
+        }
+        final ClusterEndpoint endpoint = selected;
+        final long startNanos = System.nanoTime();
+        final CompletableFuture<T> future = sender.apply(endpoint.getClient());
+        future.whenComplete((result, t) -> onComplete(endpoint, startNanos, t));
+        return future;
+    }
+
+    private void onComplete(final ClusterEndpoint endpoint, final long startNanos, final Throwable error) {
+        final long now = System.nanoTime();
+        final Throwable t = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        final boolean timeout = t instanceof ResponseTimeoutException || t instanceof RequestTimeoutException;
+        final boolean failed = timeout || t instanceof ConnectFailedException ||
+                t instanceof UnknownResponseStatusException;
+        // a failed connection responds fast, so only the timeouts tell the latency besides the responses
+        if (endpoint.onComplete(t == null || timeout ? now - startNanos : -1L, failed)) {
+            endpoint.getClient().close();
+        }
+        if (failed && builder.getFailuresToEject() > 0 &&
+                endpoint.getConsecutiveFailures() >= builder.getFailuresToEject()) {
+            eject(endpoint, now);
+        }
+    }
+
+    private synchronized void eject(final ClusterEndpoint endpoint, final long now) {
+        if (endpoint.isEjected(now) || endpoint.isRemoved()) {
+            return;
+        }
+        final ClusterEndpoint[] current = this.endpoints;
+        int ejected = 0;
+        for (ClusterEndpoint e : current) {
+            if (e.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if ((ejected + 1) * 100 > current.length * builder.getMaxEjectionPercent()) {
+            return;
+        }
+        endpoint.eject(now, ejectionNanos);
+        LOGGER.info("Ejected endpoint " + endpoint.getAddress() + " for " + builder.getEjectionMillis() +
+                " ms after " + builder.getFailuresToEject() + " consecutive failures.");
+    }
+
+    @Override
+    public boolean isActive() {
+        for (ClusterEndpoint endpoint : endpoints) {
+            if (endpoint.getClient().isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        final ClusterEndpoint[] current = this.endpoints;
+        this.endpoints = EMPTY;
+        for (ClusterEndpoint endpoint : current) {
+            endpoint.markRemoved();
+            endpoint.getClient().close();
+        }
+    }
+}
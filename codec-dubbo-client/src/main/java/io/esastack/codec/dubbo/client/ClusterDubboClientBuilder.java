@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClusterDubboClientBuilder {
+
+    private DubboClientBuilder clientBuilder;
+    private final List<String> endpoints = new ArrayList<>();
+    private long decayMillis = 10_000L;
+    private int failuresToEject = 5;
+    private long ejectionMillis = 30_000L;
+    private int maxEjectionPercent = 50;
+
+    public DubboClientBuilder getClientBuilder() {
+        return clientBuilder;
+    }
+
+    /**
+     * Template of the clients of the endpoints, each client gets a copy of it with the host and port of its endpoint.
+     */
+    public ClusterDubboClientBuilder setClientBuilder(DubboClientBuilder clientBuilder) {
+        this.clientBuilder = clientBuilder;
+        return this;
+    }
+
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    public ClusterDubboClientBuilder addEndpoint(String host, int port) {
+        this.endpoints.add(ClusterEndpoint.address(host, port));
+        return this;
+    }
+
+    public long getDecayMillis() {
+        return decayMillis;
+    }
+
+    /**
+     * Time constant of the peak EWMA latency of the endpoints.
+     */
+    public ClusterDubboClientBuilder setDecayMillis(long decayMillis) {
+        this.decayMillis = decayMillis;
+        return this;
+    }
+
+    public int getFailuresToEject() {
+        return failuresToEject;
+    }
+
+    /**
+     * Consecutive connection failures or timeouts of an endpoint before it is ejected, {@code 0} disables the
+     * ejection.
+     */
+    public ClusterDubboClientBuilder setFailuresToEject(int failuresToEject) {
+        this.failuresToEject = failuresToEject;
+        return this;
+    }
+
+    public long getEjectionMillis() {
+        return ejectionMillis;
+    }
+
+    public ClusterDubboClientBuilder setEjectionMillis(long ejectionMillis) {
+        this.ejectionMillis = ejectionMillis;
+        return this;
+    }
+
+    public int getMaxEjectionPercent() {
+        return maxEjectionPercent;
+    }
+
+    /**
+     * Share of the endpoints which may be ejected at the same time, the others stay in use whatever their failures.
+     */
+    public ClusterDubboClientBuilder setMaxEjectionPercent(int maxEjectionPercent) {
+        this.maxEjectionPercent = maxEjectionPercent;
+        return this;
+    }
+
+    public ClusterDubboClient build() {
+        return new ClusterDubboClient(this);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A provider of a {@link ClusterDubboClient}, with its own {@link NettyDubboClient}, and so its own connection pool.
+ * <p>
+ * The load of an endpoint is its peak EWMA latency times its outstanding requests plus one: a latency above the
+ * average is taken at once, while a lower one decays the average with the time since the last sample, so a slow
+ * endpoint is avoided right away and tried again progressively. An endpoint without any latency yet is only preferred
+ * while it has no outstanding request.
+ */
+public final class ClusterEndpoint {
+
+    private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    /**
+     * Sign bit of {@link #pending} set once the endpoint is removed, so that a request can never start on a removed
+     * endpoint which has been closed already, and the removed endpoint is closed exactly once.
+     */
+    private static final int REMOVED = Integer.MIN_VALUE;
+
+    private final String host;
+    private final int port;
+    private final NettyDubboClient client;
+    private final double decayNanos;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder ejections = new LongAdder();
+    private volatile long ejectedUntilNanos;
+    private volatile boolean ejected;
+    /**
+     * Guarded by this.
+     */
+    private double costNanos;
+    private long stampNanos = System.nanoTime();
+
+    ClusterEndpoint(String host, int port, NettyDubboClient client, long decayMillis) {
+        this.host = host;
+        this.port = port;
+        this.client = client;
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMillis);
+    }
+
+    static String address(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * @return {@code false} if the endpoint has been removed, the request must then be sent to another endpoint
+     */
+    boolean onStart() {
+        for (;;) {
+            final int current = pending.get();
+            if ((current & REMOVED) != 0) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return whether the endpoint has been removed and has no outstanding request any more
+     */
+    boolean onComplete(long rttNanos, boolean failed) {
+        if (failed) {
+            consecutiveFailures.incrementAndGet();
+        } else {
+            consecutiveFailures.set(0);
+        }
+        if (rttNanos >= 0L) {
+            observe(rttNanos);
+        }
+        return pending.decrementAndGet() == REMOVED;
+    }
+
+    synchronized void observe(double rttNanos) {
+        final long now = System.nanoTime();
+        final double elapsed = Math.max(now - stampNanos, 0L);
+        final double weight = Math.exp(-elapsed / decayNanos);
+        if (rttNanos > costNanos) {
+            costNanos = rttNanos;
+        } else {
+            costNanos = costNanos * weight + rttNanos * (1D - weight);
+        }
+        stampNanos = now;
+    }
+
+    double load() {
+        final double cost;
+        synchronized (this) {
+            observe(0D);
+            cost = costNanos;
+        }
+        final int outstanding = getPending();
+        if (cost == 0D && outstanding != 0) {
+            return PENALTY + outstanding;
+        }
+        return cost * (outstanding + 1);
+    }
+
+    int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    void eject(long nowNanos, long ejectionNanos) {
+        ejectedUntilNanos = nowNanos + ejectionNanos;
+        ejected = true;
+        consecutiveFailures.set(0);
+        ejections.increment();
+    }
+
+    boolean isEjected(long nowNanos) {
+        if (!ejected) {
+            return false;
+        }
+        if (nowNanos - ejectedUntilNanos >= 0L) {
+            ejected = false;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the endpoint has no outstanding request, so that it can be closed at once, {@code false} if it
+     * has been removed already
+     */
+    boolean markRemoved() {
+        for (;;) {
+            final int current = pending.get();
+            if ((current & REMOVED) != 0) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current | REMOVED)) {
+                return current == 0;
+            }
+        }
+    }
+
+    NettyDubboClient getClient() {
+        return client;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getAddress() {
+        return address(host, port);
+    }
+
+    public int getPending() {
+        return pending.get() & ~REMOVED;
+    }
+
+    /**
+     * Peak EWMA latency, decayed to now.
+     */
+    public long getLatencyNanos() {
+        synchronized (this) {
+            observe(0D);
+            return (long) costNanos;
+        }
+    }
+
+    public boolean isEjected() {
+        return isEjected(System.nanoTime());
+    }
+
+    /**
+     * Times the endpoint has been ejected for consecutive failures.
+     */
+    public long getEjections() {
+        return ejections.sum();
+    }
+
+    public boolean isRemoved() {
+        return (pending.get() & REMOVED) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterEndpoint{" +
+                "address=" + getAddress() +
+                ", pending=" + getPending() +
+                ", latencyMicros=" + TimeUnit.NANOSECONDS.toMicros(getLatencyNanos()) +
+                ", ejected=" + isEjected() +
+                ", ejections=" + getEjections() +
+                '}';
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.dubbo.client.serialize.SerializeHandler;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Two-way requests in flight of the coalescable methods of a client, by {@link InvocationKey}: a request identical to
+ * one in flight is not sent, its caller is given the response of the request in flight.
+ * <p>
+ * The response is received serialized once and then shared by the callers, each one deserializing its own view of the
+ * body by the {@link SerializeHandler} of the client if it expects it so. The callers share the fate of the request in
+ * flight, including its errors and its timeout: a caller which joins a request in flight is completed within the
+ * timeout of the first caller, not its own. Requests to different groups are never joined, see {@link InvocationKey}.
+ */
+final class CoalescedRequests {
+
+    private final Predicate<DubboMessage> coalescable;
+    private final SerializeHandler serializeHandler;
+    private final CoalescingStats stats = new CoalescingStats();
+    private final ConcurrentMap<InvocationKey, Flight> flights = new ConcurrentHashMap<>();
+
+    CoalescedRequests(final Predicate<DubboMessage> coalescable, final SerializeHandler serializeHandler) {
+        this.coalescable = coalescable;
+        this.serializeHandler = serializeHandler;
+    }
+
+    /**
+     * Callback to send the request with, or {@code null} if the request has been released and attached to an
+     * identical request in flight.
+     *
+     * @param key key of the request if already known, or {@code null}
+     */
+    ResponseCallback coalesce(final DubboMessage request, InvocationKey key, final ResponseCallback callback) {
+        if (!request.getHeader().isTwoWay() || !coalescable.test(request)) {
+            return callback;
+        }
+        if (key == null) {
+            key = InvocationKey.of(request);
+        }
+        if (key == null) {
+            return callback;
+        }
+        for (;;) {
+            final Flight flight = flights.get(key);
+            if (flight == null) {
+                final Flight created = new Flight(key, callback);
+                if (flights.putIfAbsent(key, created) == null) {
+                    stats.onSent();
+                    return created;
+                }
+            } else if (flight.join(callback)) {
+                stats.onCoalesced();
+                ReferenceCountUtil.release(request);
+                return null;
+            }
+            // else the flight has completed and left the map, send the request as a new one
+        }
+    }
+
+    int size() {
+        return flights.size();
+    }
+
+    CoalescingStats getStats() {
+        return stats;
+    }
+
+    private final class Flight implements ResponseCallback {
+
+        private final InvocationKey key;
+        private final ResponseCallback first;
+        private final List<ResponseCallback> callbacks = new ArrayList<>(4);
+        private boolean done;
+
+        private Flight(final InvocationKey key, final ResponseCallback first) {
+            this.key = key;
+            this.first = first;
+            this.callbacks.add(first);
+        }
+
+        private synchronized boolean join(final ResponseCallback callback) {
+            if (done) {
+                return false;
+            }
+            callbacks.add(callback);
+            return true;
+        }
+
+        private synchronized List<ResponseCallback> snapshot() {
+            return new ArrayList<>(callbacks);
+        }
+
+        private List<ResponseCallback> complete() {
+            flights.remove(key, this);
+            synchronized (this) {
+                done = true;
+                return callbacks;
+            }
+        }
+
+        @Override
+        public void onResponse(final Object result) {
+            final List<ResponseCallback> all = complete();
+            if (!(result instanceof DubboMessageWrapper)) {
+                all.forEach(callback -> callback.onResponse(result));
+                return;
+            }
+            final DubboMessageWrapper wrapper = (DubboMessageWrapper) result;
+            final DubboMessage response = wrapper.getMessage();
+            final int last = all.size() - 1;
+            // a pooled response is recycled once released, so it is never shared: every callback takes a copy
+            final boolean pooled = last > 0 && response.isPooled();
+            for (int i = 0; i <= last; i++) {
+                // the last callback takes the response, the others a view of their own of its body, and a copy of
+                // its header
+                respond(all.get(i), i == last && !pooled ? response : copyOf(response));
+            }
+            if (pooled) {
+                // the copies hold the body, the pooled message alone is recycled
+                final ByteBuf body = response.getBody();
+                response.setBody(null).release();
+                if (body != null) {
+                    body.release();
+                }
+            }
+        }
+
+        private DubboMessage copyOf(final DubboMessage response) {
+            return new DubboMessage()
+                    .setHeader(response.getHeader().copy())
+                    .setBody(response.getBody() == null ? null : response.getBody().retainedDuplicate())
+                    .setFirstByteNanos(response.getFirstByteNanos())
+                    .setDecodedNanos(response.getDecodedNanos());
+        }
+
+        private void respond(final ResponseCallback callback, final DubboMessage message) {
+            if (callback.deserialized()) {
+                serializeHandler.deserialize(message, callback);
+            } else {
+                callback.onResponse(new DubboMessageWrapper(message));
+            }
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            complete().forEach(callback -> callback.onError(e));
+        }
+
+        @Override
+        public boolean deserialized() {
+            return false;
+        }
+
+        @Override
+        public void onGotConnection(final boolean b, final String errMsg) {
+            snapshot().forEach(callback -> callback.onGotConnection(b, errMsg));
+        }
+
+        @Override
+        public void onWriteToNetwork(final boolean isSuccess, final String errMsg) {
+            snapshot().forEach(callback -> callback.onWriteToNetwork(isSuccess, errMsg));
+        }
+
+        @Override
+        public Class<?> getReturnType() {
+            return first.getReturnType();
+        }
+
+        @Override
+        public Type getGenericReturnType() {
+            return first.getGenericReturnType();
+        }
+    }
+}
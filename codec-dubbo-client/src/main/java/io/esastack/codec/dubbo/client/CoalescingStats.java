@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Counters of the coalesced requests of a client, see {@link DubboClientBuilder#setCoalescable(Predicate)}.
+ */
+public final class CoalescingStats {
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    void onSent() {
+        sent.increment();
+    }
+
+    void onCoalesced() {
+        coalesced.increment();
+    }
+
+    /**
+     * Coalescable requests sent since the creation of the client, each one shared by the identical requests made while
+     * it was in flight.
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Requests not sent but given the response of an identical request in flight.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescingStats{" +
+                "sent=" + getSent() +
+                ", coalesced=" + getCoalesced() +
+                '}';
+    }
+}
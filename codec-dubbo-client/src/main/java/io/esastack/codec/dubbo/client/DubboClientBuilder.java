@@ -16,12 +16,25 @@
 package io.esastack.codec.dubbo.client;
 
 import io.esastack.codec.common.connection.NettyConnectionConfig;
+import io.esastack.codec.common.limiter.ConcurrencyLimit;
+import io.esastack.codec.dubbo.client.serialize.DeserializationStrategy;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class DubboClientBuilder {
 
     private int readTimeout = 6000;
     private int writeTimeout = 1000;
     private NettyConnectionConfig connectionConfig;
+    private Supplier<ConcurrencyLimit> concurrencyLimit;
+    private boolean concurrencyLimitPerMethod;
+    private HedgingPolicy hedgingPolicy;
+    private DeserializationStrategy deserializationStrategy;
+    private ResponseCachePolicy responseCachePolicy;
+    private Predicate<DubboMessage> coalescable;
+    private boolean pooledResponses;
 
     public int getWriteTimeout() {
         return writeTimeout;
@@ -50,6 +63,124 @@ public class DubboClientBuilder {
         return this;
     }
 
+    public Supplier<ConcurrencyLimit> getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Adaptive limit of the concurrent two-way requests of the client, such as {@code AimdLimit::new} or
+     * {@code GradientLimit::new}; the requests beyond the limit fail right away with a
+     * {@link io.esastack.codec.common.exception.LimitExceededException}. {@code null}, the default, disables it.
+     */
+    public DubboClientBuilder setConcurrencyLimit(Supplier<ConcurrencyLimit> concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        return this;
+    }
+
+    public boolean isConcurrencyLimitPerMethod() {
+        return concurrencyLimitPerMethod;
+    }
+
+    /**
+     * Limits each method of each interface separately instead of the client as a whole, a slow method does not take
+     * the concurrency of the others.
+     */
+    public DubboClientBuilder setConcurrencyLimitPerMethod(boolean concurrencyLimitPerMethod) {
+        this.concurrencyLimitPerMethod = concurrencyLimitPerMethod;
+        return this;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sends a backup request on another connection of the pool when a two-way request selected by
+     * {@link HedgingPolicy#setHedgeable} is not responded after the delay of the policy. {@code null}, the default,
+     * disables it.
+     */
+    public DubboClientBuilder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    public DeserializationStrategy getDeserializationStrategy() {
+        return deserializationStrategy;
+    }
+
+    /**
+     * Where the responses of the client are deserialized, such as
+     * {@code DeserializationStrategy.workStealing().inlineBelow(4096)}. {@code null}, the default, uses the
+     * {@link io.esastack.codec.dubbo.client.serialize.SerializeHandler#get()} shared by the clients. The executor of
+     * an owned strategy is created for each client, and shut down when the client is closed.
+     */
+    public DubboClientBuilder setDeserializationStrategy(DeserializationStrategy deserializationStrategy) {
+        this.deserializationStrategy = deserializationStrategy;
+        return this;
+    }
+
+    public ResponseCachePolicy getResponseCachePolicy() {
+        return responseCachePolicy;
+    }
+
+    /**
+     * Serves the repeated calls of the pure lookup methods of the policy from a cache of their responses.
+     * {@code null}, the default, disables it.
+     */
+    public DubboClientBuilder setResponseCachePolicy(ResponseCachePolicy responseCachePolicy) {
+        this.responseCachePolicy = responseCachePolicy;
+        return this;
+    }
+
+    public Predicate<DubboMessage> getCoalescable() {
+        return coalescable;
+    }
+
+    /**
+     * Selects the requests of the idempotent methods, by {@link DubboMessage#getInterfaceName()} and
+     * {@link DubboMessage#getMethodName()}, whose identical two-way requests in flight are sent once and share the
+     * response. {@code null}, the default, disables it. A caller joining a request in flight inherits the timeout of
+     * the first caller, not the one it passed. The requests to different groups are never coalesced.
+     */
+    public DubboClientBuilder setCoalescable(Predicate<DubboMessage> coalescable) {
+        this.coalescable = coalescable;
+        return this;
+    }
+
+    public boolean isPooledResponses() {
+        return pooledResponses;
+    }
+
+    /**
+     * Decodes the responses into {@link DubboMessage#newPooledInstance()} messages, which are recycled with their
+     * header once released. The {@link DubboMessage} given by
+     * {@link DubboClient#sendReqWithoutRespDeserialize(DubboMessage, Class, long)} must then not be used after its
+     * release. Leaked responses are reported by the netty leak detector, see {@code io.netty.leakDetection.level}.
+     * A pooled response is never handed to several callers: the callers of a {@link #setCoalescable coalesced}
+     * request get copies of their own.
+     */
+    public DubboClientBuilder setPooledResponses(boolean pooledResponses) {
+        this.pooledResponses = pooledResponses;
+        return this;
+    }
+
+    /**
+     * Copies this builder with a copy of the connection config, for a client of another endpoint.
+     */
+    DubboClientBuilder copy() {
+        return new DubboClientBuilder()
+                .setReadTimeout(readTimeout)
+                .setWriteTimeout(writeTimeout)
+                .setConnectionConfig(connectionConfig == null ? new NettyConnectionConfig() : connectionConfig.copy())
+                .setConcurrencyLimit(concurrencyLimit)
+                .setConcurrencyLimitPerMethod(concurrencyLimitPerMethod)
+                .setHedgingPolicy(hedgingPolicy)
+                .setDeserializationStrategy(deserializationStrategy)
+                .setResponseCachePolicy(responseCachePolicy)
+                .setCoalescable(coalescable)
+                .setPooledResponses(pooledResponses);
+    }
+
     public NettyDubboClient build() {
         return new NettyDubboClient(this);
     }
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.connection.NettyConnection;
+import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.esastack.codec.dubbo.core.codec.DubboHeader;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+import io.esastack.codec.dubbo.core.codec.helper.LazyDubboRpcResult;
+import io.netty.util.ReferenceCountUtil;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A request sent with a possible backup request: the first response completes the callback, and the response of the
+ * other request, if any, is released. When the original request wins, the in-flight entry of the backup is removed;
+ * when the backup wins, the original request is left outstanding until its response or timeout, so that its latency
+ * is recorded whether or not it won, otherwise the percentile delay would only see the faster responses and shrink.
+ * <p>
+ * The backup shares the body of the original request by a retained duplicate taken before the original one is
+ * written, with its own header, so it gets a new request id. An error completes the callback only when the other
+ * request is not outstanding any more, and no backup request is sent after that.
+ */
+final class HedgedRequest {
+
+    private static final int COMPLETED = -1;
+
+    private final Hedging hedging;
+    private final ResponseCallback delegate;
+    private final long timeoutMillis;
+    private final long startNanos;
+    /**
+     * Outstanding requests, or {@link #COMPLETED}.
+     */
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+    private final AtomicReference<DubboMessage> backupMessage;
+    private final Leg primary = new Leg(false);
+    private final Leg backup = new Leg(true);
+    private volatile Future<?> timer;
+
+    HedgedRequest(Hedging hedging, DubboMessage request, ResponseCallback delegate, long timeoutMillis) {
+        this.hedging = hedging;
+        this.delegate = delegate;
+        this.timeoutMillis = timeoutMillis;
+        this.startNanos = System.nanoTime();
+        // the header reserved before the body belongs to the original request, so the backup is encoded by copy
+        final DubboMessage message = new DubboMessage()
+                .setHeader(new DubboHeader().setSeriType(request.getHeader().getSeriType()))
+                .setBody(request.getBody().retainedDuplicate())
+                .setInterfaceName(request.getInterfaceName())
+                .setMethodName(request.getMethodName())
+                .setGroup(request.getGroup());
+        this.backupMessage = new AtomicReference<>(message);
+    }
+
+    ResponseCallback primary() {
+        return primary;
+    }
+
+    ResponseCallback backup() {
+        return backup;
+    }
+
+    boolean isCompleted() {
+        return outstanding.get() == COMPLETED;
+    }
+
+    long remainingMillis() {
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return Math.max(1L, timeoutMillis - elapsed);
+    }
+
+    void onPrimarySent(NettyConnection connection, long requestId) {
+        primary.bind(connection, requestId);
+    }
+
+    void setTimer(Future<?> timer) {
+        this.timer = timer;
+        if (isCompleted()) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Takes the backup request to send it.
+     *
+     * @return the backup request, or {@code null} if the request has completed in the meantime
+     */
+    DubboMessage takeBackup() {
+        final DubboMessage message = backupMessage.getAndSet(null);
+        if (message == null) {
+            return null;
+        }
+        int current;
+        do {
+            current = outstanding.get();
+            if (current == COMPLETED) {
+                message.release();
+                return null;
+            }
+        } while (!outstanding.compareAndSet(current, current + 1));
+        return message;
+    }
+
+    void onBackupSent(NettyConnection connection, long requestId) {
+        backup.bind(connection, requestId);
+    }
+
+    /**
+     * Gives up the backup request, which will not be sent.
+     */
+    void cancelBackup() {
+        final DubboMessage message = backupMessage.getAndSet(null);
+        if (message != null) {
+            message.release();
+        }
+    }
+
+    private void complete() {
+        final Future<?> timer = this.timer;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        cancelBackup();
+    }
+
+    private final class Leg implements ResponseCallback {
+
+        private final boolean isBackup;
+        private volatile NettyConnection connection;
+        private volatile long requestId;
+        /**
+         * Failed before or after being written, so it has no in-flight entry to remove.
+         */
+        private volatile boolean failed;
+
+        private Leg(boolean isBackup) {
+            this.isBackup = isBackup;
+        }
+
+        private void bind(NettyConnection connection, long requestId) {
+            if (failed) {
+                // the request id of the message was not assigned by this send
+                return;
+            }
+            this.requestId = requestId;
+            this.connection = connection;
+            if (isCompleted()) {
+                cancel();
+            }
+        }
+
+        private void cancel() {
+            final NettyConnection connection = this.connection;
+            if (connection != null && !failed) {
+                connection.getInFlightRequests().remove(requestId);
+            }
+        }
+
+        private void release(Object result) {
+            if (result instanceof DubboMessageWrapper) {
+                ReferenceCountUtil.release(((DubboMessageWrapper) result).getMessage());
+            } else if (result instanceof LazyDubboRpcResult) {
+                ((LazyDubboRpcResult) result).release();
+            }
+        }
+
+        @Override
+        public void onResponse(Object result) {
+            if (!isBackup) {
+                hedging.onLatency(System.nanoTime() - startNanos);
+            }
+            if (outstanding.getAndSet(COMPLETED) == COMPLETED) {
+                // the loser
+                release(result);
+                return;
+            }
+            complete();
+            if (isBackup) {
+                hedging.getStats().onWon();
+            } else {
+                backup.cancel();
+            }
+            delegate.onResponse(result);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            failed = true;
+            if (!isBackup && (e instanceof ResponseTimeoutException || e instanceof RequestTimeoutException)) {
+                // at least as slow as the timeout
+                hedging.onLatency(System.nanoTime() - startNanos);
+            }
+            for (;;) {
+                final int current = outstanding.get();
+                if (current == COMPLETED) {
+                    return;
+                }
+                if (current == 1) {
+                    if (outstanding.compareAndSet(1, COMPLETED)) {
+                        complete();
+                        delegate.onError(e);
+                        return;
+                    }
+                } else if (outstanding.compareAndSet(current, current - 1)) {
+                    // the other request is still outstanding
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean deserialized() {
+            // the response of the loser is released as it is
+            return delegate.deserialized() && !isCompleted();
+        }
+
+        @Override
+        public void onGotConnection(boolean b, String errMsg) {
+            if (!isBackup) {
+                delegate.onGotConnection(b, errMsg);
+            }
+        }
+
+        @Override
+        public void onWriteToNetwork(boolean isSuccess, String errMsg) {
+            if (!isBackup) {
+                delegate.onWriteToNetwork(isSuccess, errMsg);
+            }
+        }
+
+        @Override
+        public Class<?> getReturnType() {
+            return delegate.getReturnType();
+        }
+
+        @Override
+        public Type getGenericReturnType() {
+            return delegate.getGenericReturnType();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * State of the {@link HedgingPolicy} of a client: the budget of the backup requests and the recent latencies.
+ * <p>
+ * The budget is a bucket of tokens, every hedgeable request adds {@link HedgingPolicy#getBudgetRatio()} token and
+ * every backup request takes one, so the backup requests cannot exceed the ratio of the requests, plus the burst. The
+ * latencies of the last {@link #WINDOW} requests, from the send to the first response, are kept in a ring and sorted
+ * every {@link #RECOMPUTE_INTERVAL} requests to get the percentile delay.
+ */
+final class Hedging {
+
+    static final int WINDOW = 1024;
+    static final int RECOMPUTE_INTERVAL = 256;
+
+    private static final long TOKEN = 1000L;
+
+    private final HedgingPolicy policy;
+    private final HedgingStats stats = new HedgingStats();
+    private final long deposit;
+    private final long maxTokens;
+    private final long fixedDelayNanos;
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(WINDOW);
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long percentileNanos;
+
+    Hedging(HedgingPolicy policy) {
+        if (policy.getDelayMillis() < 0L) {
+            throw new IllegalArgumentException("delayMillis must not be negative: " + policy.getDelayMillis());
+        }
+        if (policy.getDelayPercentile() < 0D || policy.getDelayPercentile() >= 100D) {
+            throw new IllegalArgumentException("delayPercentile must be in [0, 100): " + policy.getDelayPercentile());
+        }
+        if (policy.getBudgetRatio() <= 0D || policy.getBudgetRatio() > 1D) {
+            throw new IllegalArgumentException("budgetRatio must be in (0, 1]: " + policy.getBudgetRatio());
+        }
+        if (policy.getBudgetBurst() < 1) {
+            throw new IllegalArgumentException("budgetBurst must be positive: " + policy.getBudgetBurst());
+        }
+        this.policy = policy;
+        this.deposit = Math.max(1L, (long) (policy.getBudgetRatio() * TOKEN));
+        this.maxTokens = policy.getBudgetBurst() * TOKEN;
+        this.fixedDelayNanos = TimeUnit.MILLISECONDS.toNanos(policy.getDelayMillis());
+    }
+
+    boolean isHedgeable(DubboMessage request) {
+        return policy.getHedgeable() != null && policy.getHedgeable().test(request);
+    }
+
+    /**
+     * Adds the share of a hedgeable request to the budget.
+     */
+    void onRequest() {
+        stats.onRequest();
+        deposit(deposit);
+    }
+
+    /**
+     * Gives back the token of a backup request which has not been sent.
+     */
+    void refund() {
+        deposit(TOKEN);
+    }
+
+    private void deposit(long amount) {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= maxTokens) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(maxTokens, current + amount)));
+    }
+
+    /**
+     * Takes a token of the budget for a backup request.
+     */
+    boolean tryAcquire() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                stats.onBudgetExhausted();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    long delayNanos() {
+        final long percentile = percentileNanos;
+        final long delay = percentile > 0L ? percentile : fixedDelayNanos;
+        stats.setDelayNanos(delay);
+        return delay;
+    }
+
+    long getSamples() {
+        return samples.get();
+    }
+
+    void onLatency(long nanos) {
+        if (policy.getDelayPercentile() <= 0D) {
+            return;
+        }
+        final long count = samples.incrementAndGet();
+        latencies.lazySet((int) (count & (WINDOW - 1)), nanos);
+        if (count >= WINDOW && (count & (RECOMPUTE_INTERVAL - 1)) == 0L) {
+            final long[] window = new long[WINDOW];
+            for (int i = 0; i < WINDOW; i++) {
+                window[i] = latencies.get(i);
+            }
+            Arrays.sort(window);
+            final int index = (int) Math.ceil(policy.getDelayPercentile() / 100D * WINDOW) - 1;
+            percentileNanos = window[Math.max(0, index)];
+        }
+    }
+
+    HedgingStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+
+import java.util.function.Predicate;
+
+/**
+ * Policy of the backup requests of a client: a two-way request which has not been responded after a delay is sent
+ * again on another connection of the pool, the first response wins and the other one is discarded.
+ * <p>
+ * Only idempotent methods must be hedged, since the provider may execute the request twice, so hedging is opt-in:
+ * only the requests selected by {@link #getHedgeable()} are hedged. The extra requests are
+ * limited by a budget of {@link #getBudgetRatio()} of the hedgeable requests, plus a burst of
+ * {@link #getBudgetBurst()} requests.
+ */
+public class HedgingPolicy {
+
+    private long delayMillis = 10L;
+    private double delayPercentile;
+    private double budgetRatio = 0.05D;
+    private int budgetBurst = 10;
+    private Predicate<DubboMessage> hedgeable;
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * Fixed delay before sending the backup request, also used until enough latencies have been observed when
+     * hedging at a percentile.
+     */
+    public HedgingPolicy setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+        return this;
+    }
+
+    public double getDelayPercentile() {
+        return delayPercentile;
+    }
+
+    /**
+     * Percentile of the recent latencies of the client used as the delay, such as {@code 95}, {@code 0}, the default,
+     * uses the fixed {@link #getDelayMillis()}.
+     */
+    public HedgingPolicy setDelayPercentile(double delayPercentile) {
+        this.delayPercentile = delayPercentile;
+        return this;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * Backup requests allowed per hedgeable request, {@code 0.05} means at most 5% of extra load.
+     */
+    public HedgingPolicy setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+        return this;
+    }
+
+    public int getBudgetBurst() {
+        return budgetBurst;
+    }
+
+    /**
+     * Backup requests the budget may save up while they are not needed.
+     */
+    public HedgingPolicy setBudgetBurst(int budgetBurst) {
+        this.budgetBurst = budgetBurst;
+        return this;
+    }
+
+    public Predicate<DubboMessage> getHedgeable() {
+        return hedgeable;
+    }
+
+    /**
+     * Selects the requests of the idempotent methods by {@link DubboMessage#getInterfaceName()} and
+     * {@link DubboMessage#getMethodName()}, {@code null}, the default, hedges no request.
+     */
+    public HedgingPolicy setHedgeable(Predicate<DubboMessage> hedgeable) {
+        this.hedgeable = hedgeable;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingPolicy{" +
+                "delayMillis=" + delayMillis +
+                ", delayPercentile=" + delayPercentile +
+                ", budgetRatio=" + budgetRatio +
+                ", budgetBurst=" + budgetBurst +
+                '}';
+    }
+}
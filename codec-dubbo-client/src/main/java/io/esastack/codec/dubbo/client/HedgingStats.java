@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the backup requests of a client, see {@link DubboClientBuilder#setHedgingPolicy(HedgingPolicy)}.
+ */
+public final class HedgingStats {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder won = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder noConnection = new LongAdder();
+    private volatile long delayNanos;
+
+    void onRequest() {
+        requests.increment();
+    }
+
+    void onHedged() {
+        hedged.increment();
+    }
+
+    void onWon() {
+        won.increment();
+    }
+
+    void onBudgetExhausted() {
+        budgetExhausted.increment();
+    }
+
+    void onNoConnection() {
+        noConnection.increment();
+    }
+
+    void setDelayNanos(long delayNanos) {
+        this.delayNanos = delayNanos;
+    }
+
+    /**
+     * Hedgeable requests sent since the creation of the client.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Backup requests sent.
+     */
+    public long getHedged() {
+        return hedged.sum();
+    }
+
+    /**
+     * Backup requests responded before the original ones.
+     */
+    public long getWon() {
+        return won.sum();
+    }
+
+    /**
+     * Backup requests not sent because the budget was used up.
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    /**
+     * Backup requests not sent because there was no other connection ready.
+     */
+    public long getNoConnection() {
+        return noConnection.sum();
+    }
+
+    /**
+     * Delay of the last scheduled backup request.
+     */
+    public long getDelayNanos() {
+        return delayNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingStats{" +
+                "requests=" + getRequests() +
+                ", hedged=" + getHedged() +
+                ", won=" + getWon() +
+                ", budgetExhausted=" + getBudgetExhausted() +
+                ", noConnection=" + getNoConnection() +
+                ", delayMicros=" + TimeUnit.NANOSECONDS.toMicros(delayNanos) +
+                '}';
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Identity of the invocation of a two-way request: its serialization type, the bytes encoding its interface,
+ * version, method, parameter types and arguments, and its group, the only attachment which routes the request to
+ * other providers. The other attachments are left out. The requests with equal keys are the same call, whose
+ * response may be shared, see {@link ResponseCache} and {@link CoalescedRequests}.
+ */
+final class InvocationKey {
+
+    private final byte seriType;
+    private final byte[] invocation;
+    private final String group;
+    private final String interfaceName;
+    private final String methodName;
+    private final int hash;
+
+    private InvocationKey(final byte seriType,
+                          final byte[] invocation,
+                          final String group,
+                          final String interfaceName,
+                          final String methodName) {
+        this.seriType = seriType;
+        this.invocation = invocation;
+        this.group = group;
+        this.interfaceName = interfaceName;
+        this.methodName = methodName;
+        this.hash = 31 * (31 * seriType + Arrays.hashCode(invocation)) + Objects.hashCode(group);
+    }
+
+    /**
+     * Key of a two-way request encoded by the client, or {@code null} if the bytes of its invocation are unknown.
+     */
+    static InvocationKey of(final DubboMessage request) {
+        final ByteBuf body = request.getBody();
+        if (body == null || request.getInvocationLength() < 0 || !request.getHeader().isTwoWay()) {
+            return null;
+        }
+        return new InvocationKey(request.getHeader().getSeriType(),
+                ByteBufUtil.getBytes(body, body.readerIndex(), request.getInvocationLength()),
+                request.getGroup(),
+                request.getInterfaceName(),
+                request.getMethodName());
+    }
+
+    String getInterfaceName() {
+        return interfaceName;
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InvocationKey)) {
+            return false;
+        }
+        final InvocationKey that = (InvocationKey) o;
+        return hash == that.hash &&
+                seriType == that.seriType &&
+                Objects.equals(group, that.group) &&
+                Arrays.equals(invocation, that.invocation);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
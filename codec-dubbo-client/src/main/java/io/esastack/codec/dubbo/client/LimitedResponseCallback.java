@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.RpcResult;
+import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.esastack.codec.common.limiter.ConcurrencyLimiter;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+
+import java.lang.reflect.Type;
+
+/**
+ * Releases the permit of a request to the {@link ConcurrencyLimiter} when the request completes, with the round trip
+ * time from the write to the network to the moment the decoder read the whole response, so that neither the
+ * deserialization nor the queueing of the callback counts as time spent by the provider.
+ */
+final class LimitedResponseCallback implements ResponseCallback {
+
+    private final ResponseCallback delegate;
+    private final ConcurrencyLimiter limiter;
+    private final long startNanos;
+    private volatile long writtenNanos;
+
+    LimitedResponseCallback(ResponseCallback delegate, ConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onResponse(Object result) {
+        limiter.onSuccess(rttNanos(decodedNanos(result)));
+        delegate.onResponse(result);
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        if (e instanceof ResponseTimeoutException || e instanceof RequestTimeoutException) {
+            limiter.onDropped(rttNanos(System.nanoTime()));
+        } else {
+            // failed before reaching the provider, or failed by the provider, says nothing of its load
+            limiter.onIgnore();
+        }
+        delegate.onError(e);
+    }
+
+    private long rttNanos(long endNanos) {
+        final long written = writtenNanos;
+        return endNanos - (written == 0L ? startNanos : written);
+    }
+
+    /**
+     * Moment the decoder read the whole response, or now if it is not known, such as for a cached response.
+     */
+    private static long decodedNanos(Object result) {
+        long decoded = 0L;
+        if (result instanceof DubboMessageWrapper) {
+            decoded = ((DubboMessageWrapper) result).getMessage().getDecodedNanos();
+        } else if (result instanceof RpcResult) {
+            decoded = ((RpcResult) result).getDecodedNanos();
+        }
+        return decoded == 0L ? System.nanoTime() : decoded;
+    }
+
+    @Override
+    public boolean deserialized() {
+        return delegate.deserialized();
+    }
+
+    @Override
+    public void onGotConnection(boolean b, String errMsg) {
+        delegate.onGotConnection(b, errMsg);
+    }
+
+    @Override
+    public void onWriteToNetwork(boolean isSuccess, String errMsg) {
+        if (isSuccess) {
+            writtenNanos = System.nanoTime();
+        }
+        delegate.onWriteToNetwork(isSuccess, errMsg);
+    }
+
+    @Override
+    public Class<?> getReturnType() {
+        return delegate.getReturnType();
+    }
+
+    @Override
+    public Type getGenericReturnType() {
+        return delegate.getGenericReturnType();
+    }
+}
@@ -17,15 +17,18 @@ package io.esastack.codec.dubbo.client;
 
 import io.esastack.codec.common.ResponseCallback;
 import io.esastack.codec.common.client.NettyClient;
-import io.esastack.codec.common.client.ReadTimeoutListener;
 import io.esastack.codec.common.connection.ConnectionInitializer;
 import io.esastack.codec.common.connection.NettyConnection;
 import io.esastack.codec.common.connection.NettyConnectionConfig;
-import io.esastack.codec.common.constant.Constants;
 import io.esastack.codec.common.exception.ConnectFailedException;
-import io.esastack.codec.common.exception.RequestTimeoutException;
+import io.esastack.codec.common.exception.LimitExceededException;
+import io.esastack.codec.common.limiter.ConcurrencyLimiter;
 import io.esastack.codec.commons.pool.exception.AcquireFailedException;
 import io.esastack.codec.dubbo.client.handler.DubboClientHandler;
+import io.esastack.codec.dubbo.client.serialize.DeserializationStats;
+import io.esastack.codec.dubbo.client.serialize.DeserializationStrategy;
+import io.esastack.codec.dubbo.client.serialize.SerializeHandler;
+import io.esastack.codec.dubbo.core.DubboConstants;
 import io.esastack.codec.dubbo.core.DubboRpcResult;
 import io.esastack.codec.dubbo.core.codec.DubboHeader;
 import io.esastack.codec.dubbo.core.codec.DubboMessage;
@@ -33,22 +36,43 @@ import io.esastack.codec.dubbo.core.codec.DubboMessageDecoder;
 import io.esastack.codec.dubbo.core.codec.DubboMessageEncoder;
 import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
 import io.esastack.codec.dubbo.core.codec.TTFBLengthFieldBasedFrameDecoder;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.ReferenceCountUtil;
 
 import java.lang.reflect.Type;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 public class NettyDubboClient extends NettyClient implements DubboClient {
 
     private final DubboClientBuilder builder;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final Hedging hedging;
+    private final SerializeHandler serializeHandler;
+    private final ResponseCache responseCache;
+    private final CoalescedRequests coalescedRequests;
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrencyLimiter>> methodLimiters =
+            new ConcurrentHashMap<>();
 
     public NettyDubboClient(final DubboClientBuilder builder) {
         super(builder.getConnectionConfig());
         this.builder = builder;
+        this.concurrencyLimiter = builder.getConcurrencyLimit() == null
+                ? null : new ConcurrencyLimiter(builder.getConcurrencyLimit().get());
+        this.hedging = builder.getHedgingPolicy() == null ? null : new Hedging(builder.getHedgingPolicy());
+        this.serializeHandler = builder.getDeserializationStrategy() == null
+                ? SerializeHandler.get() : new SerializeHandler(builder.getDeserializationStrategy());
+        this.responseCache = builder.getResponseCachePolicy() == null
+                ? null : new ResponseCache(builder.getResponseCachePolicy());
+        this.coalescedRequests = builder.getCoalescable() == null
+                ? null : new CoalescedRequests(builder.getCoalescable(), serializeHandler);
     }
 
     public static DubboClientBuilder newBuilder() {
@@ -57,14 +81,22 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
 
     @Override
     protected ConnectionInitializer createConnectionInitializer(final NettyConnectionConfig connectionConfig) {
-        return (channel, connectionName, callbackMap) -> {
+        return (channel, connectionName, inFlightRequests) -> {
             channel.pipeline().addLast(new DubboMessageEncoder());
             channel.pipeline().addLast(new TTFBLengthFieldBasedFrameDecoder(
                     connectionConfig.getPayload(), 12, 4, 0, 0));
-            channel.pipeline().addLast(new DubboMessageDecoder());
+            channel.pipeline().addLast(new DubboMessageDecoder() {
+                @Override
+                protected boolean isPooled() {
+                    // read when decoding, the builder is not set yet when the connections of the init are created
+                    return builder.isPooledResponses();
+                }
+            });
             channel.pipeline().addLast(new IdleStateHandler(
                     connectionConfig.getHeartbeatTimeoutSeconds(), 0, 0));
-            channel.pipeline().addLast(new DubboClientHandler(connectionName, callbackMap));
+            // the connections of the init are created by the super constructor, before the serializeHandler is set
+            channel.pipeline().addLast(new DubboClientHandler(connectionName, inFlightRequests,
+                    () -> serializeHandler));
         };
     }
 
@@ -94,7 +126,76 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
                                                          final Type genericReturnType,
                                                          final long timeout) {
         final CompletableFuture<DubboRpcResult> cf = new CompletableFuture<>();
-        sendRequest(request, new ResponseCallback() {
+        sendOrShare(request, newCallback(cf, returnType, genericReturnType), timeout);
+        return cf;
+    }
+
+    /**
+     * Sends the requests at once with the read timeout of the client.
+     *
+     * @see #sendBatch(List, Class, Type, long)
+     */
+    public BatchResponses sendBatch(final List<DubboMessage> requests, final Class<?> returnType) {
+        return sendBatch(requests, returnType, returnType, builder.getReadTimeout());
+    }
+
+    /**
+     * Sends the requests at once, such as the calls of a fan-out lookup. The batch is split over the connections of
+     * the pool, the requests of each part are tracked together and written by a single task of the event loop of
+     * their connection, with a single flush.
+     * <p>
+     * The requests are subject to the concurrency limit one by one, but are never hedged. The one-way requests are
+     * sent one by one.
+     *
+     * @param requests          dubbo requests
+     * @param returnType        return type of every request
+     * @param genericReturnType return type of generic
+     * @param timeout           timeout of every request
+     * @return the responses, at the same indexes as the requests
+     */
+    public BatchResponses sendBatch(final List<DubboMessage> requests,
+                                    final Class<?> returnType,
+                                    final Type genericReturnType,
+                                    final long timeout) {
+        final List<CompletableFuture<DubboRpcResult>> futures = new ArrayList<>(requests.size());
+        final List<DubboMessage> batched = new ArrayList<>(requests.size());
+        final List<ResponseCallback> callbacks = new ArrayList<>(requests.size());
+        for (DubboMessage request : requests) {
+            final CompletableFuture<DubboRpcResult> cf = new CompletableFuture<>();
+            futures.add(cf);
+            ResponseCallback callback = newCallback(cf, returnType, genericReturnType);
+            if (!request.getHeader().isTwoWay()) {
+                sendRequest(request, callback, timeout);
+                continue;
+            }
+            callback = callbackToSend(request, callback);
+            if (callback == null) {
+                continue;
+            }
+            final ConcurrencyLimiter limiter = limiterOf(request);
+            if (limiter == null) {
+                callbacks.add(callback);
+            } else if (limiter.tryAcquire()) {
+                callbacks.add(new LimitedResponseCallback(callback, limiter));
+            } else {
+                onError(request, callback, limitExceeded(limiter));
+                continue;
+            }
+            batched.add(request);
+        }
+        final int parts = Math.min(connectionConfig.getMultiplexPoolBuilder().getMaxPoolSize(), batched.size());
+        for (int i = 0; i < parts; i++) {
+            final int from = batched.size() * i / parts;
+            final int to = batched.size() * (i + 1) / parts;
+            acquireAndSendBatch(batched.subList(from, to), callbacks.subList(from, to), timeout);
+        }
+        return new BatchResponses(futures);
+    }
+
+    private ResponseCallback newCallback(final CompletableFuture<DubboRpcResult> cf,
+                                         final Class<?> returnType,
+                                         final Type genericReturnType) {
+        return new ResponseCallback() {
 
             private volatile long invocationFlushTime;
 
@@ -110,7 +211,7 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
 
             @Override
             public void onWriteToNetwork(boolean isSuccess, String errMsg) {
-                invocationFlushTime = System.currentTimeMillis();
+                invocationFlushTime = System.nanoTime();
             }
 
             @Override
@@ -121,8 +222,7 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
             @Override
             public void onResponse(Object result) {
                 final DubboRpcResult rpcResult = (DubboRpcResult) result;
-                rpcResult.setAttachment(
-                        Constants.TRACE.TIME_OF_REQ_FLUSH_KEY, String.valueOf(invocationFlushTime));
+                rpcResult.setFlushedNanos(invocationFlushTime);
                 cf.complete(rpcResult);
             }
 
@@ -135,9 +235,7 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
             public Type getGenericReturnType() {
                 return genericReturnType;
             }
-        }, timeout);
-
-        return cf;
+        };
     }
 
     @Override
@@ -145,7 +243,7 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
                                                                                 Class<?> returnType,
                                                                                 long timeout) {
         final CompletableFuture<DubboMessageWrapper> cf = new CompletableFuture<>();
-        sendRequest(request, new ResponseCallback() {
+        sendOrShare(request, new ResponseCallback() {
 
             private volatile long invocationFlushTime;
 
@@ -157,8 +255,7 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
             @Override
             public void onResponse(Object result) {
                 final DubboMessageWrapper messageWrapper = (DubboMessageWrapper) result;
-                messageWrapper.addAttachment(
-                        Constants.TRACE.TIME_OF_REQ_FLUSH_KEY, String.valueOf(invocationFlushTime));
+                messageWrapper.setFlushedNanos(invocationFlushTime);
                 cf.complete(messageWrapper);
             }
 
@@ -174,7 +271,7 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
 
             @Override
             public void onWriteToNetwork(boolean isSuccess, String errMsg) {
-                this.invocationFlushTime = System.currentTimeMillis();
+                this.invocationFlushTime = System.nanoTime();
             }
 
             @Override
@@ -186,7 +283,211 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
         return cf;
     }
 
+    private void sendOrShare(DubboMessage request, ResponseCallback callback, long timeout) {
+        final ResponseCallback toSend = callbackToSend(request, callback);
+        if (toSend != null) {
+            sendRequest(request, toSend, timeout);
+        }
+    }
+
+    /**
+     * Callback to send the request with, or {@code null} if the request has been served from the response cache or
+     * attached to an identical request in flight, and released.
+     */
+    private ResponseCallback callbackToSend(DubboMessage request, ResponseCallback callback) {
+        final InvocationKey key = responseCache == null ? null : responseCache.keyOf(request);
+        if (key != null && serveCached(request, key, callback)) {
+            return null;
+        }
+        ResponseCallback toSend = callback;
+        if (coalescedRequests != null) {
+            toSend = coalescedRequests.coalesce(request, key, callback);
+            if (toSend == null) {
+                return null;
+            }
+        }
+        // the response is cached once for the callers of a coalesced request
+        return key == null ? toSend : new CachingResponseCallback(toSend, responseCache, key, serializeHandler);
+    }
+
+    /**
+     * Completes the callback with the cached response of the request, deserialized by the calling thread if the
+     * callback expects it so.
+     *
+     * @return whether the response was cached
+     */
+    private boolean serveCached(DubboMessage request, InvocationKey key, ResponseCallback callback) {
+        final DubboMessage cached = responseCache.get(key);
+        if (cached == null) {
+            return false;
+        }
+        ReferenceCountUtil.release(request);
+        if (callback.deserialized()) {
+            callback.onResponse(ClientCodecHelper.toRpcResult(
+                    cached, callback.getReturnType(), callback.getGenericReturnType()));
+        } else {
+            callback.onResponse(new DubboMessageWrapper(cached));
+        }
+        return true;
+    }
+
     private void sendRequest(DubboMessage request, ResponseCallback callback, long timeout) {
+        final ConcurrencyLimiter limiter = request.getHeader().isTwoWay() ? limiterOf(request) : null;
+        if (limiter == null) {
+            hedgeOrSend(request, callback, timeout);
+        } else if (limiter.tryAcquire()) {
+            hedgeOrSend(request, new LimitedResponseCallback(callback, limiter), timeout);
+        } else {
+            onError(request, callback, limitExceeded(limiter));
+        }
+    }
+
+    private static LimitExceededException limitExceeded(final ConcurrencyLimiter limiter) {
+        return new LimitExceededException("Concurrency limit exceeded: " + limiter.getLimit() + " requests.");
+    }
+
+    private ConcurrencyLimiter limiterOf(final DubboMessage request) {
+        if (concurrencyLimiter == null || !builder.isConcurrencyLimitPerMethod() ||
+                request.getInterfaceName() == null || request.getMethodName() == null) {
+            return concurrencyLimiter;
+        }
+        return getConcurrencyLimiter(request.getInterfaceName(), request.getMethodName());
+    }
+
+    /**
+     * Limiter of the client, or of the requests without the interface and method names when limiting per method.
+     *
+     * @return the limiter, or {@code null} if the concurrency limit is disabled
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Limiter of a method when limiting per method, otherwise the limiter of the client.
+     *
+     * @return the limiter, or {@code null} if the concurrency limit is disabled
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter(final String interfaceName, final String methodName) {
+        if (concurrencyLimiter == null || !builder.isConcurrencyLimitPerMethod()) {
+            return concurrencyLimiter;
+        }
+        ConcurrentMap<String, ConcurrencyLimiter> limiters = methodLimiters.get(interfaceName);
+        if (limiters == null) {
+            limiters = methodLimiters.computeIfAbsent(interfaceName, key -> new ConcurrentHashMap<>());
+        }
+        final ConcurrencyLimiter limiter = limiters.get(methodName);
+        return limiter != null ? limiter : limiters.computeIfAbsent(methodName,
+                key -> new ConcurrencyLimiter(builder.getConcurrencyLimit().get()));
+    }
+
+    /**
+     * Backup requests of the client.
+     *
+     * @return the counters, or {@code null} if hedging is disabled
+     */
+    public HedgingStats getHedgingStats() {
+        return hedging == null ? null : hedging.getStats();
+    }
+
+    /**
+     * Response cache of the client.
+     *
+     * @return the counters, or {@code null} if the response cache is disabled
+     */
+    public ResponseCacheStats getResponseCacheStats() {
+        return responseCache == null ? null : responseCache.getStats();
+    }
+
+    /**
+     * Drops the cached responses, such as after an update of the data of the provider.
+     */
+    public void clearResponseCache() {
+        if (responseCache != null) {
+            responseCache.clear();
+        }
+    }
+
+    /**
+     * Coalesced requests of the client.
+     *
+     * @return the counters, or {@code null} if coalescing is disabled
+     */
+    public CoalescingStats getCoalescingStats() {
+        return coalescedRequests == null ? null : coalescedRequests.getStats();
+    }
+
+    /**
+     * Responses deserialized by this client, shared with the other clients without a deserialization strategy.
+     *
+     * @see DubboClientBuilder#setDeserializationStrategy(DeserializationStrategy)
+     */
+    public DeserializationStats getDeserializationStats() {
+        return serializeHandler.getStats();
+    }
+
+    private void hedgeOrSend(DubboMessage request, ResponseCallback callback, long timeout) {
+        if (hedging != null && request.getHeader().isTwoWay() && request.getBody() != null &&
+                hedging.isHedgeable(request)) {
+            sendHedged(new HedgedRequest(hedging, request, callback, timeout), request, timeout);
+        } else {
+            acquireAndSend(request, callback, timeout);
+        }
+    }
+
+    private void sendHedged(final HedgedRequest hedged, final DubboMessage request, final long timeout) {
+        hedging.onRequest();
+        try {
+            CompletableFuture<NettyConnection> future = this.connectionPool.acquire();
+            future.whenComplete((connection, throwable) -> {
+                if (throwable != null) {
+                    handleRequestWhenAcquiredFailed(throwable, request, hedged.primary());
+                    return;
+                }
+                handleRequestWhenAcquiredSuccess(connection, request, hedged.primary(), timeout);
+                hedged.onPrimarySent(connection, request.getHeader().getRequestId());
+                final long delayNanos = hedging.delayNanos();
+                if (!hedged.isCompleted() && delayNanos < TimeUnit.MILLISECONDS.toNanos(timeout)) {
+                    hedged.setTimer(connection.getChannel().eventLoop().schedule(
+                            () -> sendBackup(hedged, connection), delayNanos, TimeUnit.NANOSECONDS));
+                } else {
+                    hedged.cancelBackup();
+                }
+            });
+        } catch (Throwable t) {
+            handleRequestWhenAcquiredFailed(t, request, hedged.primary());
+        }
+    }
+
+    /**
+     * Sends the backup request on another connection than the one of the original request, if the budget allows.
+     */
+    private void sendBackup(final HedgedRequest hedged, final NettyConnection primary) {
+        if (hedged.isCompleted()) {
+            return;
+        }
+        final NettyConnection connection = connectionPool.acquireOther(primary);
+        if (connection == null || !connection.isActive() || !connection.isAcceptingWrites()) {
+            hedging.getStats().onNoConnection();
+            hedged.cancelBackup();
+            return;
+        }
+        if (!hedging.tryAcquire()) {
+            hedged.cancelBackup();
+            return;
+        }
+        final DubboMessage backup = hedged.takeBackup();
+        if (backup == null) {
+            // completed in the meantime, the token was not used
+            hedging.refund();
+            return;
+        }
+        hedging.getStats().onHedged();
+        handleRequestWhenAcquiredSuccess(connection, backup, hedged.backup(), hedged.remainingMillis());
+        hedged.onBackupSent(connection, backup.getHeader().getRequestId());
+    }
+
+    private void acquireAndSend(DubboMessage request, ResponseCallback callback, long timeout) {
         try {
             CompletableFuture<NettyConnection> future = this.connectionPool.acquire();
             future.whenComplete((channel, throwable) -> {
@@ -201,6 +502,63 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
         }
     }
 
+    private void acquireAndSendBatch(final List<DubboMessage> requests,
+                                     final List<ResponseCallback> callbacks,
+                                     final long timeout) {
+        try {
+            CompletableFuture<NettyConnection> future = this.connectionPool.acquire();
+            future.whenComplete((connection, throwable) -> {
+                if (throwable != null) {
+                    for (int i = 0; i < requests.size(); i++) {
+                        handleRequestWhenAcquiredFailed(throwable, requests.get(i), callbacks.get(i));
+                    }
+                } else {
+                    sendBatch(connection, requests, callbacks, timeout);
+                }
+            });
+        } catch (Throwable t) {
+            for (int i = 0; i < requests.size(); i++) {
+                handleRequestWhenAcquiredFailed(t, requests.get(i), callbacks.get(i));
+            }
+        }
+    }
+
+    private void sendBatch(final NettyConnection connection,
+                           final List<DubboMessage> requests,
+                           final List<ResponseCallback> callbacks,
+                           final long timeout) {
+        for (ResponseCallback callback : callbacks) {
+            callback.onGotConnection(true, null);
+        }
+        final Throwable cause;
+        if (!connection.isActive()) {
+            connectionPool.close(connection);
+            cause = new ConnectFailedException("connection inactive");
+        } else if (!connection.isAcceptingWrites()) {
+            cause = new ConnectFailedException("Got connection which has a full write buffer");
+        } else {
+            cause = null;
+        }
+        if (cause != null) {
+            for (int i = 0; i < requests.size(); i++) {
+                onError(requests.get(i), callbacks.get(i), cause);
+            }
+            return;
+        }
+
+        final List<ChannelFutureListener> listeners = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final ResponseCallback callback = callbacks.get(i);
+            final long requestId = connection.getRequestIdAtomic().getAndIncrement();
+            final DubboHeader header = requests.get(i).getHeader();
+            header.setRequestId(requestId);
+            header.setRequest(true);
+            connection.addInFlight(requestId, callback, timeout);
+            listeners.add(future -> notifyWriteDone(future, requestId, callback, connection));
+        }
+        connection.writeAndFlush(requests, timeout, listeners);
+    }
+
     @Override
     public boolean isActive() {
         return connectionPool.canAcquire();
@@ -208,7 +566,9 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
 
     @Override
     public void close() {
-        this.connectionPool.closeAll();
+        super.close();
+        // only the executor created for this client
+        serializeHandler.close();
     }
 
     private void handleRequestWhenAcquiredFailed(final Throwable cause,
@@ -236,8 +596,8 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
                 return;
             }
 
-            //write buffer满了，不再继续写入，否则会堆积Task导致OOM
-            if (!connection.isWritable()) {
+            //write buffer满了且未开启写队列，不再继续写入，否则会堆积Task导致OOM
+            if (!connection.isAcceptingWrites()) {
                 onError(request, callback, new ConnectFailedException("Got connection which has a full write buffer"));
                 return;
             }
@@ -259,35 +619,59 @@ public class NettyDubboClient extends NettyClient implements DubboClient {
         header.setRequest(true);
 
         if (!header.isTwoWay()) {
-            // If it is oneway mode and there is no need to wait, set the callback function to success,
-            // else you need to wait and send data successfully within timeout, set the callback function to success,
-            // otherwise set to error
-            final ChannelFuture channelFuture = connection.writeAndFlush(request);
-            if (!header.isOnewayWaited()) {
-                onResponseNullValue(callback, header);
-                return;
-            }
-            channelFuture.awaitUninterruptibly(timeout, TimeUnit.MILLISECONDS);
-            if (channelFuture.isDone()) {
-                if (channelFuture.isSuccess()) {
-                    onResponseNullValue(callback, header);
-                } else if (channelFuture.cause() != null) {
-                    callback.onError(new ConnectFailedException("Failed to send data cause "
-                            + channelFuture.cause().getMessage() + " and the exception is " + channelFuture.cause()));
-                } else {
-                    callback.onError(
-                            new ConnectFailedException("Failed to send data because the sending was cancelled."));
-                }
-            } else {
-                callback.onError(new RequestTimeoutException("Client sends data timeout: " + timeout + " ms."));
+            sendOneWay(callback, connection, request, requestId, timeout);
+        } else {
+            connection.addInFlight(requestId, callback, timeout);
+            connection.writeAndFlush(request, timeout, future ->
+                    notifyWriteDone(future, requestId, callback, connection));
+        }
+    }
+
+    /**
+     * Sends a one-way request without blocking the caller. A fire-and-forget request completes right away while the
+     * pending one-way bytes of the connection are within the budget, otherwise, as a waited one, when the write
+     * completes or times out.
+     */
+    private void sendOneWay(final ResponseCallback callback,
+                            final NettyConnection connection,
+                            final DubboMessage request,
+                            final long requestId,
+                            final long timeout) {
+        final DubboHeader header = request.getHeader();
+        final int bytes = DubboConstants.HEADER_LENGTH +
+                (request.getBody() == null ? 0 : request.getBody().readableBytes());
+        final boolean waited = !connection.addPendingOneWayBytes(bytes) || header.isOnewayWaited();
+        if (waited) {
+            // the write listener completes the callback, or it fails with a sending timeout on the event loop
+            connection.addInFlight(requestId, callback, timeout);
+        }
+        connection.writeAndFlush(request, timeout, future -> {
+            connection.addPendingOneWayBytes(-bytes);
+            if (waited) {
+                notifyOneWayDone(future, requestId, header, connection);
             }
+        });
+        if (!waited) {
+            onResponseNullValue(callback, header);
+        }
+    }
+
+    private void notifyOneWayDone(final ChannelFuture channelFuture,
+                                  final long requestId,
+                                  final DubboHeader header,
+                                  final NettyConnection connection) {
+        final ResponseCallback callback = connection.getInFlightRequests().remove(requestId);
+        if (callback == null) {
+            // timed out already
+            return;
+        }
+        if (channelFuture.isSuccess()) {
+            onResponseNullValue(callback, header);
+        } else if (channelFuture.cause() != null) {
+            callback.onError(new ConnectFailedException("Failed to send data cause "
+                    + channelFuture.cause().getMessage() + " and the exception is " + channelFuture.cause()));
         } else {
-            final Map<Long, ResponseCallback> callbackMap = connection.getCallbackMap();
-            callbackMap.put(requestId, callback);
-            final ChannelFuture channelFuture = connection.writeAndFlush(request);
-            channelFuture.addListener((ChannelFuture future) ->
-                    notifyWriteDone(channelFuture, requestId, callback, connection));
-            addTimeoutTask(new ReadTimeoutListener(timeout, requestId, callbackMap, channelFuture), timeout);
+            callback.onError(new ConnectFailedException("Failed to send data because the sending was cancelled."));
         }
     }
 
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.dubbo.core.codec.DubboHeader;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw response bodies of the cached methods of a client, see {@link ResponseCachePolicy}, keyed by the
+ * {@link InvocationKey} of the request: interface, version, method, parameter types and arguments.
+ * <p>
+ * The bodies are kept serialized, a hit is deserialized by the caller, or not at all by
+ * {@link DubboClient#sendReqWithoutRespDeserialize(DubboMessage, Class, long)}. The entries are kept in access order
+ * under a short lock, which holds no I/O nor deserialization.
+ */
+final class ResponseCache {
+
+    private final ResponseCachePolicy policy;
+    private final ResponseCacheStats stats = new ResponseCacheStats();
+    private final Map<InvocationKey, CachedResponse> entries;
+
+    ResponseCache(final ResponseCachePolicy policy) {
+        if (policy.getMaxEntries() <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + policy.getMaxEntries());
+        }
+        this.policy = policy;
+        final int maxEntries = policy.getMaxEntries();
+        this.entries = new LinkedHashMap<InvocationKey, CachedResponse>(16, 0.75F, true) {
+
+            private static final long serialVersionUID = -3404218472960224117L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<InvocationKey, CachedResponse> eldest) {
+                if (size() > maxEntries) {
+                    stats.onEvicted();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Key of the request, or {@code null} if the request is not cached.
+     */
+    InvocationKey keyOf(final DubboMessage request) {
+        if (policy.getTtlMillis(request.getInterfaceName(), request.getMethodName()) <= 0L) {
+            return null;
+        }
+        return InvocationKey.of(request);
+    }
+
+    /**
+     * Cached response of the request, with a body of its own, or {@code null} if missing or expired.
+     */
+    DubboMessage get(final InvocationKey key) {
+        CachedResponse entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAt >= 0L) {
+                entries.remove(key);
+                stats.onExpired();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            stats.onMiss();
+            return null;
+        }
+        stats.onHit();
+        final DubboHeader header = new DubboHeader()
+                .setSeriType(entry.seriType)
+                .setStatus(DubboConstants.RESPONSE_STATUS.OK);
+        return new DubboMessage().setHeader(header).setBody(Unpooled.wrappedBuffer(entry.body));
+    }
+
+    /**
+     * Stores a copy of the body of the response, if it carries a value.
+     */
+    void put(final InvocationKey key, final DubboMessage response) {
+        if (!ClientCodecHelper.hasValue(response)) {
+            return;
+        }
+        final long ttlMillis = policy.getTtlMillis(key.getInterfaceName(), key.getMethodName());
+        final CachedResponse entry = new CachedResponse(response.getHeader().getSeriType(),
+                ByteBufUtil.getBytes(response.getBody()), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        stats.onStored();
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    ResponseCacheStats getStats() {
+        return stats;
+    }
+
+    private static final class CachedResponse {
+
+        private final byte seriType;
+        private final byte[] body;
+        private final long expiresAt;
+
+        private CachedResponse(final byte seriType, final byte[] body, final long expiresAt) {
+            this.seriType = seriType;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Policy of the response cache of a client: the responses of the pure lookup methods are kept for a time to live, and
+ * the requests with the same interface, version, method and arguments are served from the cache without being sent.
+ * <p>
+ * Only the methods given a time to live are cached, and only their responses carrying a value, not the errors nor the
+ * exceptions thrown by the method. The attachments of the requests are not part of the key. The least recently used
+ * responses are evicted beyond {@link #getMaxEntries()}.
+ */
+public class ResponseCachePolicy {
+
+    private int maxEntries = 10000;
+    private long defaultTtlMillis;
+    private final Map<String, Map<String, Long>> ttlMillis = new ConcurrentHashMap<>();
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Responses kept by the cache of a client.
+     */
+    public ResponseCachePolicy setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    public long getDefaultTtlMillis() {
+        return defaultTtlMillis;
+    }
+
+    /**
+     * Time to live of the responses of the methods without their own, {@code 0}, the default, caches only the methods
+     * given by {@link #setTtlMillis(String, String, long)}.
+     */
+    public ResponseCachePolicy setDefaultTtlMillis(long defaultTtlMillis) {
+        this.defaultTtlMillis = defaultTtlMillis;
+        return this;
+    }
+
+    /**
+     * Time to live of the responses of a method, {@code 0} excludes the method from the cache.
+     */
+    public ResponseCachePolicy setTtlMillis(String interfaceName, String methodName, long ttlMillis) {
+        this.ttlMillis.computeIfAbsent(interfaceName, key -> new ConcurrentHashMap<>()).put(methodName, ttlMillis);
+        return this;
+    }
+
+    /**
+     * Time to live of the responses of a method, {@code 0} if the method is not cached.
+     */
+    public long getTtlMillis(String interfaceName, String methodName) {
+        if (interfaceName == null || methodName == null) {
+            return 0L;
+        }
+        final Map<String, Long> methods = ttlMillis.get(interfaceName);
+        final Long ttl = methods == null ? null : methods.get(methodName);
+        return ttl == null ? defaultTtlMillis : ttl;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCachePolicy{" +
+                "maxEntries=" + maxEntries +
+                ", defaultTtlMillis=" + defaultTtlMillis +
+                ", ttlMillis=" + ttlMillis +
+                '}';
+    }
+}
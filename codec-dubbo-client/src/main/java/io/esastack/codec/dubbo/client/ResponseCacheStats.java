@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the response cache of a client, see
+ * {@link DubboClientBuilder#setResponseCachePolicy(ResponseCachePolicy)}.
+ * <p>
+ * Many {@link #getExpired()} tell that the time to live is short for the rate of the calls, many
+ * {@link #getEvicted()} that the cache is too small for the distinct calls.
+ */
+public final class ResponseCacheStats {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    void onHit() {
+        hits.increment();
+    }
+
+    void onMiss() {
+        misses.increment();
+    }
+
+    void onStored() {
+        stored.increment();
+    }
+
+    void onExpired() {
+        expired.increment();
+    }
+
+    void onEvicted() {
+        evicted.increment();
+    }
+
+    /**
+     * Requests of the cached methods served from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Requests of the cached methods sent to the provider, including the ones whose response had expired.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Responses stored in the cache.
+     */
+    public long getStored() {
+        return stored.sum();
+    }
+
+    /**
+     * Responses found past their time to live.
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Responses evicted to keep the cache within its maximum entries.
+     */
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    public double getHitRatio() {
+        final long hit = hits.sum();
+        final long total = hit + misses.sum();
+        return total == 0L ? 0D : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCacheStats{" +
+                "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", stored=" + getStored() +
+                ", expired=" + getExpired() +
+                ", evicted=" + getEvicted() +
+                '}';
+    }
+}
@@ -18,6 +18,7 @@ package io.esastack.codec.dubbo.client.handler;
 import esa.commons.logging.Logger;
 import esa.commons.logging.LoggerFactory;
 import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.connection.InFlightRequests;
 import io.esastack.codec.common.exception.UnknownResponseStatusException;
 import io.esastack.codec.common.utils.NettyUtils;
 import io.esastack.codec.dubbo.client.serialize.SerializeHandler;
@@ -33,6 +34,7 @@ import java.io.IOException;
 import java.net.ConnectException;
 import java.net.SocketAddress;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * The client processes the response after receiving the response
@@ -42,29 +44,43 @@ public class DubboClientHandler extends SimpleChannelInboundHandler<DubboMessage
     private static final Logger LOGGER = LoggerFactory.getLogger(DubboClientHandler.class);
     private static final int MAX_SENT_HEARTBEAT_COUNT = 2;
     private final String connectionName;
-    private final Map<Long, ResponseCallback> callbackMap;
+    private final InFlightRequests inFlightRequests;
+    private final Supplier<SerializeHandler> serializeHandler;
     /**
      * Only read/write in one Thread
      */
     private int sentHeartbeatCount;
 
+    /**
+     * @deprecated use {@link #DubboClientHandler(String, InFlightRequests)}
+     */
+    @Deprecated
     public DubboClientHandler(String connectionName, Map<Long, ResponseCallback> callbackMap) {
+        this(connectionName, InFlightRequests.of(callbackMap));
+    }
+
+    public DubboClientHandler(String connectionName, InFlightRequests inFlightRequests) {
+        this(connectionName, inFlightRequests, SerializeHandler::get);
+    }
+
+    /**
+     * @param serializeHandler supplies the handler when a response is read, so that a client may create its
+     *                         connections before its handler
+     */
+    public DubboClientHandler(String connectionName, InFlightRequests inFlightRequests,
+                              Supplier<SerializeHandler> serializeHandler) {
         // NOT auto release
         super(false);
         this.connectionName = connectionName;
-        this.callbackMap = callbackMap;
+        this.inFlightRequests = inFlightRequests;
+        this.serializeHandler = serializeHandler;
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable t) {
         Throwable error = wrapIfNecessary(t);
         // Call back all DubboCallback
-        for (Map.Entry<Long, ResponseCallback> entry : callbackMap.entrySet()) {
-            ResponseCallback callback = callbackMap.remove(entry.getKey());
-            if (callback != null) {
-                callback.onError(error);
-            }
-        }
+        inFlightRequests.drain(callback -> callback.onError(error));
 
         // WARNING: Closing the connection should lag the callback, otherwise the error message will be swallowed
         // A network exception or decoding exception occurs, and the connection is closed
@@ -81,16 +97,10 @@ public class DubboClientHandler extends SimpleChannelInboundHandler<DubboMessage
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        for (Map.Entry<Long, ResponseCallback> entry : callbackMap.entrySet()) {
-            ResponseCallback callback = callbackMap.get(entry.getKey());
-            if (callback != null) {
-                callback.onError(new UnknownResponseStatusException(
-                        "Could not get remote server handle result",
-                        new ConnectException(
-                                "Connection is inactive.(maybe caused by remote server closed the connection)")));
-            }
-        }
-        callbackMap.clear();
+        inFlightRequests.drain(callback -> callback.onError(new UnknownResponseStatusException(
+                "Could not get remote server handle result",
+                new ConnectException(
+                        "Connection is inactive.(maybe caused by remote server closed the connection)"))));
 
         super.channelInactive(ctx);
     }
@@ -108,7 +118,7 @@ public class DubboClientHandler extends SimpleChannelInboundHandler<DubboMessage
             return;
         }
         // Get the asynchronous request callback function
-        ResponseCallback callback = callbackMap.remove(requestId);
+        ResponseCallback callback = inFlightRequests.remove(requestId);
 
         // In the case of protocol errors, timeouts, etc.,
         // the callback is cleaned up, and we need to actively release the response
@@ -117,18 +127,15 @@ public class DubboClientHandler extends SimpleChannelInboundHandler<DubboMessage
             return;
         }
 
-        final Map<String, String> ttfbAttachments = NettyUtils.extractTtfbKey(ctx.channel());
-
         // Synchronous call, business thread deserialize
         if (!callback.deserialized()) {
             // Prevent refCnt from becoming 0 and cause ByteBuf to be freed
             DubboMessageWrapper messageWrapper = new DubboMessageWrapper(response);
-            messageWrapper.addAttachments(ttfbAttachments);
             callback.onResponse(messageWrapper);
             return;
         }
 
-        SerializeHandler.get().deserialize(response, callback, ttfbAttachments);
+        serializeHandler.get().deserialize(response, callback);
     }
 
     @Override
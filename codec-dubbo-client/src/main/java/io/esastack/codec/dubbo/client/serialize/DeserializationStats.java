@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client.serialize;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the responses deserialized by a client, see {@link DeserializationStrategy}.
+ * <p>
+ * A growing {@link #getMaxWaitNanos()} or {@link #getMaxQueued()} tells that the executor cannot keep up with the
+ * responses, a non-zero {@link #getRejected()} that the IO threads deserialized some of them anyway.
+ */
+public final class DeserializationStats {
+
+    private final LongAdder inline = new LongAdder();
+    private final LongAdder offloaded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    void onInline() {
+        inline.increment();
+    }
+
+    void onSubmitted() {
+        final int depth = queued.incrementAndGet();
+        if (depth > maxQueued.get()) {
+            maxQueued.accumulateAndGet(depth, Math::max);
+        }
+    }
+
+    void onStarted(long nanos) {
+        queued.decrementAndGet();
+        offloaded.increment();
+        waitNanos.add(nanos);
+        if (nanos > maxWaitNanos.get()) {
+            maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    void onRejected() {
+        queued.decrementAndGet();
+        rejected.increment();
+    }
+
+    void onDeferred() {
+        deferred.increment();
+    }
+
+    /**
+     * Responses deserialized on the IO thread, by the strategy or because the executor rejected them.
+     */
+    public long getInline() {
+        return inline.sum();
+    }
+
+    /**
+     * Responses deserialized on the executor.
+     */
+    public long getOffloaded() {
+        return offloaded.sum();
+    }
+
+    /**
+     * Responses rejected by the executor, which are counted by {@link #getInline()} as well.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Responses given as a result deserialized by the caller on first access, see
+     * {@link DeserializationStrategy#lazy()}.
+     */
+    public long getDeferred() {
+        return deferred.sum();
+    }
+
+    /**
+     * Responses waiting for the executor right now.
+     */
+    public int getQueued() {
+        return Math.max(0, queued.get());
+    }
+
+    public int getMaxQueued() {
+        return maxQueued.get();
+    }
+
+    /**
+     * Total time the offloaded responses waited for the executor.
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    public long getMeanWaitNanos() {
+        final long count = offloaded.sum();
+        return count == 0L ? 0L : waitNanos.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "DeserializationStats{" +
+                "inline=" + getInline() +
+                ", offloaded=" + getOffloaded() +
+                ", rejected=" + getRejected() +
+                ", deferred=" + getDeferred() +
+                ", queued=" + getQueued() +
+                ", maxQueued=" + getMaxQueued() +
+                ", meanWaitMicros=" + TimeUnit.NANOSECONDS.toMicros(getMeanWaitNanos()) +
+                ", maxWaitMicros=" + TimeUnit.NANOSECONDS.toMicros(getMaxWaitNanos()) +
+                '}';
+    }
+}
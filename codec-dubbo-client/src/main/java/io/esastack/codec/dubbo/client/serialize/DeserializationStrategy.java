@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client.serialize;
+
+import io.esastack.codec.dubbo.core.codec.helper.LazyDubboRpcResult;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Where the responses of a client are deserialized, see
+ * {@link io.esastack.codec.dubbo.client.DubboClientBuilder#setDeserializationStrategy(DeserializationStrategy)}.
+ * <p>
+ * Deserializing on the IO thread is the cheapest for small responses, while a large one delays every other response
+ * of the event loop; {@link #inlineBelow(int)} keeps the small ones on the IO thread and offloads the large ones. When
+ * the executor rejects a response, it is deserialized on the IO thread.
+ * <p>
+ * The executors of {@link #workStealing(int)} and {@link #virtualThreads()} are {@link #isOwned() owned}: each client
+ * using the strategy creates its own, and shuts it down when it is closed, while an executor given to
+ * {@link #executor(Executor)} is left to the caller.
+ */
+public final class DeserializationStrategy {
+
+    private static final DeserializationStrategy IO_THREAD = new DeserializationStrategy(null, null, 0, false);
+    private static final DeserializationStrategy LAZY = new DeserializationStrategy(null, null, 0, true);
+
+    private final Executor executor;
+    private final Supplier<ExecutorService> executorFactory;
+    private final int inlineBodyBytes;
+    private final boolean lazy;
+
+    private DeserializationStrategy(Executor executor,
+                                    Supplier<ExecutorService> executorFactory,
+                                    int inlineBodyBytes,
+                                    boolean lazy) {
+        this.executor = executor;
+        this.executorFactory = executorFactory;
+        this.inlineBodyBytes = inlineBodyBytes;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Deserializes on the IO thread which reads the response.
+     */
+    public static DeserializationStrategy ioThread() {
+        return IO_THREAD;
+    }
+
+    /**
+     * Deserializes on the given executor, which is left to the caller to shut down.
+     */
+    public static DeserializationStrategy executor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        return new DeserializationStrategy(executor, null, 0, false);
+    }
+
+    /**
+     * Deserializes on a new work-stealing {@link ForkJoinPool} of {@code parallelism} daemon threads, in FIFO order,
+     * owned by each client.
+     */
+    public static DeserializationStrategy workStealing(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        return new DeserializationStrategy(null, () -> new ForkJoinPool(parallelism,
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), 0, false);
+    }
+
+    public static DeserializationStrategy workStealing() {
+        return workStealing(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Deserializes each response on a new virtual thread, of an executor owned by each client.
+     *
+     * @throws UnsupportedOperationException if the JVM has no virtual threads, before java 21
+     */
+    public static DeserializationStrategy virtualThreads() {
+        final Method factory;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            throw unsupportedVirtualThreads(e);
+        }
+        return new DeserializationStrategy(null, () -> {
+            try {
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw unsupportedVirtualThreads(e);
+            }
+        }, 0, false);
+    }
+
+    private static UnsupportedOperationException unsupportedVirtualThreads(Exception cause) {
+        return new UnsupportedOperationException("Virtual threads are not available in java "
+                + System.getProperty("java.specification.version"), cause);
+    }
+
+    /**
+     * Completes the requests on the IO thread with a {@link LazyDubboRpcResult}, whose value is deserialized by the
+     * caller on first access, without any executor. The responses are kept serialized until then, and the ones
+     * discarded by the caller are never deserialized.
+     */
+    public static DeserializationStrategy lazy() {
+        return LAZY;
+    }
+
+    /**
+     * Deserializes the responses whose body is smaller than {@code inlineBodyBytes} on the IO thread, and the
+     * others on the executor of this strategy, or lazily by the caller.
+     */
+    public DeserializationStrategy inlineBelow(int inlineBodyBytes) {
+        if (inlineBodyBytes < 0) {
+            throw new IllegalArgumentException("inlineBodyBytes must not be negative: " + inlineBodyBytes);
+        }
+        return executor == null && executorFactory == null && !lazy
+                ? this : new DeserializationStrategy(executor, executorFactory, inlineBodyBytes, lazy);
+    }
+
+    /**
+     * @return the executor given to {@link #executor(Executor)}, {@code null} for the IO thread or an
+     * {@link #isOwned() owned} executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Whether each client creates its own executor, which it shuts down when it is closed.
+     */
+    public boolean isOwned() {
+        return executorFactory != null;
+    }
+
+    /**
+     * Creates the executor of a client, for an {@link #isOwned() owned} one.
+     */
+    ExecutorService newExecutor() {
+        return executorFactory.get();
+    }
+
+    public int getInlineBodyBytes() {
+        return inlineBodyBytes;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    @Override
+    public String toString() {
+        if (lazy) {
+            return "DeserializationStrategy{lazy, inlineBodyBytes=" + inlineBodyBytes + '}';
+        }
+        if (executorFactory != null) {
+            return "DeserializationStrategy{ownedExecutor, inlineBodyBytes=" + inlineBodyBytes + '}';
+        }
+        return executor == null ? "DeserializationStrategy{ioThread}"
+                : "DeserializationStrategy{executor=" + executor + ", inlineBodyBytes=" + inlineBodyBytes + '}';
+    }
+}
@@ -17,19 +17,24 @@ package io.esastack.codec.dubbo.client.serialize;
 
 import esa.commons.concurrent.ThreadFactories;
 import io.esastack.codec.common.ResponseCallback;
-import io.esastack.codec.common.constant.Constants;
 import io.esastack.codec.dubbo.core.DubboRpcResult;
 import io.esastack.codec.dubbo.core.codec.DubboMessage;
 import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
- * If the serialize thread pool queue is full, do the serialization in IO threads;
- * The default pool queue size is POOL_SIZE, avoiding too much task queued and delayed.
+ * Deserializes the responses of a client according to its {@link DeserializationStrategy}.
+ * <p>
+ * The shared {@link #get()} is used by the clients without a strategy: it deserializes in the IO threads, unless
+ * {@code dubbo.lite.enable.serialize.pool} is set. Then it uses a pool of 2 * processors + 1 threads whose queue size
+ * is {@code dubbo.lite.serialize.queue.size}, POOL_SIZE by default, avoiding too much task queued and delayed.
  */
 public class SerializeHandler {
 
@@ -41,22 +46,34 @@ public class SerializeHandler {
 
     private static volatile SerializeHandler instance;
 
-    private final ThreadPoolExecutor executor;
+    private final DeserializationStrategy strategy;
+    private final Executor executor;
+    private final DeserializationStats stats = new DeserializationStats();
 
-    private SerializeHandler() {
-        this.executor = new ThreadPoolExecutor(POOL_SIZE,
-                POOL_SIZE,
-                Integer.MAX_VALUE,
-                TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(MAX_QUEUE_SIZE),
-                ThreadFactories.namedThreadFactory("dubboLiteClient-serialize"));
+    /**
+     * Creates the executor of the strategy when it is {@link DeserializationStrategy#isOwned() owned}, which is shut
+     * down by {@link #close()}.
+     */
+    public SerializeHandler(final DeserializationStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy cannot be null");
+        }
+        this.strategy = strategy;
+        this.executor = strategy.isOwned() ? strategy.newExecutor() : strategy.getExecutor();
     }
 
     public static SerializeHandler get() {
         if (instance == null) {
             synchronized (SerializeHandler.class) {
                 if (instance == null) {
-                    instance = new SerializeHandler();
+                    instance = new SerializeHandler(ENABLE_SERIALIZE_POOL
+                            ? DeserializationStrategy.executor(new ThreadPoolExecutor(POOL_SIZE,
+                            POOL_SIZE,
+                            Integer.MAX_VALUE,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(MAX_QUEUE_SIZE),
+                            ThreadFactories.namedThreadFactory("dubboLiteClient-serialize")))
+                            : DeserializationStrategy.ioThread());
                 }
             }
         }
@@ -64,32 +81,85 @@ public class SerializeHandler {
     }
 
     /**
-     * if the thread queue is full, do the deserialization in IO THREAD
+     * if the executor rejects the response, do the deserialization in IO THREAD; the moments of the response are
+     * recorded on the {@link DubboRpcResult}
+     */
+    public void deserialize(final DubboMessage response,
+                            final ResponseCallback callback) {
+        deserialize(response, callback, null);
+    }
+
+    /**
+     * @param ttfbAttachments attachments added to the result, may be {@code null}
      */
     public void deserialize(final DubboMessage response,
                             final ResponseCallback callback,
                             final Map<String, String> ttfbAttachments) {
-        if (ENABLE_SERIALIZE_POOL) {
-            try {
-                executor.submit(() -> doDeserialize(response, callback, ttfbAttachments));
-            } catch (Throwable e) {
+        if (strategy.isLazy() && response.getBody() != null &&
+                response.getBody().readableBytes() >= strategy.getInlineBodyBytes()) {
+            stats.onDeferred();
+            deferDeserialize(response, callback, ttfbAttachments);
+            return;
+        }
+        if (executor == null || response.getBody() == null ||
+                response.getBody().readableBytes() < strategy.getInlineBodyBytes()) {
+            stats.onInline();
+            doDeserialize(response, callback, ttfbAttachments);
+            return;
+        }
+        final long submittedAt = System.nanoTime();
+        stats.onSubmitted();
+        try {
+            executor.execute(() -> {
+                stats.onStarted(System.nanoTime() - submittedAt);
                 doDeserialize(response, callback, ttfbAttachments);
-            }
-        } else {
+            });
+        } catch (RejectedExecutionException e) {
+            stats.onRejected();
+            stats.onInline();
             doDeserialize(response, callback, ttfbAttachments);
         }
     }
 
+    public DeserializationStrategy getStrategy() {
+        return strategy;
+    }
+
+    public DeserializationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Shuts down the executor created for an {@link DeserializationStrategy#isOwned() owned} strategy.
+     */
+    public void close() {
+        if (strategy.isOwned()) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private static void deferDeserialize(final DubboMessage response,
+                                         final ResponseCallback callback,
+                                         final Map<String, String> ttfbAttachments) {
+        try {
+            callback.onResponse(ClientCodecHelper.toLazyRpcResult(
+                    response, callback.getReturnType(), callback.getGenericReturnType(), ttfbAttachments));
+        } catch (Throwable t) {
+            callback.onError(t);
+        } finally {
+            response.release();
+        }
+    }
+
     private void doDeserialize(final DubboMessage response,
                                final ResponseCallback callback,
                                final Map<String, String> ttfbAttachments) {
         try {
-            final long startAt = System.currentTimeMillis();
-            ttfbAttachments.put(Constants.TRACE.TIME_OF_RSP_DESERIALIZE_BEGIN_KEY, startAt + "");
+            final long startAt = System.nanoTime();
             final DubboRpcResult rpcResult = ClientCodecHelper.toRpcResult(
                     response, callback.getReturnType(), callback.getGenericReturnType(), ttfbAttachments);
-            rpcResult.setAttachment(Constants.TRACE.TIME_OF_RSP_DESERIALIZE_COST_KEY,
-                    String.valueOf(System.currentTimeMillis() - startAt));
+            rpcResult.setDeserializeBeginNanos(startAt);
+            rpcResult.setDeserializeEndNanos(System.nanoTime());
             callback.onResponse(rpcResult);
         } catch (Throwable t) {
             callback.onError(t);
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.connection.NettyConnectionConfig;
+import io.esastack.codec.common.exception.InternalException;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class BlockingDubboClientTest {
+
+    private static NettyDubboClient client;
+
+    @BeforeClass
+    public static void setUp() {
+        try {
+            DubboSDKServer.start(new String[0]);
+        } catch (Exception e) {
+            //the server may have been started by another test
+        }
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setHost("127.0.0.1")
+                .setPort(20880)
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder()
+                        .setInit(true)
+                        .setMaxPoolSize(1));
+        client = new DubboClientBuilder().setConnectionConfig(connectionConfig).build();
+    }
+
+    @AfterClass
+    public static void close() {
+        client.close();
+    }
+
+    private static DubboMessage createDubboMessage() throws Exception {
+        final RpcInvocation invocation = new RpcInvocation();
+        invocation.setInterfaceName("com.oppo.test.EchoService");
+        invocation.setMethodName("echo");
+        invocation.setReturnType(String.class);
+        invocation.setSeriType((byte) 2);
+        invocation.setParameterTypes(new Class[]{String.class});
+        invocation.setArguments(new Object[]{"test"});
+        return ClientCodecHelper.toDubboMessage(invocation);
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        final BlockingDubboClient blockingClient = new BlockingDubboClient(client, 3000L);
+        // the default deserialization of the clients is shared, so only its change is relevant
+        final long deserialized = client.getDeserializationStats().getInline()
+                + client.getDeserializationStats().getOffloaded();
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<DubboRpcResult>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(callers.submit(() -> blockingClient.invoke(createDubboMessage(), String.class)));
+            }
+            for (Future<DubboRpcResult> result : results) {
+                assertEquals("test", result.get().getValue());
+            }
+        } finally {
+            callers.shutdown();
+        }
+        // deserialized by the callers rather than by the client
+        assertEquals(deserialized, client.getDeserializationStats().getInline()
+                + client.getDeserializationStats().getOffloaded());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final BlockingDubboClient blockingClient = new BlockingDubboClient(client, 3000L);
+        try {
+            blockingClient.invoke(createDubboMessage(), String.class, String.class, 50L);
+            fail();
+        } catch (ResponseTimeoutException e) {
+            assertTrue(e.getMessage().contains("50 ms"));
+        }
+    }
+
+    @Test
+    public void testInterrupted() throws Exception {
+        final BlockingDubboClient blockingClient = new BlockingDubboClient(client, 3000L);
+        final DubboMessage request = createDubboMessage();
+        Thread.currentThread().interrupt();
+        try {
+            blockingClient.invoke(request, String.class);
+            fail();
+        } catch (InternalException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalTimeout() {
+        new BlockingDubboClient(client, 0L);
+    }
+}
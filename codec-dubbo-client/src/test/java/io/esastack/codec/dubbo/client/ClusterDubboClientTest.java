@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.connection.NettyConnectionConfig;
+import io.esastack.codec.common.exception.ConnectFailedException;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ClusterDubboClientTest {
+
+    @BeforeClass
+    public static void startServer() {
+        try {
+            DubboSDKServer.start(new String[0]);
+        } catch (Exception e) {
+            //the server may have been started by another test
+        }
+    }
+
+    private static DubboClientBuilder clientBuilder(boolean init) {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder()
+                        .setInit(init)
+                        .setMaxPoolSize(1));
+        return new DubboClientBuilder().setConnectionConfig(connectionConfig);
+    }
+
+    private static DubboMessage createDubboMessage() throws Exception {
+        final RpcInvocation invocation = new RpcInvocation();
+        invocation.setInterfaceName("com.oppo.test.EchoService");
+        invocation.setMethodName("echo");
+        invocation.setReturnType(String.class);
+        invocation.setSeriType((byte) 2);
+        invocation.setParameterTypes(new Class[]{String.class});
+        invocation.setArguments(new Object[]{"test"});
+        return ClientCodecHelper.toDubboMessage(invocation);
+    }
+
+    private static boolean isConnectFailed(ExecutionException e) {
+        final Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+        return cause instanceof ConnectFailedException;
+    }
+
+    @Test
+    public void testSelectLessLoaded() {
+        final ClusterDubboClient client = ClusterDubboClient.newBuilder()
+                .setClientBuilder(clientBuilder(false))
+                .addEndpoint("127.0.0.1", 20001)
+                .addEndpoint("127.0.0.1", 20002)
+                .build();
+        try {
+            final List<ClusterEndpoint> endpoints = client.getEndpoints();
+            final ClusterEndpoint fast = endpoints.get(0);
+            final ClusterEndpoint slow = endpoints.get(1);
+            fast.observe(TimeUnit.MILLISECONDS.toNanos(1L));
+            slow.observe(TimeUnit.MILLISECONDS.toNanos(100L));
+            for (int i = 0; i < 100; i++) {
+                assertSame(fast, client.select());
+            }
+
+            // too many outstanding requests outweigh the lower latency
+            for (int i = 0; i < 200; i++) {
+                fast.onStart();
+            }
+            assertSame(slow, client.select());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        final ClusterDubboClient client = ClusterDubboClient.newBuilder()
+                .setClientBuilder(clientBuilder(false))
+                .addEndpoint("127.0.0.1", 20001)
+                .build();
+        try {
+            assertFalse(client.addEndpoint("127.0.0.1", 20001));
+            assertTrue(client.addEndpoint("127.0.0.1", 20002));
+            assertEquals(2, client.getEndpoints().size());
+
+            final ClusterEndpoint removed = client.getEndpoints().get(0);
+            removed.onStart();
+            assertTrue(client.removeEndpoint("127.0.0.1", 20001));
+            assertFalse(client.removeEndpoint("127.0.0.1", 20001));
+            assertTrue(removed.isRemoved());
+            assertEquals(1, client.getEndpoints().size());
+            // the last outstanding request closes the removed endpoint
+            assertTrue(removed.onComplete(-1L, false));
+
+            assertTrue(client.removeEndpoint("127.0.0.1", 20002));
+            assertNull(client.select());
+            try {
+                client.sendRequest(createDubboMessage(), String.class).get();
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof ConnectFailedException);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testNoRequestStartsOnRemovedEndpoint() {
+        final ClusterEndpoint endpoint = new ClusterEndpoint("127.0.0.1", 20001, null, 1000L);
+        assertTrue(endpoint.onStart());
+        assertFalse(endpoint.markRemoved());
+        assertFalse(endpoint.onStart());
+        assertEquals(1, endpoint.getPending());
+        assertFalse(endpoint.markRemoved());
+        assertTrue(endpoint.onComplete(-1L, false));
+        assertEquals(0, endpoint.getPending());
+    }
+
+    @Test
+    public void testRemovedEndpointClosedOnce() throws Exception {
+        for (int round = 0; round < 100; round++) {
+            final ClusterEndpoint endpoint = new ClusterEndpoint("127.0.0.1", 20001, null, 1000L);
+            final AtomicInteger closes = new AtomicInteger();
+            final CountDownLatch start = new CountDownLatch(1);
+            final Thread[] senders = new Thread[4];
+            for (int i = 0; i < senders.length; i++) {
+                senders[i] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (endpoint.onStart()) {
+                        if (endpoint.onComplete(-1L, false)) {
+                            closes.incrementAndGet();
+                        }
+                    }
+                });
+                senders[i].start();
+            }
+            start.countDown();
+            if (endpoint.markRemoved()) {
+                closes.incrementAndGet();
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            assertEquals(1, closes.get());
+            assertEquals(0, endpoint.getPending());
+        }
+    }
+
+    @Test
+    public void testEjectFailingEndpoint() {
+        final ClusterDubboClient client = ClusterDubboClient.newBuilder()
+                .setClientBuilder(clientBuilder(true))
+                .addEndpoint("127.0.0.1", 20880)
+                .addEndpoint("127.0.0.1", 20001)
+                .setFailuresToEject(2)
+                .setEjectionMillis(60000L)
+                .build();
+        try {
+            final ClusterEndpoint dead = client.getEndpoints().get(1);
+            int failures = 0;
+            while (!dead.isEjected()) {
+                try {
+                    client.sendRequest(createDubboMessage(), String.class, 1000L).get();
+                } catch (ExecutionException e) {
+                    assertTrue(isConnectFailed(e));
+                    assertTrue(++failures <= 2);
+                }
+            }
+            assertEquals(1L, dead.getEjections());
+            for (int i = 0; i < 3; i++) {
+                final DubboRpcResult result = client.sendRequest(createDubboMessage(), String.class, 1000L).get();
+                assertEquals("test", result.getValue());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testMaxEjectionPercent() {
+        final ClusterDubboClient client = ClusterDubboClient.newBuilder()
+                .setClientBuilder(clientBuilder(false))
+                .addEndpoint("127.0.0.1", 20001)
+                .setFailuresToEject(1)
+                .build();
+        try {
+            // the only endpoint is never ejected
+            for (int i = 0; i < 3; i++) {
+                try {
+                    client.sendRequest(createDubboMessage(), String.class, 1000L).get();
+                    fail();
+                } catch (ExecutionException e) {
+                    assertTrue(isConnectFailed(e));
+                }
+            }
+            assertFalse(client.getEndpoints().get(0).isEjected());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalBuilder() {
+        ClusterDubboClient.newBuilder().setClientBuilder(clientBuilder(false)).setMaxEjectionPercent(101).build();
+    }
+}
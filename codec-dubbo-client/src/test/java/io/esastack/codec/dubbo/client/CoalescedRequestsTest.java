@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.dubbo.client.serialize.SerializeHandler;
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.esastack.codec.dubbo.core.codec.helper.ServerCodecHelper;
+import io.netty.buffer.ByteBufAllocator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoalescedRequestsTest {
+
+    private final CoalescedRequests coalescedRequests =
+            new CoalescedRequests(request -> "echo".equals(request.getMethodName()), SerializeHandler.get());
+
+    private static DubboMessage request(String method, String argument) throws Exception {
+        return request(method, argument, null);
+    }
+
+    private static DubboMessage request(String method, String argument, String group) throws Exception {
+        final RpcInvocation invocation = new RpcInvocation();
+        if (group != null) {
+            invocation.getAttachments().put(DubboConstants.PARAMETER_KEY.GROUP_KEY, group);
+        }
+        invocation.setInterfaceName("com.oppo.test.EchoService");
+        invocation.setMethodName(method);
+        invocation.setSeriType((byte) 2);
+        invocation.setParameterTypes(new Class[]{String.class});
+        invocation.setArguments(new Object[]{argument});
+        return ClientCodecHelper.toDubboMessage(invocation);
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        final Callback first = new Callback(false);
+        final Callback second = new Callback(true);
+        final DubboMessage request = request("echo", "a");
+        final ResponseCallback flight = coalescedRequests.coalesce(request, null, first);
+        assertNotSame(first, flight);
+        request.release();
+        final DubboMessage identical = request("echo", "a");
+        assertNull(coalescedRequests.coalesce(identical, null, second));
+        assertEquals(0, identical.refCnt());
+        // not identical, or not coalescable
+        final Callback other = new Callback(false);
+        final DubboMessage differentArgument = request("echo", "b");
+        assertNotNull(coalescedRequests.coalesce(differentArgument, null, other));
+        differentArgument.release();
+        final DubboMessage otherMethod = request("other", "a");
+        assertSame(other, coalescedRequests.coalesce(otherMethod, null, other));
+        otherMethod.release();
+        assertEquals(2, coalescedRequests.size());
+
+        final DubboMessage response = ServerCodecHelper.toDubboMessage(
+                DubboRpcResult.success(1L, (byte) 2, "a"), ByteBufAllocator.DEFAULT);
+        flight.onResponse(new DubboMessageWrapper(response));
+        assertEquals(1, coalescedRequests.size());
+        // each callback reads a body of its own
+        final DubboMessage message = ((DubboMessageWrapper) first.results.get(0)).getMessage();
+        assertEquals("a", ClientCodecHelper.toRpcResult(message, String.class).getValue());
+        message.release();
+        assertEquals("a", ((DubboRpcResult) second.results.get(0)).getValue());
+        assertEquals(0, response.refCnt());
+
+        assertEquals(1L, coalescedRequests.getStats().getCoalesced());
+        assertEquals(2L, coalescedRequests.getStats().getSent());
+    }
+
+    @Test
+    public void testPooledResponseNotShared() throws Exception {
+        final Callback first = new Callback(false);
+        final Callback second = new Callback(false);
+        final DubboMessage request = request("echo", "a");
+        final ResponseCallback flight = coalescedRequests.coalesce(request, null, first);
+        assertNull(coalescedRequests.coalesce(request("echo", "a"), null, second));
+        request.release();
+
+        final DubboMessage encoded = ServerCodecHelper.toDubboMessage(
+                DubboRpcResult.success(1L, (byte) 2, "a"), ByteBufAllocator.DEFAULT);
+        final DubboMessage pooled = DubboMessage.newPooledInstance();
+        pooled.getHeader().setRequestId(1L).setSeriType((byte) 2).setStatus(encoded.getHeader().getStatus());
+        pooled.setBody(encoded.getBody());
+        flight.onResponse(new DubboMessageWrapper(pooled));
+        // the pooled response has been recycled, and may be taken and changed by the next decoding
+        assertNull(pooled.getBody());
+        final DubboMessage reused = DubboMessage.newPooledInstance();
+        reused.getHeader().setRequestId(99L);
+        reused.release();
+
+        for (Callback callback : new Callback[]{first, second}) {
+            final DubboMessage message = ((DubboMessageWrapper) callback.results.get(0)).getMessage();
+            assertFalse(message.isPooled());
+            assertEquals(1L, message.getHeader().getRequestId());
+            assertEquals("a", ClientCodecHelper.toRpcResult(message, String.class).getValue());
+            message.release();
+        }
+        assertEquals(0, encoded.refCnt());
+    }
+
+    @Test
+    public void testGroupsNotCoalesced() throws Exception {
+        final DubboMessage blue = request("echo", "a", "blue");
+        final ResponseCallback blueFlight = coalescedRequests.coalesce(blue, null, new Callback(true));
+        blue.release();
+        final DubboMessage green = request("echo", "a", "green");
+        final ResponseCallback greenFlight = coalescedRequests.coalesce(green, null, new Callback(true));
+        green.release();
+        assertNotNull(greenFlight);
+        assertNotSame(blueFlight, greenFlight);
+        assertEquals(2, coalescedRequests.size());
+        final DubboMessage blueAgain = request("echo", "a", "blue");
+        assertNull(coalescedRequests.coalesce(blueAgain, null, new Callback(true)));
+        assertEquals(1L, coalescedRequests.getStats().getCoalesced());
+        blueFlight.onError(new IllegalStateException());
+        greenFlight.onError(new IllegalStateException());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        final Callback first = new Callback(true);
+        final Callback second = new Callback(true);
+        final DubboMessage request = request("echo", "a");
+        final ResponseCallback flight = coalescedRequests.coalesce(request, null, first);
+        assertNull(coalescedRequests.coalesce(request("echo", "a"), null, second));
+        request.release();
+
+        final IllegalStateException error = new IllegalStateException("failed");
+        flight.onError(error);
+        assertSame(error, first.results.get(0));
+        assertSame(error, second.results.get(0));
+        assertEquals(0, coalescedRequests.size());
+
+        // a new request is sent once the first one has failed
+        final DubboMessage retry = request("echo", "a");
+        assertNotNull(coalescedRequests.coalesce(retry, null, new Callback(true)));
+        retry.release();
+    }
+
+    private static final class Callback implements ResponseCallback {
+
+        private final boolean deserialized;
+        private final List<Object> results = new ArrayList<>();
+
+        private Callback(boolean deserialized) {
+            this.deserialized = deserialized;
+        }
+
+        @Override
+        public void onResponse(Object result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            results.add(e);
+        }
+
+        @Override
+        public boolean deserialized() {
+            return deserialized;
+        }
+
+        @Override
+        public Class<?> getReturnType() {
+            return String.class;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package io.esastack.codec.dubbo.client;
 
 import io.esastack.codec.common.connection.NettyConnectionConfig;
+import io.esastack.codec.common.limiter.AimdLimit;
+import io.esastack.codec.dubbo.client.serialize.DeserializationStrategy;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
 import org.junit.Test;
 
+import java.util.function.Predicate;
+
 import static org.junit.Assert.*;
 
 public class DubboClientBuilderTest {
@@ -44,6 +49,51 @@ public class DubboClientBuilderTest {
                 .setConnectionConfig(connectionConfig);
         assertEquals(1000, builder.getWriteTimeout());
         assertEquals(1000, builder.getReadTimeout());
+        assertNull(builder.getConcurrencyLimit());
+        assertFalse(builder.isConcurrencyLimitPerMethod());
+
+        builder.setConcurrencyLimit(AimdLimit::new)
+                .setConcurrencyLimitPerMethod(true);
+        assertNotNull(builder.getConcurrencyLimit());
+        assertTrue(builder.isConcurrencyLimitPerMethod());
+
+        assertNull(builder.getHedgingPolicy());
+        final HedgingPolicy hedgingPolicy = new HedgingPolicy()
+                .setDelayPercentile(95D)
+                .setBudgetRatio(0.1D);
+        builder.setHedgingPolicy(hedgingPolicy);
+        assertSame(hedgingPolicy, builder.getHedgingPolicy());
+        assertEquals(10L, hedgingPolicy.getDelayMillis());
+        assertEquals(95D, hedgingPolicy.getDelayPercentile(), 0D);
+        assertEquals(0.1D, hedgingPolicy.getBudgetRatio(), 0D);
+        assertEquals(10, hedgingPolicy.getBudgetBurst());
+        assertNull(hedgingPolicy.getHedgeable());
+
+        assertNull(builder.getDeserializationStrategy());
+        final DeserializationStrategy strategy = DeserializationStrategy.workStealing(2).inlineBelow(1024);
+        builder.setDeserializationStrategy(strategy);
+        assertSame(strategy, builder.getDeserializationStrategy());
+        assertEquals(1024, strategy.getInlineBodyBytes());
+        assertSame(DeserializationStrategy.ioThread(), DeserializationStrategy.ioThread().inlineBelow(1024));
+
+        assertNull(builder.getResponseCachePolicy());
+        final ResponseCachePolicy cachePolicy = new ResponseCachePolicy()
+                .setMaxEntries(100)
+                .setTtlMillis("com.oppo.test.EchoService", "echo", 1000L);
+        builder.setResponseCachePolicy(cachePolicy);
+        assertSame(cachePolicy, builder.getResponseCachePolicy());
+        assertEquals(100, cachePolicy.getMaxEntries());
+        assertEquals(1000L, cachePolicy.getTtlMillis("com.oppo.test.EchoService", "echo"));
+        assertEquals(0L, cachePolicy.getTtlMillis("com.oppo.test.EchoService", "other"));
+
+        assertNull(builder.getCoalescable());
+        final Predicate<DubboMessage> coalescable = request -> true;
+        builder.setCoalescable(coalescable);
+        assertSame(coalescable, builder.getCoalescable());
+
+        assertFalse(builder.isPooledResponses());
+        builder.setPooledResponses(true);
+        assertTrue(builder.isPooledResponses());
 
         NettyDubboClient client = builder.build();
     }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.codec.DubboHeader;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.esastack.codec.dubbo.core.codec.helper.LazyDubboRpcResult;
+import io.esastack.codec.dubbo.core.codec.helper.ServerCodecHelper;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HedgedRequestTest {
+
+    private final List<Object> responses = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+    private final ResponseCallback callback = new ResponseCallback() {
+        @Override
+        public void onResponse(Object result) {
+            responses.add(result);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            errors.add(e);
+        }
+    };
+
+    private static DubboMessage request(ByteBuf body) {
+        return new DubboMessage()
+                .setHeader(new DubboHeader().setSeriType((byte) 2))
+                .setBody(body)
+                .setInterfaceName("com.oppo.test.EchoService")
+                .setMethodName("echo");
+    }
+
+    @Test
+    public void testBackupWins() {
+        final Hedging hedging = new Hedging(new HedgingPolicy().setDelayPercentile(90D));
+        final ByteBuf body = Unpooled.buffer().writeBytes(new byte[8]);
+        final HedgedRequest hedged = new HedgedRequest(hedging, request(body), callback, 1000L);
+        assertEquals(2, body.refCnt());
+
+        final DubboMessage backup = hedged.takeBackup();
+        assertNotNull(backup);
+        assertEquals(8, backup.getBody().readableBytes());
+        assertEquals("echo", backup.getMethodName());
+        assertFalse(backup.isHeaderReserved());
+        assertNull(hedged.takeBackup());
+
+        hedged.backup().onResponse("backup");
+        assertTrue(hedged.isCompleted());
+        // the response of the loser is discarded
+        final DubboMessage response = request(Unpooled.buffer().writeBytes(new byte[8]));
+        hedged.primary().onResponse(new DubboMessageWrapper(response));
+        hedged.primary().onError(new IllegalStateException());
+        assertEquals(1, responses.size());
+        assertEquals("backup", responses.get(0));
+        assertTrue(errors.isEmpty());
+        assertEquals(0, response.refCnt());
+        assertEquals(1L, hedging.getStats().getWon());
+        // the latency of the original request is recorded although it lost
+        assertEquals(1L, hedging.getSamples());
+    }
+
+    @Test
+    public void testLazyLoserReleased() throws Exception {
+        final Hedging hedging = new Hedging(new HedgingPolicy().setDelayPercentile(90D));
+        final HedgedRequest hedged = new HedgedRequest(hedging,
+                request(Unpooled.buffer().writeBytes(new byte[8])), callback, 1000L);
+        hedged.takeBackup().release();
+        hedged.primary().onResponse("primary");
+        assertFalse(hedged.backup().deserialized());
+
+        final DubboMessage response = ServerCodecHelper.toDubboMessage(
+                DubboRpcResult.success(1L, (byte) 2, "backup"), ByteBufAllocator.DEFAULT);
+        final LazyDubboRpcResult lazy = (LazyDubboRpcResult) ClientCodecHelper.toLazyRpcResult(
+                response, String.class, String.class, null);
+        response.release();
+        hedged.backup().onResponse(lazy);
+        assertTrue(lazy.isDeserialized());
+        assertFalse(lazy.release());
+        assertEquals(1, responses.size());
+        assertEquals(1L, hedging.getSamples());
+    }
+
+    @Test
+    public void testLoserTimeoutRecorded() {
+        final Hedging hedging = new Hedging(new HedgingPolicy().setDelayPercentile(90D));
+        final HedgedRequest hedged = new HedgedRequest(hedging,
+                request(Unpooled.buffer().writeBytes(new byte[8])), callback, 1000L);
+        hedged.takeBackup().release();
+        hedged.backup().onResponse("backup");
+        assertEquals(0L, hedging.getSamples());
+        hedged.primary().onError(new ResponseTimeoutException("timeout"));
+        assertEquals(1L, hedging.getSamples());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testPrimaryWins() {
+        final Hedging hedging = new Hedging(new HedgingPolicy());
+        final ByteBuf body = Unpooled.buffer().writeBytes(new byte[8]);
+        final HedgedRequest hedged = new HedgedRequest(hedging, request(body), callback, 1000L);
+        hedged.primary().onResponse("primary");
+        // the backup is released and cannot be sent any more
+        assertEquals(1, body.refCnt());
+        assertNull(hedged.takeBackup());
+        assertEquals(1, responses.size());
+        assertEquals(0L, hedging.getStats().getWon());
+    }
+
+    @Test
+    public void testErrorWaitsForTheOther() {
+        final Hedging hedging = new Hedging(new HedgingPolicy());
+        final HedgedRequest hedged = new HedgedRequest(hedging,
+                request(Unpooled.buffer().writeBytes(new byte[8])), callback, 1000L);
+        hedged.takeBackup().release();
+        hedged.primary().onError(new IllegalStateException());
+        assertFalse(hedged.isCompleted());
+        assertTrue(errors.isEmpty());
+        hedged.backup().onResponse("backup");
+        assertEquals(1, responses.size());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testErrorWithoutBackup() {
+        final Hedging hedging = new Hedging(new HedgingPolicy());
+        final ByteBuf body = Unpooled.buffer().writeBytes(new byte[8]);
+        final HedgedRequest hedged = new HedgedRequest(hedging, request(body), callback, 1000L);
+        hedged.primary().onError(new IllegalStateException());
+        assertTrue(hedged.isCompleted());
+        assertEquals(1, errors.size());
+        assertEquals(1, body.refCnt());
+        assertNull(hedged.takeBackup());
+    }
+
+    @Test
+    public void testHedgeableOptIn() {
+        final DubboMessage request = request(Unpooled.EMPTY_BUFFER);
+        assertFalse(new Hedging(new HedgingPolicy()).isHedgeable(request));
+        assertTrue(new Hedging(new HedgingPolicy()
+                .setHedgeable(message -> "echo".equals(message.getMethodName()))).isHedgeable(request));
+        assertFalse(new Hedging(new HedgingPolicy()
+                .setHedgeable(message -> "save".equals(message.getMethodName()))).isHedgeable(request));
+    }
+
+    @Test
+    public void testBudget() {
+        final Hedging hedging = new Hedging(new HedgingPolicy().setBudgetRatio(0.1D).setBudgetBurst(2));
+        assertFalse(hedging.tryAcquire());
+        for (int i = 0; i < 1000; i++) {
+            hedging.onRequest();
+        }
+        // 100 tokens earned, but only the burst is kept
+        assertTrue(hedging.tryAcquire());
+        assertTrue(hedging.tryAcquire());
+        assertFalse(hedging.tryAcquire());
+        for (int i = 0; i < 10; i++) {
+            hedging.onRequest();
+        }
+        assertTrue(hedging.tryAcquire());
+        assertFalse(hedging.tryAcquire());
+        hedging.refund();
+        assertTrue(hedging.tryAcquire());
+        assertFalse(hedging.tryAcquire());
+        assertEquals(1010L, hedging.getStats().getRequests());
+        assertEquals(4L, hedging.getStats().getBudgetExhausted());
+    }
+
+    @Test
+    public void testPercentileDelay() {
+        final Hedging hedging = new Hedging(new HedgingPolicy().setDelayMillis(5L).setDelayPercentile(90D));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5L), hedging.delayNanos());
+        for (int i = 1; i <= Hedging.WINDOW; i++) {
+            hedging.onLatency(i);
+        }
+        assertEquals(922L, hedging.delayNanos());
+
+        final Hedging fixed = new Hedging(new HedgingPolicy().setDelayMillis(5L));
+        for (int i = 1; i <= Hedging.WINDOW; i++) {
+            fixed.onLatency(i);
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5L), fixed.delayNanos());
+    }
+
+    @Test
+    public void testIllegalPolicy() {
+        assertThrows(IllegalArgumentException.class, () -> new Hedging(new HedgingPolicy().setDelayMillis(-1L)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Hedging(new HedgingPolicy().setDelayPercentile(100D)));
+        assertThrows(IllegalArgumentException.class, () -> new Hedging(new HedgingPolicy().setBudgetRatio(0D)));
+        assertThrows(IllegalArgumentException.class, () -> new Hedging(new HedgingPolicy().setBudgetBurst(0)));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.common.ResponseCallback;
+import io.esastack.codec.common.limiter.ConcurrencyLimit;
+import io.esastack.codec.common.limiter.ConcurrencyLimiter;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+public class LimitedResponseCallbackTest {
+
+    @Test
+    public void testRttEndsWhenDecoded() throws InterruptedException {
+        final AtomicLong sample = new AtomicLong(-1L);
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(new ConcurrencyLimit() {
+            @Override
+            public int getLimit() {
+                return 10;
+            }
+
+            @Override
+            public void onSample(long rttNanos, int inFlight, boolean dropped) {
+                sample.set(rttNanos);
+            }
+        });
+        assertTrue(limiter.tryAcquire());
+        final LimitedResponseCallback callback = new LimitedResponseCallback(new ResponseCallback() {
+            @Override
+            public void onResponse(Object result) {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+        }, limiter);
+        callback.onWriteToNetwork(true, null);
+        final DubboRpcResult result = new DubboRpcResult();
+        result.setDecodedNanos(System.nanoTime());
+        // deserialization and queueing of the callback, not spent by the provider
+        Thread.sleep(100L);
+        callback.onResponse(result);
+        assertTrue(sample.get() >= 0L);
+        assertTrue(sample.get() < TimeUnit.MILLISECONDS.toNanos(100L));
+    }
+}
@@ -15,18 +15,33 @@
  */
 package io.esastack.codec.dubbo.client;
 
+import io.esastack.codec.common.connection.ClientTransport;
 import io.esastack.codec.common.connection.NettyConnectionConfig;
 import io.esastack.codec.common.exception.ConnectFailedException;
+import io.esastack.codec.common.exception.LimitExceededException;
 import io.esastack.codec.common.exception.ResponseTimeoutException;
+import io.esastack.codec.common.limiter.AimdLimit;
+import io.esastack.codec.common.limiter.ConcurrencyLimiter;
 import io.esastack.codec.common.ssl.SslContextBuilder;
+import io.esastack.codec.dubbo.client.serialize.DeserializationStrategy;
 import io.esastack.codec.dubbo.core.DubboRpcResult;
 import io.esastack.codec.dubbo.core.RpcInvocation;
 import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.DubboMessageWrapper;
 import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.esastack.codec.dubbo.core.codec.helper.LazyDubboRpcResult;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.concurrent.EventExecutor;
 import org.junit.*;
 import org.junit.runners.MethodSorters;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
 
@@ -104,6 +119,197 @@ public class NettyDubboClientTest {
         }
     }
 
+    @Test
+    public void deserializationStrategy() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder().setMaxPoolSize(1))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient offloadingClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setDeserializationStrategy(DeserializationStrategy.executor(executor))
+                .build();
+        try {
+            assertEquals("test", offloadingClient.sendRequest(createDubboMessage(String.class, false),
+                    String.class, 1000).get().getValue());
+            assertEquals(1L, offloadingClient.getDeserializationStats().getOffloaded());
+            assertEquals(0L, offloadingClient.getDeserializationStats().getInline());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            offloadingClient.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void eventLoopAffinity() {
+        final ClientTransport transport = ClientTransport.newTransport(2, "affinity");
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder()
+                        .setMaxPoolSize(2)
+                        .setInit(true)
+                        .setEventLoopAffinity(true))
+                .setTransport(transport)
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient affinityClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .build();
+        try {
+            // the connections of the init are spread over the event loops
+            for (EventExecutor eventLoop : transport.getEventLoopGroup()) {
+                for (int i = 0; i < 2; i++) {
+                    // sent from the event loop, the response completes on it
+                    final CompletableFuture<Thread> responseThread = new CompletableFuture<>();
+                    eventLoop.execute(() -> affinityClient.sendRequest(createDubboMessage(String.class, false),
+                            String.class, 1000).whenComplete((r, t) -> {
+                                if (t == null && "test".equals(r.getValue())) {
+                                    responseThread.complete(Thread.currentThread());
+                                } else {
+                                    responseThread.completeExceptionally(new IllegalStateException(t));
+                                }
+                            }));
+                    final Thread expected = eventLoop.submit(Thread::currentThread).get();
+                    assertSame(expected, responseThread.get());
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            affinityClient.close();
+            transport.close();
+        }
+    }
+
+    @Test
+    public void hedged() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder()
+                        .setMaxPoolSize(2)
+                        .setInit(true))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        // every request gets a backup right away
+        final NettyDubboClient hedgedClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setHedgingPolicy(new HedgingPolicy()
+                        .setDelayMillis(0L)
+                        .setBudgetRatio(1D)
+                        .setHedgeable(request -> "echo".equals(request.getMethodName())))
+                .build();
+        try {
+            for (int i = 0; i < 5; i++) {
+                final DubboRpcResult rpcResult = hedgedClient.sendRequest(
+                        createDubboMessage(String.class, false), String.class, 1000).get();
+                assertEquals("test", rpcResult.getValue());
+            }
+            final HedgingStats stats = hedgedClient.getHedgingStats();
+            assertEquals(5L, stats.getRequests());
+            assertTrue(stats.getHedged() > 0L);
+            assertTrue(stats.getWon() <= stats.getHedged());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            hedgedClient.close();
+        }
+    }
+
+    @Test
+    public void isolatedEventLoops() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder().setMaxPoolSize(1))
+                .setIoThreads(1)
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient isolatedClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .build();
+        final ClientTransport transport = isolatedClient.getTransport();
+        try {
+            assertTrue(transport.isOwned());
+            assertNotSame(ClientTransport.shared(), transport);
+            assertEquals("test", isolatedClient.sendRequest(createDubboMessage(String.class, false),
+                    String.class, 1000).get().getValue());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            isolatedClient.close();
+        }
+        assertTrue(transport.getEventLoopGroup().isShuttingDown());
+        assertSame(ClientTransport.shared(), client.getTransport());
+    }
+
+    @Test
+    public void limitExceeded() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder().setMaxPoolSize(1))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient limitedClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setConcurrencyLimit(() -> new AimdLimit(1, 1, 1, 0.5, 1000L))
+                .build();
+        try {
+            final CompletableFuture<DubboRpcResult> first =
+                    limitedClient.sendRequest(createDubboMessage(String.class, false), String.class, 1000);
+            final CompletableFuture<DubboRpcResult> second =
+                    limitedClient.sendRequest(createDubboMessage(String.class, false), String.class, 1000);
+            assertEquals("test", first.get().getValue());
+            try {
+                second.get();
+                fail();
+            } catch (Exception e) {
+                assertEquals(LimitExceededException.class, e.getCause().getClass());
+            }
+            final ConcurrencyLimiter limiter = limitedClient.getConcurrencyLimiter();
+            assertEquals(0, limiter.getInFlight());
+            assertEquals(1L, limiter.getRejected());
+            // the permit of the first request has been released
+            assertEquals("test", limitedClient.sendRequest(createDubboMessage(String.class, false),
+                    String.class, 1000).get().getValue());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            limitedClient.close();
+        }
+    }
+
+    @Test
+    public void onewayOverBudget() {
+        final NettyConnectionConfig.MultiplexPoolBuilder poolBuilder = NettyConnectionConfig
+                .MultiplexPoolBuilder
+                .newBuilder()
+                .setMaxPoolSize(1);
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(poolBuilder)
+                .setOneWayPendingBytesLimit(0)
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient budgetClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .build();
+        try {
+            for (int i = 0; i < 8; i++) {
+                // every request is beyond the budget and completes when its write completes
+                final DubboMessage onewayRequest = createDubboMessage(String.class, true);
+                final DubboRpcResult rpcResult = budgetClient.sendRequest(onewayRequest, String.class, 1000).get();
+                assertNull(rpcResult.getValue());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            budgetClient.close();
+        }
+    }
+
     @Test
     public void requestSuccess() {
         final DubboMessage request = createDubboMessage(String.class, false);
@@ -143,6 +349,240 @@ public class NettyDubboClientTest {
         }
     }
 
+    @Test
+    public void responseCache() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder().setMaxPoolSize(1))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient cachingClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setResponseCachePolicy(new ResponseCachePolicy()
+                        .setTtlMillis("com.oppo.test.EchoService", "echo", 60000L))
+                .build();
+        try {
+            assertEquals("test", cachingClient.sendRequest(createDubboMessage(String.class, false),
+                    String.class, 1000).get().getValue());
+            // the server takes 200 ms to respond, the cached response does not
+            final CompletableFuture<DubboRpcResult> cached =
+                    cachingClient.sendRequest(createDubboMessage(String.class, false), String.class, 1000);
+            assertTrue(cached.isDone());
+            assertEquals("test", cached.get().getValue());
+            final DubboMessageWrapper wrapper = cachingClient.sendReqWithoutRespDeserialize(
+                    createDubboMessage(String.class, false), String.class, 1000).get();
+            assertEquals("test", ClientCodecHelper.toRpcResult(wrapper.getMessage(), String.class).getValue());
+            wrapper.getMessage().release();
+
+            final ResponseCacheStats stats = cachingClient.getResponseCacheStats();
+            assertEquals(2L, stats.getHits());
+            assertEquals(1L, stats.getMisses());
+            cachingClient.clearResponseCache();
+            assertEquals("test", cachingClient.sendRequest(createDubboMessage(String.class, false),
+                    String.class, 1000).get().getValue());
+            assertEquals(2L, stats.getMisses());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            cachingClient.close();
+        }
+        assertNull(client.getResponseCacheStats());
+    }
+
+    @Test
+    public void coalescing() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder().setMaxPoolSize(1))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient coalescingClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setCoalescable(request -> "echo".equals(request.getMethodName()))
+                .build();
+        try {
+            // the server takes 200 ms to respond, the identical requests are made while the first one is in flight
+            final CompletableFuture<DubboRpcResult> first =
+                    coalescingClient.sendRequest(createDubboMessage(String.class, false), String.class, 1000);
+            final CompletableFuture<DubboRpcResult> second =
+                    coalescingClient.sendRequest(createDubboMessage(String.class, false), String.class, 1000);
+            final CompletableFuture<DubboMessageWrapper> third = coalescingClient.sendReqWithoutRespDeserialize(
+                    createDubboMessage(String.class, false), String.class, 1000);
+            assertEquals("test", first.get().getValue());
+            assertEquals("test", second.get().getValue());
+            final DubboMessage message = third.get().getMessage();
+            assertEquals("test", ClientCodecHelper.toRpcResult(message, String.class).getValue());
+            message.release();
+
+            final CoalescingStats stats = coalescingClient.getCoalescingStats();
+            assertEquals(1L, stats.getSent());
+            assertEquals(2L, stats.getCoalesced());
+            // the completed request is not shared anymore
+            assertEquals("test", coalescingClient.sendRequest(createDubboMessage(String.class, false),
+                    String.class, 1000).get().getValue());
+            assertEquals(2L, stats.getSent());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            coalescingClient.close();
+        }
+        assertNull(client.getCoalescingStats());
+    }
+
+    @Test
+    public void pooledResponses() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder().setMaxPoolSize(1))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient pooledClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setPooledResponses(true)
+                .build();
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals("test", pooledClient.sendRequest(createDubboMessage(String.class, false),
+                        String.class, 1000).get().getValue());
+            }
+            final DubboMessage message = pooledClient.sendReqWithoutRespDeserialize(
+                    createDubboMessage(String.class, false), String.class, 1000).get().getMessage();
+            assertTrue(message.isPooled());
+            assertEquals("test", ClientCodecHelper.toRpcResult(message, String.class).getValue());
+            message.release();
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            pooledClient.close();
+        }
+    }
+
+    @Test
+    public void pooledResponsesDeserializedLazily() {
+        final ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder().setMaxPoolSize(1))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient pooledClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setPooledResponses(true)
+                .setDeserializationStrategy(DeserializationStrategy.lazy())
+                .build();
+        try {
+            for (int i = 0; i < 3; i++) {
+                final DubboRpcResult read = pooledClient.sendRequest(createDubboMessage(String.class, false),
+                        String.class, 1000).get();
+                assertTrue(read instanceof LazyDubboRpcResult);
+                assertEquals("test", read.getValue());
+                // the lazy result owns the body taken from the recycled response: its release frees the body
+                final DubboRpcResult unread = pooledClient.sendRequest(createDubboMessage(String.class, false),
+                        String.class, 1000).get();
+                assertTrue(((LazyDubboRpcResult) unread).release());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            pooledClient.close();
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    @Test
+    public void pooledResponsesCoalescedAndHedged() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder()
+                        .setMaxPoolSize(2)
+                        .setInit(true))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient pooledClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setPooledResponses(true)
+                .setCoalescable(request -> "echo".equals(request.getMethodName()))
+                .setHedgingPolicy(new HedgingPolicy()
+                        .setDelayMillis(0L)
+                        .setBudgetRatio(1D)
+                        .setHedgeable(request -> "echo".equals(request.getMethodName())))
+                .build();
+        try {
+            for (int i = 0; i < 3; i++) {
+                final CompletableFuture<DubboRpcResult> first =
+                        pooledClient.sendRequest(createDubboMessage(String.class, false), String.class, 1000);
+                final CompletableFuture<DubboMessageWrapper> second = pooledClient.sendReqWithoutRespDeserialize(
+                        createDubboMessage(String.class, false), String.class, 1000);
+                final CompletableFuture<DubboRpcResult> third =
+                        pooledClient.sendRequest(createDubboMessage(String.class, false), String.class, 1000);
+                // the waiters of a coalesced request never share the recycled response
+                final DubboMessage message = second.get().getMessage();
+                assertFalse(message.isPooled());
+                assertEquals("test", ClientCodecHelper.toRpcResult(message, String.class).getValue());
+                message.release();
+                assertEquals("test", first.get().getValue());
+                assertEquals("test", third.get().getValue());
+            }
+            assertEquals(6L, pooledClient.getCoalescingStats().getCoalesced());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            pooledClient.close();
+        }
+    }
+
+    @Test
+    public void sendBatch() {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setMultiplexPoolBuilder(NettyConnectionConfig.MultiplexPoolBuilder.newBuilder()
+                        .setInit(true)
+                        .setMaxPoolSize(2))
+                .setHost("127.0.0.1")
+                .setPort(20880);
+        final NettyDubboClient batchClient = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .build();
+        try {
+            final List<DubboMessage> requests = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                requests.add(createDubboMessage(String.class, false));
+            }
+            requests.add(createDubboMessage(String.class, true));
+            final BatchResponses responses = batchClient.sendBatch(requests, String.class, String.class, 3000);
+            assertEquals(21, responses.size());
+            final List<DubboRpcResult> results = responses.all().get();
+            for (int i = 0; i < 20; i++) {
+                assertEquals("test", results.get(i).getValue());
+                assertSame(results.get(i), responses.get(i).get());
+            }
+            assertNull(results.get(20).getValue());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            batchClient.close();
+        }
+
+        final NettyDubboClient failedClient = createClient(20001);
+        try {
+            final BatchResponses responses = failedClient.sendBatch(Arrays.asList(
+                    createDubboMessage(String.class, false), createDubboMessage(String.class, false)), String.class);
+            try {
+                responses.all().get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(responses.get(0).isCompletedExceptionally());
+                assertTrue(responses.get(1).isCompletedExceptionally());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            failedClient.close();
+        }
+    }
+
     //@Test
     //public void tlsFallbackToNormal() {
     //    final DubboMessage request = createDubboMessage();
@@ -169,7 +609,9 @@ public class NettyDubboClientTest {
         } catch (Throwable ex) {
             assertTrue(ex.getCause() instanceof ConnectFailedException);
         }
-        final CompletableFuture<DubboRpcResult> requestFuture = nettyDubboClient.sendRequest(request, String.class);
+        // the failed request has been released, send a new one
+        final CompletableFuture<DubboRpcResult> requestFuture =
+                nettyDubboClient.sendRequest(createDubboMessage(String.class, false), String.class);
         try {
             requestFuture.get();
             fail();
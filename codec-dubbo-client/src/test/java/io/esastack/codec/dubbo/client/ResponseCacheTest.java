@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.client;
+
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.esastack.codec.dubbo.core.codec.helper.ServerCodecHelper;
+import io.netty.buffer.ByteBufAllocator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    private static final String INTERFACE_NAME = "com.oppo.test.EchoService";
+
+    private static DubboMessage request(String method, String argument, String traceId) throws Exception {
+        return request(method, argument, traceId, null);
+    }
+
+    private static DubboMessage request(String method, String argument, String traceId, String group)
+            throws Exception {
+        final Map<String, String> attachments = new HashMap<>();
+        attachments.put("traceId", traceId);
+        if (group != null) {
+            attachments.put(DubboConstants.PARAMETER_KEY.GROUP_KEY, group);
+        }
+        final RpcInvocation invocation = new RpcInvocation();
+        invocation.setInterfaceName(INTERFACE_NAME);
+        invocation.setMethodName(method);
+        invocation.setSeriType((byte) 2);
+        invocation.setParameterTypes(new Class[]{String.class});
+        invocation.setArguments(new Object[]{argument});
+        invocation.setAttachments(attachments);
+        return ClientCodecHelper.toDubboMessage(invocation);
+    }
+
+    private static DubboMessage response(DubboRpcResult result) throws Exception {
+        return ServerCodecHelper.toDubboMessage(result, ByteBufAllocator.DEFAULT);
+    }
+
+    private static InvocationKey keyOf(ResponseCache cache, String method, String argument) throws Exception {
+        final DubboMessage request = request(method, argument, String.valueOf(System.nanoTime()));
+        try {
+            return cache.keyOf(request);
+        } finally {
+            request.release();
+        }
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        final ResponseCache cache = new ResponseCache(new ResponseCachePolicy()
+                .setTtlMillis(INTERFACE_NAME, "echo", 1000L));
+        assertNull(keyOf(cache, "other", "a"));
+        // the attachments are not part of the key
+        assertEquals(keyOf(cache, "echo", "a"), keyOf(cache, "echo", "a"));
+        assertNotEquals(keyOf(cache, "echo", "a"), keyOf(cache, "echo", "b"));
+
+        final DubboMessage oneWay = request("echo", "a", "1");
+        oneWay.getHeader().setTwoWay(false);
+        assertNull(cache.keyOf(oneWay));
+        oneWay.release();
+    }
+
+    @Test
+    public void testGroupsNotShared() throws Exception {
+        final ResponseCache cache = new ResponseCache(new ResponseCachePolicy().setDefaultTtlMillis(1000L));
+        final DubboMessage blue = request("echo", "a", "1", "blue");
+        final DubboMessage green = request("echo", "a", "2", "green");
+        final DubboMessage blueAgain = request("echo", "a", "3", "blue");
+        final InvocationKey blueKey = cache.keyOf(blue);
+        assertNotEquals(blueKey, cache.keyOf(green));
+        assertEquals(blueKey, cache.keyOf(blueAgain));
+
+        final DubboMessage response = response(DubboRpcResult.success(1L, (byte) 2, "blue"));
+        cache.put(blueKey, response);
+        response.release();
+        assertNull(cache.get(cache.keyOf(green)));
+        final DubboMessage cached = cache.get(cache.keyOf(blueAgain));
+        assertEquals("blue", ClientCodecHelper.toRpcResult(cached, String.class).getValue());
+        cached.release();
+        blue.release();
+        green.release();
+        blueAgain.release();
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        final ResponseCache cache = new ResponseCache(new ResponseCachePolicy().setDefaultTtlMillis(1000L));
+        final InvocationKey key = keyOf(cache, "echo", "a");
+        assertNull(cache.get(key));
+
+        final DubboMessage response = response(DubboRpcResult.success(1L, (byte) 2, "a"));
+        cache.put(key, response);
+        response.release();
+        final DubboMessage cached = cache.get(keyOf(cache, "echo", "a"));
+        assertEquals("a", ClientCodecHelper.toRpcResult(cached, String.class).getValue());
+        cached.release();
+        // the cached body is not consumed by a hit
+        assertEquals("a", ClientCodecHelper.toRpcResult(cache.get(key), String.class).getValue());
+
+        assertEquals(2L, cache.getStats().getHits());
+        assertEquals(1L, cache.getStats().getMisses());
+        assertEquals(1L, cache.getStats().getStored());
+    }
+
+    @Test
+    public void testNoCachedException() throws Exception {
+        final ResponseCache cache = new ResponseCache(new ResponseCachePolicy().setDefaultTtlMillis(1000L));
+        final InvocationKey key = keyOf(cache, "echo", "a");
+        final DubboMessage response = response(
+                DubboRpcResult.error(1L, (byte) 2, new IllegalStateException("failed")));
+        cache.put(key, response);
+        response.release();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        final ResponseCache cache = new ResponseCache(new ResponseCachePolicy().setDefaultTtlMillis(1L));
+        final InvocationKey key = keyOf(cache, "echo", "a");
+        final DubboMessage response = response(DubboRpcResult.success(1L, (byte) 2, "a"));
+        cache.put(key, response);
+        response.release();
+        Thread.sleep(5L);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+        assertEquals(1L, cache.getStats().getExpired());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        final ResponseCache cache = new ResponseCache(new ResponseCachePolicy()
+                .setDefaultTtlMillis(1000L)
+                .setMaxEntries(2));
+        final InvocationKey a = keyOf(cache, "echo", "a");
+        final InvocationKey b = keyOf(cache, "echo", "b");
+        final InvocationKey c = keyOf(cache, "echo", "c");
+        for (InvocationKey key : new InvocationKey[]{a, b}) {
+            final DubboMessage response = response(DubboRpcResult.success(1L, (byte) 2, "v"));
+            cache.put(key, response);
+            response.release();
+        }
+        assertNotNull(cache.get(a));
+        final DubboMessage response = response(DubboRpcResult.success(1L, (byte) 2, "v"));
+        cache.put(c, response);
+        response.release();
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+        assertEquals(1L, cache.getStats().getEvicted());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMaxEntries() {
+        new ResponseCache(new ResponseCachePolicy().setMaxEntries(0));
+    }
+}
@@ -3,15 +3,26 @@ package io.esastack.codec.dubbo.client.serialize;
 import io.esastack.codec.common.ResponseCallback;
 import io.esastack.codec.dubbo.core.DubboRpcResult;
 import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.LazyDubboRpcResult;
 import io.esastack.codec.dubbo.core.codec.helper.ServerCodecHelper;
+import io.netty.buffer.ByteBuf;
 import org.junit.Test;
 
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class SerializeHandlerTest {
 
@@ -64,4 +75,198 @@ public class SerializeHandlerTest {
         assertEquals("ok", result.get());
     }
 
+    private static DubboMessage response(String value) {
+        return ServerCodecHelper.toDubboMessage(DubboRpcResult.success(0, (byte) 2, value));
+    }
+
+    private static ResponseCallback callback(CompletableFuture<Object> future) {
+        return new ResponseCallback() {
+
+            @Override
+            public boolean deserialized() {
+                return true;
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onGotConnection(boolean b, String errMsg) {
+
+            }
+
+            @Override
+            public void onWriteToNetwork(boolean isSuccess, String errMsg) {
+
+            }
+
+            @Override
+            public Class<?> getReturnType() {
+                return String.class;
+            }
+
+            @Override
+            public void onResponse(Object rpcResult) {
+                future.complete(Thread.currentThread().getName() + ":" + ((DubboRpcResult) rpcResult).getValue());
+            }
+
+            @Override
+            public Type getGenericReturnType() {
+                return String.class;
+            }
+        };
+    }
+
+    @Test
+    public void testIoThread() throws Exception {
+        final SerializeHandler handler = new SerializeHandler(DeserializationStrategy.ioThread());
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final DubboMessage response = response("ok");
+        handler.deserialize(response, callback(future), new HashMap<>());
+        assertEquals(Thread.currentThread().getName() + ":ok", future.get());
+        assertEquals(0, response.getBody().refCnt());
+        assertEquals(1L, handler.getStats().getInline());
+        assertEquals(0L, handler.getStats().getOffloaded());
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "deserializer"));
+        try {
+            final SerializeHandler handler = new SerializeHandler(DeserializationStrategy.executor(executor));
+            final CompletableFuture<Object> future = new CompletableFuture<>();
+            handler.deserialize(response("ok"), callback(future), new HashMap<>());
+            assertEquals("deserializer:ok", future.get());
+            final DeserializationStats stats = handler.getStats();
+            assertEquals(1L, stats.getOffloaded());
+            assertEquals(0, stats.getQueued());
+            assertEquals(1, stats.getMaxQueued());
+            assertTrue(stats.getMaxWaitNanos() > 0L);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInlineBelow() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "deserializer"));
+        try {
+            final SerializeHandler handler =
+                    new SerializeHandler(DeserializationStrategy.executor(executor).inlineBelow(64));
+            final CompletableFuture<Object> small = new CompletableFuture<>();
+            handler.deserialize(response("ok"), callback(small), new HashMap<>());
+            assertEquals(Thread.currentThread().getName() + ":ok", small.get());
+
+            final char[] chars = new char[128];
+            Arrays.fill(chars, 'x');
+            final CompletableFuture<Object> large = new CompletableFuture<>();
+            handler.deserialize(response(new String(chars)), callback(large), new HashMap<>());
+            assertEquals("deserializer:" + new String(chars), large.get());
+            assertEquals(1L, handler.getStats().getInline());
+            assertEquals(1L, handler.getStats().getOffloaded());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        final SerializeHandler handler = new SerializeHandler(DeserializationStrategy.executor(command -> {
+            throw new RejectedExecutionException();
+        }));
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        handler.deserialize(response("ok"), callback(future), new HashMap<>());
+        assertEquals(Thread.currentThread().getName() + ":ok", future.get());
+        assertEquals(1L, handler.getStats().getRejected());
+        assertEquals(1L, handler.getStats().getInline());
+        assertEquals(0, handler.getStats().getQueued());
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        final SerializeHandler handler = new SerializeHandler(DeserializationStrategy.lazy().inlineBelow(64));
+        final CompletableFuture<Object> small = new CompletableFuture<>();
+        handler.deserialize(response("ok"), callback(small), new HashMap<>());
+        assertEquals(Thread.currentThread().getName() + ":ok", small.get());
+
+        final char[] chars = new char[128];
+        Arrays.fill(chars, 'x');
+        final DubboMessage response = response(new String(chars));
+        final ByteBuf body = response.getBody();
+        final AtomicReference<Object> result = new AtomicReference<>();
+        handler.deserialize(response, new ResponseCallback() {
+
+            @Override
+            public void onResponse(Object rpcResult) {
+                result.set(rpcResult);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                result.set(e);
+            }
+
+            @Override
+            public Class<?> getReturnType() {
+                return String.class;
+            }
+        }, new HashMap<>());
+        final LazyDubboRpcResult lazy = (LazyDubboRpcResult) result.get();
+        assertFalse(lazy.isDeserialized());
+        // the body is taken over from the released response and kept until the value is read, by the caller
+        assertNull(response.getBody());
+        assertEquals(1, body.refCnt());
+        assertEquals(new String(chars), CompletableFuture.supplyAsync(lazy::getValue).get());
+        assertTrue(lazy.isDeserialized());
+        assertEquals(0, body.refCnt());
+        assertEquals(1L, handler.getStats().getInline());
+        assertEquals(1L, handler.getStats().getDeferred());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        final DeserializationStrategy strategy;
+        try {
+            strategy = DeserializationStrategy.virtualThreads();
+        } catch (UnsupportedOperationException e) {
+            // before java 21
+            return;
+        }
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final SerializeHandler handler = new SerializeHandler(strategy);
+        handler.deserialize(response("ok"), callback(future), new HashMap<>());
+        assertTrue(((String) future.get()).endsWith(":ok"));
+        handler.close();
+    }
+
+    @Test
+    public void testOwnedExecutorShutDown() throws Exception {
+        final DeserializationStrategy strategy = DeserializationStrategy.workStealing(1);
+        assertTrue(strategy.isOwned());
+        assertTrue(strategy.inlineBelow(16).isOwned());
+        assertNull(strategy.getExecutor());
+        final SerializeHandler closed = new SerializeHandler(strategy);
+        final SerializeHandler open = new SerializeHandler(strategy);
+        closed.close();
+
+        // each handler has its own executor: the closed one deserializes on the caller once its executor is shut down
+        final CompletableFuture<Object> inline = new CompletableFuture<>();
+        closed.deserialize(response("ok"), callback(inline), new HashMap<>());
+        assertEquals(Thread.currentThread().getName() + ":ok", inline.get());
+        assertEquals(1L, closed.getStats().getRejected());
+        final CompletableFuture<Object> offloaded = new CompletableFuture<>();
+        open.deserialize(response("ok"), callback(offloaded), new HashMap<>());
+        assertNotEquals(Thread.currentThread().getName() + ":ok", offloaded.get());
+        open.close();
+
+        // an executor given by the caller is left to the caller
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final DeserializationStrategy given = DeserializationStrategy.executor(executor);
+        assertFalse(given.isOwned());
+        new SerializeHandler(given).close();
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+    }
 }
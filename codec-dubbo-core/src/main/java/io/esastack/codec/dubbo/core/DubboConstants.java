@@ -32,6 +32,11 @@ public class DubboConstants {
      * header length.
      */
     public static final int HEADER_LENGTH = 16;
+    /**
+     * Reserve {@link #HEADER_LENGTH} bytes in front of the serialized body, so that the encoder writes the header
+     * in place and sends the body buffer as it is instead of copying it behind a freshly allocated header.
+     */
+    public static final boolean ENCODE_RESERVE_HEADER = Boolean.getBoolean("dubbo.encode.reserveheader");
     /**
      * bytes of magic
      */
@@ -111,4 +111,32 @@ public class DubboHeader {
     public void setOnewayWaited(final boolean onewayWaited) {
         this.onewayWaited = onewayWaited;
     }
+
+    /**
+     * 复制一个header, 如用于与池化消息的header脱离
+     */
+    public DubboHeader copy() {
+        final DubboHeader copy = new DubboHeader()
+                .setRequestId(requestId)
+                .setSeriType(seriType)
+                .setHeartbeat(heartbeat)
+                .setTwoWay(twoWay)
+                .setStatus(status)
+                .setRequest(isRequest);
+        copy.setOnewayWaited(onewayWaited);
+        return copy;
+    }
+
+    /**
+     * 恢复默认值, 用于回收池化的消息
+     */
+    void reset() {
+        requestId = 0L;
+        seriType = 2;
+        heartbeat = false;
+        twoWay = true;
+        onewayWaited = false;
+        status = 0;
+        isRequest = false;
+    }
 }
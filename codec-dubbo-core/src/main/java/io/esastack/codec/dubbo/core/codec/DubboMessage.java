@@ -33,12 +33,47 @@
 package io.esastack.codec.dubbo.core.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
 import io.netty.util.ReferenceCounted;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class DubboMessage implements Serializable, ReferenceCounted {
     private static final long serialVersionUID = 3184025272681915293L;
+
+    private static final Recycler<DubboMessage> RECYCLER = new Recycler<DubboMessage>() {
+        @Override
+        protected DubboMessage newObject(Handle<DubboMessage> handle) {
+            return new DubboMessage(handle);
+        }
+    };
+
+    /**
+     * 池化消息的泄漏检测, 级别由io.netty.leakDetection.level决定, 测试中可设为paranoid以检测每个未release的消息
+     */
+    private static final ResourceLeakDetector<DubboMessage> LEAK_DETECTOR =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(DubboMessage.class);
+
+    private static final AtomicIntegerFieldUpdater<DubboMessage> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DubboMessage.class, "pooledRefCnt");
+
+    /**
+     * 非池化消息为null
+     */
+    private final transient Recycler.Handle<DubboMessage> handle;
+    private transient ResourceLeakTracker<DubboMessage> leak;
+
+    /**
+     * 池化消息自身的引用计数, 与body的引用计数分开: 每个消息引用持有一个body引用, 但其他人单独持有的body引用
+     * (如retainedSlice)不会阻止消息回收; 非池化消息不使用
+     */
+    private transient volatile int pooledRefCnt;
+
     private DubboHeader header;
 
     /**
@@ -46,6 +81,60 @@ public class DubboMessage implements Serializable, ReferenceCounted {
      */
     private ByteBuf body;
 
+    /**
+     * body前预留了{@link io.esastack.codec.dubbo.core.DubboConstants#HEADER_LENGTH}字节(位于readerIndex之前),
+     * 编码时直接在body中填充header, 避免header和body之间的拷贝
+     */
+    private boolean headerReserved;
+
+    /**
+     * 请求的接口名和方法名, 仅用于客户端按方法区分请求(如并发限制), 不参与编码
+     */
+    private String interfaceName;
+    private String methodName;
+
+    /**
+     * 请求的服务分组(attachment group), 决定路由到哪组提供者, 仅用于客户端识别相同的调用, 不单独编码
+     */
+    private String group;
+
+    /**
+     * body中从readerIndex开始编码调用(版本、接口、方法、参数描述和参数, 不含attachments)的字节数,
+     * 仅用于客户端识别相同的调用(如响应缓存), 不参与编码; -1表示未知
+     */
+    private int invocationLength = -1;
+
+    /**
+     * 解码时记录的收到首字节和解码完成的时刻({@link System#nanoTime()}), 每个消息独立记录, 流水线收包时互不覆盖; 0表示未记录
+     */
+    private long firstByteNanos;
+    private long decodedNanos;
+
+    public DubboMessage() {
+        this.handle = null;
+    }
+
+    private DubboMessage(Recycler.Handle<DubboMessage> handle) {
+        this.handle = handle;
+        this.header = new DubboHeader();
+    }
+
+    /**
+     * 从对象池获取消息, 消息自带一个可直接填充的header(不应替换). 消息有独立的引用计数(初始为1), retain/release
+     * 同时作用于body; 消息的引用计数release至0后, 消息连同header被回收复用, 之后不能再访问消息或其header.
+     * 需要在消息回收后继续使用body时, 应单独持有body的引用(或setBody(null)取走body)
+     */
+    public static DubboMessage newPooledInstance() {
+        final DubboMessage message = RECYCLER.get();
+        message.pooledRefCnt = 1;
+        message.leak = LEAK_DETECTOR.track(message);
+        return message;
+    }
+
+    public boolean isPooled() {
+        return handle != null;
+    }
+
     public ByteBuf getBody() {
         return body;
     }
@@ -55,6 +144,69 @@ public class DubboMessage implements Serializable, ReferenceCounted {
         return this;
     }
 
+    public boolean isHeaderReserved() {
+        return headerReserved;
+    }
+
+    public DubboMessage setHeaderReserved(boolean headerReserved) {
+        this.headerReserved = headerReserved;
+        return this;
+    }
+
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    public DubboMessage setInterfaceName(String interfaceName) {
+        this.interfaceName = interfaceName;
+        return this;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public DubboMessage setMethodName(String methodName) {
+        this.methodName = methodName;
+        return this;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public DubboMessage setGroup(String group) {
+        this.group = group;
+        return this;
+    }
+
+    public int getInvocationLength() {
+        return invocationLength;
+    }
+
+    public DubboMessage setInvocationLength(int invocationLength) {
+        this.invocationLength = invocationLength;
+        return this;
+    }
+
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    public DubboMessage setFirstByteNanos(long firstByteNanos) {
+        this.firstByteNanos = firstByteNanos;
+        return this;
+    }
+
+    public long getDecodedNanos() {
+        return decodedNanos;
+    }
+
+    public DubboMessage setDecodedNanos(long decodedNanos) {
+        this.decodedNanos = decodedNanos;
+        return this;
+    }
+
     public DubboHeader getHeader() {
         return header;
     }
@@ -66,6 +218,9 @@ public class DubboMessage implements Serializable, ReferenceCounted {
 
     @Override
     public int refCnt() {
+        if (handle != null) {
+            return pooledRefCnt;
+        }
         if (body == null) {
             return 0;
         }
@@ -74,15 +229,14 @@ public class DubboMessage implements Serializable, ReferenceCounted {
 
     @Override
     public DubboMessage retain() {
-        if (body != null) {
-            body.retain();
-        }
-
-        return this;
+        return retain(1);
     }
 
     @Override
     public DubboMessage retain(int increment) {
+        if (handle != null) {
+            retainPooled(increment);
+        }
         if (body != null) {
             body.retain(increment);
         }
@@ -101,6 +255,9 @@ public class DubboMessage implements Serializable, ReferenceCounted {
 
     @Override
     public DubboMessage touch(Object hint) {
+        if (leak != null) {
+            leak.record(hint);
+        }
         if (body != null) {
             body.touch(hint);
         }
@@ -110,19 +267,72 @@ public class DubboMessage implements Serializable, ReferenceCounted {
 
     @Override
     public boolean release() {
-        if (body == null) {
-            return true;
-        }
-
-        return body.release();
+        return release(1);
     }
 
     @Override
     public boolean release(int decrement) {
+        if (handle != null) {
+            return releasePooled(decrement);
+        }
         if (body == null) {
             return true;
         }
 
         return body.release(decrement);
     }
+
+    private void retainPooled(int increment) {
+        if (increment <= 0) {
+            throw new IllegalArgumentException("increment: " + increment + " (expected: > 0)");
+        }
+        for (;;) {
+            final int refCnt = pooledRefCnt;
+            if (refCnt <= 0 || refCnt + increment < refCnt) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt + increment)) {
+                return;
+            }
+        }
+    }
+
+    private boolean releasePooled(int decrement) {
+        if (decrement <= 0) {
+            throw new IllegalArgumentException("decrement: " + decrement + " (expected: > 0)");
+        }
+        int refCnt;
+        do {
+            refCnt = pooledRefCnt;
+            if (refCnt < decrement) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+        } while (!REF_CNT_UPDATER.compareAndSet(this, refCnt, refCnt - decrement));
+
+        if (body != null) {
+            body.release(decrement);
+        }
+        if (refCnt == decrement) {
+            recycle();
+            return true;
+        }
+        return false;
+    }
+
+    private void recycle() {
+        if (leak != null) {
+            leak.close(this);
+            leak = null;
+        }
+        header.reset();
+        body = null;
+        headerReserved = false;
+        interfaceName = null;
+        methodName = null;
+        group = null;
+        invocationLength = -1;
+        firstByteNanos = 0L;
+        decodedNanos = 0L;
+        handle.recycle(this);
+    }
 }
@@ -15,11 +15,9 @@
  */
 package io.esastack.codec.dubbo.core.codec;
 
-import io.esastack.codec.common.constant.Constants;
 import io.esastack.codec.common.exception.UnknownProtocolException;
 import io.esastack.codec.dubbo.core.DubboConstants;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
 
@@ -41,6 +39,25 @@ import java.util.List;
  */
 public class DubboMessageDecoder extends MessageToMessageDecoder<ByteBuf> {
 
+    private final boolean pooled;
+
+    /**
+     * 同一pipeline中的首字节解码器, 用于记录消息收到首字节的时刻; 首次解码时查找
+     */
+    private TTFBLengthFieldBasedFrameDecoder frameDecoder;
+    private boolean frameDecoderResolved;
+
+    public DubboMessageDecoder() {
+        this(false);
+    }
+
+    /**
+     * @param pooled 是否解码为{@link DubboMessage#newPooledInstance()}池化的消息, 仅适用于release后不再访问消息的场景
+     */
+    public DubboMessageDecoder(boolean pooled) {
+        this.pooled = pooled;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) {
         Object decoded = callDecode(ctx, frame);
@@ -50,11 +67,23 @@ public class DubboMessageDecoder extends MessageToMessageDecoder<ByteBuf> {
     }
 
     protected Object callDecode(ChannelHandlerContext ctx, ByteBuf frame) {
-        DubboMessage dubboMessage = new DubboMessage();
+        DubboMessage dubboMessage;
+        if (isPooled()) {
+            dubboMessage = DubboMessage.newPooledInstance();
+            try {
+                //读取header, 直接填充池化消息自带的header
+                decodeHeader(frame, dubboMessage.getHeader());
+            } catch (RuntimeException e) {
+                dubboMessage.release();
+                throw e;
+            }
+        } else {
+            dubboMessage = new DubboMessage();
 
-        //读取header
-        DubboHeader header = decodeHeader(frame, ctx);
-        dubboMessage.setHeader(header);
+            //读取header
+            DubboHeader header = decodeHeader(frame, ctx);
+            dubboMessage.setHeader(header);
+        }
 
         //读取Body
         int len = frame.readableBytes() - DubboConstants.HEADER_LENGTH;
@@ -63,14 +92,34 @@ public class DubboMessageDecoder extends MessageToMessageDecoder<ByteBuf> {
             dubboMessage.setBody(byteBuf);
         }
 
-        //Dubbo协议收包完成事件时间 纳秒
-        Channel channel = ctx.channel();
-        channel.attr(Constants.DECODE_TTFB_COMPLETE_KEY).set(System.currentTimeMillis());
+        //Dubbo协议收首字节及收包完成时间 纳秒, 记录在消息上
+        final TTFBLengthFieldBasedFrameDecoder ttfbDecoder = frameDecoder(ctx);
+        final long decodedNanos = System.nanoTime();
+        dubboMessage.setFirstByteNanos(ttfbDecoder == null ? decodedNanos : ttfbDecoder.getFirstByteNanos())
+                .setDecodedNanos(decodedNanos);
         return dubboMessage;
     }
 
+    private TTFBLengthFieldBasedFrameDecoder frameDecoder(ChannelHandlerContext ctx) {
+        if (!frameDecoderResolved) {
+            frameDecoder = ctx.pipeline().get(TTFBLengthFieldBasedFrameDecoder.class);
+            frameDecoderResolved = true;
+        }
+        return frameDecoder;
+    }
+
+    /**
+     * 是否解码为池化的消息, 每次解码时读取
+     */
+    protected boolean isPooled() {
+        return pooled;
+    }
+
     protected DubboHeader decodeHeader(ByteBuf frame, ChannelHandlerContext ctx) {
-        DubboHeader header = new DubboHeader();
+        return decodeHeader(frame, new DubboHeader());
+    }
+
+    private static DubboHeader decodeHeader(ByteBuf frame, DubboHeader header) {
         //Magic 魔术验证
         int readableBytesLength = frame.readableBytes();
         if (readableBytesLength >= DubboConstants.MAGIC_LENGTH) {
@@ -47,35 +47,51 @@ public class DubboMessageEncoder extends ChannelOutboundHandlerAdapter {
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         if (msg instanceof DubboMessage) {
             DubboMessage dubboMessage = (DubboMessage) msg;
-            ByteBuf buffer = ctx.alloc().directBuffer();
-            encodeHeader(buffer, dubboMessage.getHeader(), ctx);
+            ByteBuf body = dubboMessage.getBody();
 
             //设置Body大小
-            int bodyLength = (dubboMessage.getBody() == null ? 0 : dubboMessage.getBody().readableBytes());
-            buffer.writeInt(bodyLength);
-
-            if (DUBBO_ENCODE_ZEROCOPY) {
-                CompositeByteBuf compositeByteBuf = ctx.alloc().compositeBuffer();
-                compositeByteBuf.addComponent(true, buffer);
-                //写入body
-                if (bodyLength > 0) {
-                    compositeByteBuf.addComponent(true, dubboMessage.getBody());
-                }
-                ctx.writeAndFlush(compositeByteBuf, promise);
-            } else {
+            int bodyLength = (body == null ? 0 : body.readableBytes());
+
+            if (dubboMessage.isHeaderReserved() && bodyLength > 0
+                    && body.readerIndex() >= DubboConstants.HEADER_LENGTH) {
+                //header已在body前预留, 直接填充后整体发送, 无需拷贝body
+                int headerIndex = body.readerIndex() - DubboConstants.HEADER_LENGTH;
+                encodeHeader(body, headerIndex, dubboMessage.getHeader(), bodyLength);
+                ByteBuf frame;
                 try {
-                    buffer.writeBytes(dubboMessage.getBody());
-                    ctx.writeAndFlush(buffer, promise);
-                } catch (Throwable ex) {
-                    logger.error("Failed to merge body with header.", ex);
-                    ReferenceCountUtil.release(buffer);
-                    throw ex;
+                    frame = body.retainedSlice(headerIndex, DubboConstants.HEADER_LENGTH + bodyLength);
                 } finally {
                     ReferenceCountUtil.release(dubboMessage);
                 }
+                ctx.write(frame, promise);
+            } else {
+                ByteBuf buffer = ctx.alloc().directBuffer();
+                encodeHeader(buffer, 0, dubboMessage.getHeader(), bodyLength);
+                buffer.writerIndex(DubboConstants.HEADER_LENGTH);
+
+                if (DUBBO_ENCODE_ZEROCOPY) {
+                    CompositeByteBuf compositeByteBuf = ctx.alloc().compositeBuffer();
+                    compositeByteBuf.addComponent(true, buffer);
+                    //写入body
+                    if (bodyLength > 0) {
+                        compositeByteBuf.addComponent(true, body);
+                    }
+                    ctx.write(compositeByteBuf, promise);
+                } else {
+                    try {
+                        buffer.writeBytes(body);
+                        ctx.write(buffer, promise);
+                    } catch (Throwable ex) {
+                        logger.error("Failed to merge body with header.", ex);
+                        ReferenceCountUtil.release(buffer);
+                        throw ex;
+                    } finally {
+                        ReferenceCountUtil.release(dubboMessage);
+                    }
+                }
             }
         } else {
-            ctx.writeAndFlush(msg, promise);
+            ctx.write(msg, promise);
         }
 
         if (logger.isDebugEnabled()) {
@@ -84,9 +100,12 @@ public class DubboMessageEncoder extends ChannelOutboundHandlerAdapter {
 
     }
 
-    private void encodeHeader(ByteBuf frame, DubboHeader header, ChannelHandlerContext ctx) {
+    /**
+     * 从index开始写入16字节的header, 不改变frame的readerIndex和writerIndex
+     */
+    private void encodeHeader(ByteBuf frame, int index, DubboHeader header, int bodyLength) {
         //设置魔数，用于区分是否Dubbo协议
-        frame.writeShort(DubboConstants.MAGIC);
+        frame.setShort(index, DubboConstants.MAGIC);
 
         //请求flag，多个flag共享1个字节
         byte flag = header.getSeriType();
@@ -105,13 +124,16 @@ public class DubboMessageEncoder extends ChannelOutboundHandlerAdapter {
             flag |= DubboConstants.HEADER_FLAG.FLAG_HEARTBEAT;
         }
         //设置请求flag
-        frame.writeByte(flag);
+        frame.setByte(index + 2, flag);
 
         //设置响应状态
         byte status = header.getStatus();
-        frame.writeByte(status);
+        frame.setByte(index + 3, status);
 
         //设置请求ID
-        frame.writeLong(header.getRequestId());
+        frame.setLong(index + 4, header.getRequestId());
+
+        //设置Body大小
+        frame.setInt(index + 12, bodyLength);
     }
 }
@@ -7,6 +7,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class DubboMessageWrapper {
     private final DubboMessage message;
     private final ConcurrentHashMap<String, String> attachment = new ConcurrentHashMap<>(16);
+    private volatile long flushedNanos;
 
     public DubboMessageWrapper(final DubboMessage message) {
         this.message = message;
@@ -16,6 +17,17 @@ public class DubboMessageWrapper {
         return message;
     }
 
+    /**
+     * Moment the request was written to the network, by {@link System#nanoTime()}, 0 if unknown
+     */
+    public long getFlushedNanos() {
+        return flushedNanos;
+    }
+
+    public void setFlushedNanos(final long flushedNanos) {
+        this.flushedNanos = flushedNanos;
+    }
+
     public Map<String, String> getAttachments() {
         return Collections.unmodifiableMap(attachment);
     }
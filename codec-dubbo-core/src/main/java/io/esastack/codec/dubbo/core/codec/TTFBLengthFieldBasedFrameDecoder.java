@@ -17,7 +17,6 @@ package io.esastack.codec.dubbo.core.codec;
 
 import esa.commons.logging.Logger;
 import esa.commons.logging.LoggerFactory;
-import io.esastack.codec.common.constant.Constants;
 import io.esastack.codec.common.exception.UnknownProtocolException;
 import io.esastack.codec.dubbo.core.DubboConstants;
 import io.netty.buffer.ByteBuf;
@@ -37,6 +36,11 @@ public class TTFBLengthFieldBasedFrameDecoder extends LengthFieldBasedFrameDecod
 
     private boolean inDecodeProcess = false;
 
+    /**
+     * 当前正在解码的消息收到首字节的时刻({@link System#nanoTime()})
+     */
+    private long firstByteNanos;
+
     public TTFBLengthFieldBasedFrameDecoder(int maxFrameLength,
                                             int lengthFieldOffset,
                                             int lengthFieldLength,
@@ -78,7 +82,7 @@ public class TTFBLengthFieldBasedFrameDecoder extends LengthFieldBasedFrameDecod
 
         //Dubbo协议收到首字节后，保证每一次请求只执行一次标记
         if (!inDecodeProcess && frame.readableBytes() >= DubboConstants.MAGIC_LENGTH && isDubboMagic(frame)) {
-            ctx.channel().attr(Constants.DECODE_TTFB_KEY).set(System.currentTimeMillis());
+            firstByteNanos = System.nanoTime();
             inDecodeProcess = true;
         }
 
@@ -98,6 +102,13 @@ public class TTFBLengthFieldBasedFrameDecoder extends LengthFieldBasedFrameDecod
         return decoded;
     }
 
+    /**
+     * 最近一次解码出的消息收到首字节的时刻, 供下游{@link DubboMessageDecoder}在同一次read中记录到消息上
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
     private boolean isDubboMagic(ByteBuf frame) {
         assert frame.readableBytes() >= 2;
         int readerIndex = frame.readerIndex();
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.core.codec.helper;
+
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.serialization.api.SerializeConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Learns the serialized body size of requests per (interface, method, seriType) and of responses per
+ * (value type, seriType), similar to netty's {@code AdaptiveRecvByteBufAllocator}: the guess grows at once to a
+ * size which fits as soon as a body does not fit, and shrinks one step after two consecutive bodies which would have
+ * fit into the next smaller size. The codec helpers allocate the body buffer with the guessed size, so large bodies are
+ * not grown by repeated reallocation and copying and small bodies do not occupy the default capacity.
+ */
+public final class BodySizePredictor {
+
+    static final int INITIAL_SIZE = 256;
+    static final int MAXIMUM_SIZE = 8 * 1024 * 1024;
+
+    private static final int MINIMUM_SIZE = 64;
+    private static final int INDEX_INCREMENT = 4;
+    private static final int INDEX_DECREMENT = 1;
+    private static final int[] SIZE_TABLE;
+    private static final int INITIAL_INDEX;
+    private static final String NULL_VALUE = "null";
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, Estimate[]>> REQUEST_ESTIMATES =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Estimate[]> RESPONSE_ESTIMATES = new ConcurrentHashMap<>();
+
+    static {
+        final List<Integer> sizeTable = new ArrayList<>();
+        for (int i = 16; i < 512; i += 16) {
+            sizeTable.add(i);
+        }
+        for (int i = 512; i > 0 && i <= MAXIMUM_SIZE; i <<= 1) {
+            sizeTable.add(i);
+        }
+        SIZE_TABLE = new int[sizeTable.size()];
+        for (int i = 0; i < SIZE_TABLE.length; i++) {
+            SIZE_TABLE[i] = sizeTable.get(i);
+        }
+        INITIAL_INDEX = sizeIndex(INITIAL_SIZE);
+    }
+
+    private BodySizePredictor() {
+    }
+
+    static Estimate request(final String interfaceName, final String methodName, final byte seriType) {
+        final String service = interfaceName == null ? NULL_VALUE : interfaceName;
+        ConcurrentMap<String, Estimate[]> methods = REQUEST_ESTIMATES.get(service);
+        if (methods == null) {
+            methods = REQUEST_ESTIMATES.computeIfAbsent(service, k -> new ConcurrentHashMap<>());
+        }
+        return estimate(methods, methodName == null ? NULL_VALUE : methodName, seriType);
+    }
+
+    static Estimate response(final Object value, final byte seriType) {
+        return estimate(RESPONSE_ESTIMATES, value == null ? NULL_VALUE : value.getClass().getName(), seriType);
+    }
+
+    /**
+     * Learned request body sizes, keyed by {@code interface#method@serialization}.
+     */
+    public static Map<String, Integer> requestSizes() {
+        final Map<String, Integer> sizes = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, Estimate[]>> service : REQUEST_ESTIMATES.entrySet()) {
+            for (Map.Entry<String, Estimate[]> method : service.getValue().entrySet()) {
+                collect(sizes, service.getKey() + "#" + method.getKey(), method.getValue());
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Learned response body sizes, keyed by {@code valueType@serialization}.
+     */
+    public static Map<String, Integer> responseSizes() {
+        final Map<String, Integer> sizes = new TreeMap<>();
+        for (Map.Entry<String, Estimate[]> entry : RESPONSE_ESTIMATES.entrySet()) {
+            collect(sizes, entry.getKey(), entry.getValue());
+        }
+        return sizes;
+    }
+
+    /**
+     * Forgets all learned sizes.
+     */
+    public static void reset() {
+        REQUEST_ESTIMATES.clear();
+        RESPONSE_ESTIMATES.clear();
+    }
+
+    private static Estimate[] newEstimates() {
+        return new Estimate[DubboConstants.SERIALIZATION_MASK + 1];
+    }
+
+    private static Estimate estimate(final ConcurrentMap<String, Estimate[]> map,
+                                     final String key,
+                                     final byte seriType) {
+        // get first, computeIfAbsent of jdk8 locks the bin even if the key is present
+        Estimate[] estimates = map.get(key);
+        if (estimates == null) {
+            estimates = map.computeIfAbsent(key, k -> newEstimates());
+        }
+        final int idx = seriType & DubboConstants.SERIALIZATION_MASK;
+        Estimate estimate = estimates[idx];
+        if (estimate == null) {
+            // a lost race only costs one learned sample
+            estimate = new Estimate();
+            estimates[idx] = estimate;
+        }
+        return estimate;
+    }
+
+    private static void collect(final Map<String, Integer> sizes, final String key, final Estimate[] estimates) {
+        for (int i = 0; i < estimates.length; i++) {
+            final Estimate estimate = estimates[i];
+            if (estimate != null) {
+                final String seriName = SerializeConstants.seriNames.get((byte) i);
+                sizes.put(key + "@" + (seriName == null ? String.valueOf(i) : seriName), estimate.nextSize());
+            }
+        }
+    }
+
+    /**
+     * Index of the smallest size in the table which is not less than the given size.
+     */
+    private static int sizeIndex(final int size) {
+        final int idx = Arrays.binarySearch(SIZE_TABLE, size);
+        return Math.min(idx >= 0 ? idx : -idx - 1, SIZE_TABLE.length - 1);
+    }
+
+    /**
+     * Size estimate of one kind of body. Updates are not synchronized, concurrent records may overwrite each other
+     * which only delays the convergence a little.
+     */
+    static final class Estimate {
+
+        private static final int MINIMUM_INDEX = sizeIndex(MINIMUM_SIZE);
+        private static final int MAXIMUM_INDEX = SIZE_TABLE.length - 1;
+
+        private volatile int index = INITIAL_INDEX;
+        private volatile boolean decreaseNow;
+
+        int nextSize() {
+            return SIZE_TABLE[index];
+        }
+
+        void record(final int actualSize) {
+            final int current = index;
+            if (actualSize <= SIZE_TABLE[Math.max(0, current - INDEX_DECREMENT)]) {
+                if (decreaseNow) {
+                    index = Math.max(current - INDEX_DECREMENT, MINIMUM_INDEX);
+                    decreaseNow = false;
+                } else {
+                    decreaseNow = true;
+                }
+            } else if (actualSize > SIZE_TABLE[current]) {
+                // jump straight to a size which fits, a single large body must not take several steps
+                index = Math.min(Math.max(current + INDEX_INCREMENT, sizeIndex(actualSize)), MAXIMUM_INDEX);
+                decreaseNow = false;
+            }
+        }
+    }
+}
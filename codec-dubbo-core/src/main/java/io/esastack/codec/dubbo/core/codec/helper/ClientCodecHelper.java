@@ -16,13 +16,13 @@
 package io.esastack.codec.dubbo.core.codec.helper;
 
 import esa.commons.io.IOUtils;
+import io.esastack.codec.common.buffer.AllocatorType;
 import io.esastack.codec.common.exception.SerializationException;
 import io.esastack.codec.dubbo.core.DubboConstants;
 import io.esastack.codec.dubbo.core.DubboRpcResult;
 import io.esastack.codec.dubbo.core.RpcInvocation;
 import io.esastack.codec.dubbo.core.codec.DubboHeader;
 import io.esastack.codec.dubbo.core.codec.DubboMessage;
-import io.esastack.codec.dubbo.core.utils.ReflectUtils;
 import io.esastack.codec.serialization.api.*;
 import io.netty.buffer.*;
 
@@ -37,7 +37,7 @@ import java.util.Map;
 public class ClientCodecHelper {
 
     public static DubboMessage toDubboMessage(final RpcInvocation invocation) throws Exception {
-        return toDubboMessage(invocation, UnpooledByteBufAllocator.DEFAULT);
+        return toDubboMessage(invocation, AllocatorType.defaultType().allocator());
     }
 
     public static DubboMessage toDubboMessage(final RpcInvocation invocation,
@@ -50,10 +50,15 @@ public class ClientCodecHelper {
 
         header.setTwoWay(!invocation.isOneWay());
 
-        request.setHeader(header);
+        request.setHeader(header)
+                .setInterfaceName(invocation.getInterfaceName())
+                .setMethodName(invocation.getMethodName())
+                .setGroup(invocation.getAttachments() == null
+                        ? null : invocation.getAttachments().get(DubboConstants.PARAMETER_KEY.GROUP_KEY));
 
         ByteBufOutputStream byteBufOutputStream = null;
         DataOutputStream out = null;
+        ByteBuf body = null;
         try {
             Serialization serialization = SerializeFactory.getSerialization(invocation.getSeriType());
             if (serialization == null) {
@@ -63,14 +68,19 @@ public class ClientCodecHelper {
                 throw new SerializationException(msg);
             }
 
-            byteBufOutputStream = new ByteBufOutputStream(alloc.buffer());
-            out = serialization.serialize(byteBufOutputStream);
-
-            out.writeUTF(DubboConstants.DUBBO_VERSION);
-            out.writeUTF(invocation.getInterfaceName());
-            out.writeUTF(invocation.getVersion());
-            out.writeUTF(invocation.getMethodName());
-            out.writeUTF(ReflectUtils.getDesc(invocation.getParameterTypes()));
+            final BodySizePredictor.Estimate estimate = BodySizePredictor.request(invocation.getInterfaceName(),
+                    invocation.getMethodName(), invocation.getSeriType());
+            body = CodecBuffers.allocateBody(alloc, request, estimate.nextSize());
+            byteBufOutputStream = new ByteBufOutputStream(body);
+            final byte[] prefix = InvocationPrefixCache.prefix(serialization, invocation);
+            if (prefix != null) {
+                //前缀(版本、接口、方法、参数描述)已缓存, 直接写入body
+                byteBufOutputStream.write(prefix);
+                out = serialization.serialize(byteBufOutputStream);
+            } else {
+                out = serialization.serialize(byteBufOutputStream);
+                InvocationPrefixCache.writePrefix(out, invocation);
+            }
 
             if (invocation.getArguments() != null) {
                 for (int i = 0; i < invocation.getArguments().length; i++) {
@@ -78,11 +88,20 @@ public class ClientCodecHelper {
                     out.writeObject(object);
                 }
             }
+            // 调用(不含attachments)的字节数, 与分组一起供客户端识别相同的调用
+            out.flush();
+            request.setInvocationLength(body.readableBytes());
 
             out.writeMap(invocation.getAttachments());
             out.flush();
+            estimate.record(byteBufOutputStream.writtenBytes());
 
-            request.setBody(byteBufOutputStream.buffer());
+            request.setBody(body);
+        } catch (Throwable t) {
+            if (body != null) {
+                body.release();
+            }
+            throw t;
         } finally {
             IOUtils.closeQuietly(byteBufOutputStream);
             IOUtils.closeQuietly(out);
@@ -117,6 +136,7 @@ public class ClientCodecHelper {
         }
 
         DubboRpcResult rpcResult = new DubboRpcResult();
+        copyTiming(response, rpcResult);
         rpcResult.setSeriType(response.getHeader().getSeriType());
         rpcResult.setRequestId(response.getHeader().getRequestId());
         rpcResult.setStatus(response.getHeader().getStatus());
@@ -203,6 +223,82 @@ public class ClientCodecHelper {
         return rpcResult;
     }
 
+    /**
+     * Result of an OK response whose value is deserialized on first access, see {@link LazyDubboRpcResult}, while the
+     * error responses are deserialized at once. The body of an OK response is taken over by the result and removed
+     * from the response, which is left to be released by the caller as usual.
+     */
+    public static DubboRpcResult toLazyRpcResult(final DubboMessage response,
+                                                 final Class<?> returnType,
+                                                 final Type genericReturnType,
+                                                 final Map<String, String> attachments) {
+        if (response == null || response.getHeader() == null || response.getBody() == null ||
+                DubboConstants.RESPONSE_STATUS.OK != response.getHeader().getStatus()) {
+            return toRpcResult(response, returnType, genericReturnType, attachments);
+        }
+        final ByteBuf body = response.getBody();
+        response.setBody(null);
+        final LazyDubboRpcResult rpcResult = new LazyDubboRpcResult(response.getHeader(),
+                body, returnType, genericReturnType, attachments);
+        copyTiming(response, rpcResult);
+        return rpcResult;
+    }
+
+    private static void copyTiming(final DubboMessage response, final DubboRpcResult rpcResult) {
+        rpcResult.setFirstByteNanos(response.getFirstByteNanos());
+        rpcResult.setDecodedNanos(response.getDecodedNanos());
+    }
+
+    /**
+     * Deserializes the body of an OK response into the result.
+     */
+    static void deserializeValue(final DubboRpcResult rpcResult,
+                                 final ByteBuf body,
+                                 final Class<?> returnType,
+                                 final Type genericReturnType) throws Exception {
+        final Serialization serialization = SerializeFactory.getSerialization(rpcResult.getSeriType());
+        if (serialization == null) {
+            throw new SerializationException("Unsupported serialization type, id=" + rpcResult.getSeriType() +
+                    ", name=" + SerializeConstants.seriNames.get(rpcResult.getSeriType()) +
+                    ", maybe it not included in the classpath, please check your (maven/gradle) dependencies!");
+        }
+        DataInputStream in = null;
+        try {
+            in = serialization.deserialize(new ByteBufInputStream(body));
+            deserialize(rpcResult, in, returnType, genericReturnType);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Whether the response carries the value of the method, rather than an error status or an exception thrown by the
+     * method, without consuming the body.
+     */
+    public static boolean hasValue(final DubboMessage response) {
+        if (response == null || response.getHeader() == null || response.getBody() == null ||
+                DubboConstants.RESPONSE_STATUS.OK != response.getHeader().getStatus()) {
+            return false;
+        }
+        final Serialization serialization = SerializeFactory.getSerialization(response.getHeader().getSeriType());
+        if (serialization == null) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = serialization.deserialize(new ByteBufInputStream(response.getBody().duplicate()));
+            final byte flag = in.readByte();
+            return flag == DubboRpcResult.RESPONSE_FLAG.RESPONSE_VALUE ||
+                    flag == DubboRpcResult.RESPONSE_FLAG.RESPONSE_NULL_VALUE ||
+                    flag == DubboRpcResult.RESPONSE_FLAG.RESPONSE_VALUE_WITH_ATTACHMENTS ||
+                    flag == DubboRpcResult.RESPONSE_FLAG.RESPONSE_NULL_VALUE_WITH_ATTACHMENTS;
+        } catch (Throwable t) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static void deserialize(final DubboRpcResult rpcResult,
                                     final DataInputStream in,
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.core.codec.helper;
+
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * 编码时body缓冲区的分配
+ */
+final class CodecBuffers {
+
+    private CodecBuffers() {
+    }
+
+    /**
+     * Allocates the body buffer of the message. When {@link DubboConstants#ENCODE_RESERVE_HEADER} is enabled the
+     * header bytes are skipped in front of the body, so the serialized data starts right behind them and the encoder
+     * fills the header in place.
+     *
+     * @param bodySize expected size of the serialized body
+     */
+    static ByteBuf allocateBody(final ByteBufAllocator alloc, final DubboMessage message, final int bodySize) {
+        if (!DubboConstants.ENCODE_RESERVE_HEADER) {
+            return alloc.buffer(bodySize);
+        }
+        final ByteBuf body = alloc.buffer(DubboConstants.HEADER_LENGTH + bodySize);
+        body.setIndex(DubboConstants.HEADER_LENGTH, DubboConstants.HEADER_LENGTH);
+        message.setHeaderReserved(true);
+        return body;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.core.codec.helper;
+
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.utils.ReflectUtils;
+import io.esastack.codec.serialization.api.DataOutputStream;
+import io.esastack.codec.serialization.api.Serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the encoded request prefix (dubbo version, interface, version, method and parameter descriptor), which is
+ * the same for every call of a method, for serializations whose string encoding is context free.
+ * <p>
+ * The prefixes are indexed by interface and method name, so that a lookup allocates nothing, and the few prefixes of
+ * a method (versions, overloads and serializations) are told apart by a scan. The parameter types are copied and only
+ * weakly referenced, so the cache neither sees later changes of the caller's array nor keeps the class loader of a
+ * redeployed application alive; the prefixes of unloaded classes are dropped when their method is cached again.
+ *
+ * @see Serialization#isStringEncodingContextFree()
+ */
+final class InvocationPrefixCache {
+
+    /**
+     * Upper bound of cached prefixes, calls beyond it are encoded as usual instead of growing the cache without limit.
+     */
+    static final int MAX_ENTRIES = 4096;
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, Entry[]>> PREFIXES = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger SIZE = new AtomicInteger();
+
+    private InvocationPrefixCache() {
+    }
+
+    /**
+     * Returns the encoded prefix of the invocation, or {@code null} if the prefix can not be cached.
+     */
+    static byte[] prefix(final Serialization serialization, final RpcInvocation invocation) throws IOException {
+        if (!serialization.isStringEncodingContextFree() ||
+                invocation.getInterfaceName() == null || invocation.getMethodName() == null) {
+            return null;
+        }
+        final byte seriType = serialization.getSeriTypeId();
+        final ConcurrentMap<String, Entry[]> methods = PREFIXES.get(invocation.getInterfaceName());
+        final Entry[] entries = methods == null ? null : methods.get(invocation.getMethodName());
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (entry.matches(seriType, invocation)) {
+                    return entry.prefix;
+                }
+            }
+        }
+        if (SIZE.get() >= MAX_ENTRIES) {
+            return null;
+        }
+        final Entry added = new Entry(seriType, invocation, encode(serialization, invocation));
+        PREFIXES.computeIfAbsent(invocation.getInterfaceName(), k -> new ConcurrentHashMap<>())
+                .compute(invocation.getMethodName(), (k, current) -> add(current, added, invocation));
+        return added.prefix;
+    }
+
+    static int size() {
+        return SIZE.get();
+    }
+
+    static void clear() {
+        PREFIXES.clear();
+        SIZE.set(0);
+    }
+
+    static void writePrefix(final DataOutputStream out, final RpcInvocation invocation) throws IOException {
+        out.writeUTF(DubboConstants.DUBBO_VERSION);
+        out.writeUTF(invocation.getInterfaceName());
+        out.writeUTF(invocation.getVersion());
+        out.writeUTF(invocation.getMethodName());
+        out.writeUTF(ReflectUtils.getDesc(invocation.getParameterTypes()));
+    }
+
+    private static byte[] encode(final Serialization serialization,
+                                 final RpcInvocation invocation) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        final DataOutputStream out = serialization.serialize(bytes);
+        writePrefix(out, invocation);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Copy of the entries of a method with the given one, unless another thread added an equal one meanwhile, and
+     * without the entries whose parameter types have been unloaded.
+     */
+    private static Entry[] add(final Entry[] current, final Entry added, final RpcInvocation invocation) {
+        int live = 0;
+        if (current != null) {
+            for (Entry entry : current) {
+                if (entry.matches(added.seriType, invocation)) {
+                    return current;
+                }
+                if (!entry.isStale()) {
+                    live++;
+                }
+            }
+        }
+        final Entry[] entries = new Entry[live + 1];
+        int i = 0;
+        if (current != null) {
+            for (Entry entry : current) {
+                if (!entry.isStale()) {
+                    entries[i++] = entry;
+                }
+            }
+            SIZE.addAndGet(live - current.length);
+        }
+        entries[i] = added;
+        SIZE.incrementAndGet();
+        return entries;
+    }
+
+    private static final class Entry {
+
+        private final byte seriType;
+        private final String version;
+        private final WeakReference<Class<?>>[] parameterTypes;
+        private final byte[] prefix;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Entry(final byte seriType, final RpcInvocation invocation, final byte[] prefix) {
+            this.seriType = seriType;
+            this.version = invocation.getVersion();
+            final Class<?>[] types = invocation.getParameterTypes();
+            if (types == null) {
+                this.parameterTypes = null;
+            } else {
+                this.parameterTypes = new WeakReference[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    this.parameterTypes[i] = new WeakReference<>(types[i]);
+                }
+            }
+            this.prefix = prefix;
+        }
+
+        private boolean matches(final byte seriType, final RpcInvocation invocation) {
+            if (this.seriType != seriType || !Objects.equals(version, invocation.getVersion())) {
+                return false;
+            }
+            final Class<?>[] types = invocation.getParameterTypes();
+            if (types == null || parameterTypes == null) {
+                return types == null && parameterTypes == null;
+            }
+            if (types.length != parameterTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == null || parameterTypes[i].get() != types[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isStale() {
+            if (parameterTypes != null) {
+                for (WeakReference<Class<?>> type : parameterTypes) {
+                    if (type.get() == null) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
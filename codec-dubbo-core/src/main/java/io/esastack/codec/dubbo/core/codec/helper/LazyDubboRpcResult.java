@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.core.codec.helper;
+
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.codec.DubboHeader;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Result of an OK response which keeps the serialized body, and deserializes the value, the exception thrown by the
+ * method and the attachments of the response on the first access to one of them, by the thread accessing it. The
+ * request id, serialization type and status are known at once; a failed deserialization turns the status into
+ * {@link DubboConstants.RESPONSE_STATUS#CLIENT_ERROR} on that access.
+ * <p>
+ * The body is released once deserialized. A result which may never be accessed, such as one discarded after a
+ * timeout, should be {@link #release() released}; the results never deserialized nor released are reported by the
+ * netty leak detector, see {@code io.netty.leakDetection.level}.
+ */
+public final class LazyDubboRpcResult extends DubboRpcResult {
+
+    private static final ResourceLeakDetector<LazyDubboRpcResult> LEAK_DETECTOR =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(LazyDubboRpcResult.class);
+
+    private final Class<?> returnType;
+    private final Type genericReturnType;
+    private ByteBuf body;
+    private ResourceLeakTracker<LazyDubboRpcResult> leak;
+
+    LazyDubboRpcResult(final DubboHeader header,
+                       final ByteBuf body,
+                       final Class<?> returnType,
+                       final Type genericReturnType,
+                       final Map<String, String> attachments) {
+        setRequestId(header.getRequestId());
+        setSeriType(header.getSeriType());
+        setStatus(header.getStatus());
+        this.body = body;
+        this.returnType = returnType;
+        this.genericReturnType = genericReturnType;
+        if (attachments != null) {
+            this.attachments.putAll(attachments);
+        }
+        this.leak = LEAK_DETECTOR.track(this);
+    }
+
+    /**
+     * Whether the body has been deserialized, or released.
+     */
+    public synchronized boolean isDeserialized() {
+        return body == null;
+    }
+
+    /**
+     * Releases the body without deserializing it, the value and the exception are {@code null} afterwards.
+     *
+     * @return whether the body was not deserialized nor released yet
+     */
+    public synchronized boolean release() {
+        if (body == null) {
+            return false;
+        }
+        releaseBody();
+        return true;
+    }
+
+    private synchronized void deserialize() {
+        if (body == null) {
+            return;
+        }
+        deserializeBeginNanos = System.nanoTime();
+        final DubboRpcResult deserialized = new DubboRpcResult();
+        deserialized.setSeriType(getSeriType());
+        try {
+            ClientCodecHelper.deserializeValue(deserialized, body, returnType, genericReturnType);
+            super.setValue(deserialized.getValue());
+            super.setException(deserialized.getException());
+            // the attachments of the response, if any, along with the ones of the client
+            this.attachments.putAll(deserialized.getAttachments());
+        } catch (Throwable t) {
+            setStatus(DubboConstants.RESPONSE_STATUS.CLIENT_ERROR);
+            setErrorMessage(t.toString());
+            super.setException(t);
+        } finally {
+            releaseBody();
+        }
+        deserializeEndNanos = System.nanoTime();
+    }
+
+    private void releaseBody() {
+        body.release();
+        body = null;
+        if (leak != null) {
+            leak.close(this);
+            leak = null;
+        }
+    }
+
+    @Override
+    public Object getValue() {
+        deserialize();
+        return super.getValue();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        deserialize();
+        super.setValue(value);
+    }
+
+    @Override
+    public Throwable getException() {
+        deserialize();
+        return super.getException();
+    }
+
+    @Override
+    public void setException(Throwable exception) {
+        deserialize();
+        super.setException(exception);
+    }
+
+    @Override
+    public Map<String, String> getAttachments() {
+        deserialize();
+        return super.getAttachments();
+    }
+
+    @Override
+    public void setAttachments(Map<String, String> attachments) {
+        deserialize();
+        super.setAttachments(attachments);
+    }
+
+    /**
+     * Adds an attachment without deserializing the body, an attachment of the same key in the response takes
+     * precedence.
+     */
+    @Override
+    public void setAttachment(String key, String value) {
+        synchronized (this) {
+            super.setAttachment(key, value);
+        }
+    }
+}
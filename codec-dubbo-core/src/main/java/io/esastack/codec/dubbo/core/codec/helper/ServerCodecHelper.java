@@ -18,6 +18,7 @@ package io.esastack.codec.dubbo.core.codec.helper;
 import esa.commons.io.IOUtils;
 import esa.commons.logging.Logger;
 import esa.commons.logging.LoggerFactory;
+import io.esastack.codec.common.buffer.AllocatorType;
 import io.esastack.codec.common.exception.SerializationException;
 import io.esastack.codec.dubbo.core.DubboConstants;
 import io.esastack.codec.dubbo.core.DubboRpcResult;
@@ -38,7 +39,7 @@ public class ServerCodecHelper {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerCodecHelper.class);
 
     public static DubboMessage toDubboMessage(DubboRpcResult rpcResult) throws SerializationException {
-        return toDubboMessage(rpcResult, UnpooledByteBufAllocator.DEFAULT);
+        return toDubboMessage(rpcResult, AllocatorType.defaultType().allocator());
     }
 
     public static DubboMessage toDubboMessage(DubboRpcResult rpcResult,
@@ -65,7 +66,9 @@ public class ServerCodecHelper {
 
         ByteBufOutputStream byteBufOutputStream = null;
         DataOutputStream out = null;
-        ByteBuf body = alloc.buffer();
+        final BodySizePredictor.Estimate estimate = BodySizePredictor.response(rpcResult.getException() == null
+                ? rpcResult.getValue() : rpcResult.getException(), rpcResult.getSeriType());
+        ByteBuf body = CodecBuffers.allocateBody(alloc, response, estimate.nextSize());
         try {
             byteBufOutputStream = new ByteBufOutputStream(body);
             out = serialization.serialize(byteBufOutputStream);
@@ -94,6 +97,7 @@ public class ServerCodecHelper {
                 out.writeThrowable(rpcResult.getException());
             }
             out.flush();
+            estimate.record(byteBufOutputStream.writtenBytes());
             response.setBody(body);
         } catch (Throwable t) {
             // If serialization fails, the ByteBuf should be released to prevent memory leaks,
@@ -15,12 +15,16 @@
  */
 package io.esastack.codec.dubbo.core;
 
+import io.esastack.codec.dubbo.core.codec.DubboHeader;
 import io.esastack.codec.dubbo.core.codec.DubboMessage;
 import io.esastack.codec.dubbo.core.codec.DubboMessageDecoder;
 import io.esastack.codec.dubbo.core.codec.DubboMessageEncoder;
+import io.esastack.codec.dubbo.core.codec.TTFBLengthFieldBasedFrameDecoder;
 import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
 import io.esastack.codec.serialization.api.SerializeConstants;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Assert;
 import org.junit.Test;
@@ -49,6 +53,111 @@ public class EnDecoderTest {
         Assert.assertEquals(requestMessage.getHeader().getRequestId(), dubboMessage.getHeader().getRequestId());
     }
 
+    @Test
+    public void pipelinedTimingTest() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new DubboMessageEncoder());
+        channel.writeOutbound(ClientCodecHelper.toDubboMessage(getRpcInvocation()));
+        channel.writeOutbound(ClientCodecHelper.toDubboMessage(getRpcInvocation()));
+        ByteBuf first = channel.readOutbound();
+        ByteBuf second = channel.readOutbound();
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(
+                new TTFBLengthFieldBasedFrameDecoder(8 * 1024 * 1024, 12, 4, 0, 0),
+                new DubboMessageDecoder());
+        // both frames in one read, each message keeps the moments of its own first byte
+        Assert.assertTrue(decoderChannel.writeInbound(Unpooled.wrappedBuffer(first, second)));
+        DubboMessage m1 = decoderChannel.readInbound();
+        DubboMessage m2 = decoderChannel.readInbound();
+        Assert.assertTrue(m1.getFirstByteNanos() != 0L);
+        Assert.assertTrue(m1.getDecodedNanos() - m1.getFirstByteNanos() >= 0L);
+        Assert.assertTrue(m2.getFirstByteNanos() - m1.getDecodedNanos() >= 0L);
+        Assert.assertTrue(m2.getDecodedNanos() - m2.getFirstByteNanos() >= 0L);
+        m1.release();
+        m2.release();
+    }
+
+    @Test
+    public void encodeWithReservedHeaderTest() throws Exception {
+        DubboMessage copied = ClientCodecHelper.toDubboMessage(getRpcInvocation());
+        copied.getHeader().setRequestId(200L);
+        ByteBuf body = Unpooled.buffer();
+        body.setIndex(DubboConstants.HEADER_LENGTH, DubboConstants.HEADER_LENGTH);
+        body.writeBytes(copied.getBody(), copied.getBody().readerIndex(), copied.getBody().readableBytes());
+        DubboMessage reserved = new DubboMessage()
+                .setHeader(copied.getHeader())
+                .setBody(body)
+                .setHeaderReserved(true);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new DubboMessageEncoder());
+        channel.writeOutbound(copied);
+        channel.writeOutbound(reserved);
+        ByteBuf expected = channel.readOutbound();
+        ByteBuf actual = channel.readOutbound();
+        Assert.assertEquals(ByteBufUtil.hexDump(expected), ByteBufUtil.hexDump(actual));
+        // the reserved body is sent as it is, so it is freed together with the frame
+        Assert.assertEquals(1, body.refCnt());
+        expected.release();
+        actual.release();
+        Assert.assertEquals(0, body.refCnt());
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new DubboMessageDecoder());
+        reserved = new DubboMessage()
+                .setHeader(copied.getHeader())
+                .setBody(Unpooled.buffer().setIndex(DubboConstants.HEADER_LENGTH, DubboConstants.HEADER_LENGTH)
+                        .writeBytes(new byte[]{1, 2, 3}))
+                .setHeaderReserved(true);
+        channel.writeOutbound(reserved);
+        Assert.assertTrue(decoderChannel.writeInbound((ByteBuf) channel.readOutbound()));
+        DubboMessage decoded = decoderChannel.readInbound();
+        Assert.assertEquals(200L, decoded.getHeader().getRequestId());
+        Assert.assertEquals(3, decoded.getBody().readableBytes());
+        decoded.release();
+    }
+
+    @Test
+    public void pooledDecodeTest() throws Exception {
+        DubboMessage requestMessage = ClientCodecHelper.toDubboMessage(getRpcInvocation());
+        EmbeddedChannel channel = new EmbeddedChannel(new DubboMessageEncoder());
+        channel.writeOutbound(requestMessage);
+        ByteBuf byteBuf = channel.readOutbound();
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new DubboMessageDecoder(true));
+        Assert.assertTrue(decoderChannel.writeInbound(byteBuf));
+        DubboMessage decoded = decoderChannel.readInbound();
+        Assert.assertTrue(decoded.isPooled());
+        Assert.assertEquals(100L, decoded.getHeader().getRequestId());
+        DubboHeader header = decoded.getHeader();
+
+        // recycled with its header once released
+        Assert.assertTrue(decoded.release());
+        Assert.assertNull(decoded.getBody());
+        Assert.assertEquals(0L, header.getRequestId());
+        Assert.assertFalse(new DubboMessage().isPooled());
+    }
+
+    @Test
+    public void pooledRecycledWhileBodyRetained() throws Exception {
+        DubboMessage requestMessage = ClientCodecHelper.toDubboMessage(getRpcInvocation());
+        EmbeddedChannel channel = new EmbeddedChannel(new DubboMessageEncoder());
+        channel.writeOutbound(requestMessage);
+        ByteBuf byteBuf = channel.readOutbound();
+
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new DubboMessageDecoder(true));
+        Assert.assertTrue(decoderChannel.writeInbound(byteBuf));
+        DubboMessage decoded = decoderChannel.readInbound();
+        DubboHeader header = decoded.getHeader();
+        ByteBuf body = decoded.getBody().retainedSlice();
+
+        Assert.assertEquals(1, decoded.refCnt());
+        Assert.assertEquals(2, decoded.retain().refCnt());
+        Assert.assertFalse(decoded.release());
+        // the message has its own count: a reference kept on its body does not hold back its recycling
+        Assert.assertTrue(decoded.release());
+        Assert.assertEquals(0L, header.getRequestId());
+        Assert.assertEquals(1, body.refCnt());
+        Assert.assertTrue(body.release());
+    }
+
     private RpcInvocation getRpcInvocation() {
         Map<String, String> attachments = new HashMap<>();
         attachments.put("tt", System.currentTimeMillis() + "");
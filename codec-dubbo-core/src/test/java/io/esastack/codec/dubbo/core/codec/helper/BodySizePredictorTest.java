@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.core.codec.helper;
+
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.serialization.api.SerializeConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class BodySizePredictorTest {
+
+    @Test
+    public void testEstimate() {
+        BodySizePredictor.Estimate estimate = new BodySizePredictor.Estimate();
+        Assert.assertEquals(BodySizePredictor.INITIAL_SIZE, estimate.nextSize());
+
+        // grows at once
+        estimate.record(200 * 1024);
+        Assert.assertEquals(256 * 1024, estimate.nextSize());
+        estimate.record(200 * 1024);
+        Assert.assertEquals(256 * 1024, estimate.nextSize());
+
+        // shrinks one step after two small bodies
+        estimate.record(100);
+        Assert.assertEquals(256 * 1024, estimate.nextSize());
+        estimate.record(100);
+        Assert.assertEquals(128 * 1024, estimate.nextSize());
+
+        for (int i = 0; i < 100; i++) {
+            estimate.record(10);
+        }
+        Assert.assertEquals(64, estimate.nextSize());
+
+        estimate.record(Integer.MAX_VALUE);
+        Assert.assertEquals(BodySizePredictor.MAXIMUM_SIZE, estimate.nextSize());
+    }
+
+    @Test
+    public void testLearnedSizes() throws Exception {
+        BodySizePredictor.reset();
+        char[] chars = new char[4000];
+        Arrays.fill(chars, 'a');
+        String arg = new String(chars);
+
+        RpcInvocation invocation = new RpcInvocation();
+        invocation.setSeriType(SerializeConstants.HESSIAN2_SERIALIZATION_ID);
+        invocation.setInterfaceName("org.apache.dubbo.demo.DemoService");
+        invocation.setMethodName("sayHello");
+        invocation.setVersion("0.0.0");
+        invocation.setParameterTypes(new Class[]{String.class});
+        invocation.setArguments(new Object[]{arg});
+        invocation.setAttachments(new HashMap<>());
+
+        DubboMessage request = ClientCodecHelper.toDubboMessage(invocation);
+        int bodySize = request.getBody().readableBytes();
+        request.release();
+        Integer learned = BodySizePredictor.requestSizes().get("org.apache.dubbo.demo.DemoService#sayHello@hessian2");
+        Assert.assertNotNull(learned);
+        Assert.assertTrue(learned >= bodySize);
+
+        // the learned size is used for the next body, so it is not reallocated
+        request = ClientCodecHelper.toDubboMessage(invocation);
+        Assert.assertEquals(learned.intValue(), request.getBody().capacity() - request.getBody().readerIndex());
+        request.release();
+
+        DubboMessage response = ServerCodecHelper.toDubboMessage(
+                DubboRpcResult.success(1L, SerializeConstants.HESSIAN2_SERIALIZATION_ID, arg));
+        bodySize = response.getBody().readableBytes();
+        response.release();
+        learned = BodySizePredictor.responseSizes().get("java.lang.String@hessian2");
+        Assert.assertNotNull(learned);
+        Assert.assertTrue(learned >= bodySize);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.core.codec.helper;
+
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.serialization.api.DataOutputStream;
+import io.esastack.codec.serialization.api.Serialization;
+import io.esastack.codec.serialization.api.SerializeConstants;
+import io.esastack.codec.serialization.api.SerializeFactory;
+import io.netty.buffer.ByteBufUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+public class InvocationPrefixCacheTest {
+
+    @Test
+    public void testPrefixEqualsStreamEncoding() throws Exception {
+        InvocationPrefixCache.clear();
+        RpcInvocation invocation = newInvocation();
+        Serialization serialization = SerializeFactory.getSerialization(invocation.getSeriType());
+        Assert.assertTrue(serialization.isStringEncodingContextFree());
+
+        // what the body looked like when every field was written by one stream
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DataOutputStream out = serialization.serialize(expected);
+        InvocationPrefixCache.writePrefix(out, invocation);
+        out.writeObject(invocation.getArguments()[0]);
+        out.writeMap(invocation.getAttachments());
+        out.flush();
+
+        for (int i = 0; i < 2; i++) {
+            DubboMessage request = ClientCodecHelper.toDubboMessage(invocation);
+            Assert.assertArrayEquals(expected.toByteArray(), ByteBufUtil.getBytes(request.getBody()));
+            request.release();
+        }
+        Assert.assertEquals(1, InvocationPrefixCache.size());
+
+        byte[] prefix = InvocationPrefixCache.prefix(serialization, newInvocation());
+        Assert.assertSame(prefix, InvocationPrefixCache.prefix(serialization, newInvocation()));
+        Assert.assertEquals(1, InvocationPrefixCache.size());
+
+        RpcInvocation other = newInvocation();
+        other.setParameterTypes(new Class[]{Integer.class});
+        Assert.assertNotSame(prefix, InvocationPrefixCache.prefix(serialization, other));
+        Assert.assertEquals(2, InvocationPrefixCache.size());
+    }
+
+    @Test
+    public void testReusedParameterTypes() throws Exception {
+        InvocationPrefixCache.clear();
+        RpcInvocation invocation = newInvocation();
+        Serialization serialization = SerializeFactory.getSerialization(invocation.getSeriType());
+        byte[] prefix = InvocationPrefixCache.prefix(serialization, invocation);
+
+        // the caller changes the array it passed, the cached prefix of String stays as it was
+        invocation.getParameterTypes()[0] = Integer.class;
+        byte[] integerPrefix = InvocationPrefixCache.prefix(serialization, invocation);
+        Assert.assertNotSame(prefix, integerPrefix);
+        Assert.assertSame(prefix, InvocationPrefixCache.prefix(serialization, newInvocation()));
+        Assert.assertSame(integerPrefix, InvocationPrefixCache.prefix(serialization, invocation));
+        Assert.assertEquals(2, InvocationPrefixCache.size());
+
+        RpcInvocation otherVersion = newInvocation();
+        otherVersion.setVersion("2.0.0");
+        Assert.assertNotSame(prefix, InvocationPrefixCache.prefix(serialization, otherVersion));
+        Assert.assertEquals(3, InvocationPrefixCache.size());
+    }
+
+    @Test
+    public void testDecodeCachedPrefix() throws Exception {
+        RpcInvocation invocation = newInvocation();
+        ClientCodecHelper.toDubboMessage(invocation).release();
+        DubboMessage request = ClientCodecHelper.toDubboMessage(invocation);
+        RpcInvocation decoded = ServerCodecHelper.toRpcInvocation(request);
+        Assert.assertEquals(invocation.getInterfaceName(), decoded.getInterfaceName());
+        Assert.assertEquals(invocation.getMethodName(), decoded.getMethodName());
+        Assert.assertEquals(invocation.getVersion(), decoded.getAttachments().get("version"));
+        Assert.assertEquals("dubbo", decoded.getArguments()[0]);
+        request.release();
+    }
+
+    @Test
+    public void testInvocationLengthExcludesAttachments() throws Exception {
+        RpcInvocation invocation = newInvocation();
+        DubboMessage request = ClientCodecHelper.toDubboMessage(invocation);
+        invocation.getAttachments().put("traceId", "123");
+        DubboMessage traced = ClientCodecHelper.toDubboMessage(invocation);
+        Assert.assertTrue(request.getInvocationLength() > 0);
+        Assert.assertEquals(request.getInvocationLength(), traced.getInvocationLength());
+        Assert.assertTrue(request.getInvocationLength() < request.getBody().readableBytes());
+        Assert.assertArrayEquals(
+                ByteBufUtil.getBytes(request.getBody(), request.getBody().readerIndex(), request.getInvocationLength()),
+                ByteBufUtil.getBytes(traced.getBody(), traced.getBody().readerIndex(), traced.getInvocationLength()));
+        request.release();
+        traced.release();
+    }
+
+    private static RpcInvocation newInvocation() {
+        Map<String, String> attachments = new HashMap<>();
+        attachments.put("key", "value");
+        RpcInvocation invocation = new RpcInvocation();
+        invocation.setSeriType(SerializeConstants.HESSIAN2_SERIALIZATION_ID);
+        invocation.setInterfaceName("org.apache.dubbo.demo.DemoService");
+        invocation.setVersion("1.0.0");
+        invocation.setMethodName("sayHello");
+        invocation.setParameterTypes(new Class[]{String.class});
+        invocation.setArguments(new Object[]{"dubbo"});
+        invocation.setAttachments(attachments);
+        return invocation;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.esastack.codec.dubbo.core.codec.helper;
+
+import io.esastack.codec.common.RequestTiming;
+import io.esastack.codec.dubbo.core.DubboConstants;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.netty.buffer.ByteBufAllocator;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LazyDubboRpcResultTest {
+
+    private static DubboMessage response(DubboRpcResult result) throws Exception {
+        return ServerCodecHelper.toDubboMessage(result, ByteBufAllocator.DEFAULT);
+    }
+
+    @Test
+    public void testDeserializeOnFirstAccess() throws Exception {
+        final DubboMessage response = response(DubboRpcResult.success(7L, (byte) 2, "a"))
+                .setFirstByteNanos(3L).setDecodedNanos(5L);
+        final LazyDubboRpcResult result = (LazyDubboRpcResult) ClientCodecHelper.toLazyRpcResult(
+                response, String.class, String.class, Collections.singletonMap("ttfb", "1"));
+        assertNull(response.getBody());
+        response.release();
+        assertEquals(7L, result.getRequestId());
+        assertEquals(DubboConstants.RESPONSE_STATUS.OK, result.getStatus());
+        result.setAttachment("flush", "2");
+        assertFalse(result.isDeserialized());
+        assertEquals(3L, result.getFirstByteNanos());
+        assertEquals(5L, result.getDecodedNanos());
+        assertEquals(-1L, RequestTiming.deserializeNanos(result));
+
+        assertEquals("a", result.getValue());
+        assertTrue(result.isDeserialized());
+        assertNull(result.getException());
+        assertEquals("1", result.getAttachments().get("ttfb"));
+        assertEquals("2", result.getAttachments().get("flush"));
+        assertTrue(RequestTiming.deserializeNanos(result) >= 0L);
+        assertEquals(0, response.refCnt());
+        assertFalse(result.release());
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        final DubboMessage response = response(DubboRpcResult.success(1L, (byte) 2, "a"));
+        final LazyDubboRpcResult result = (LazyDubboRpcResult) ClientCodecHelper.toLazyRpcResult(
+                response, String.class, String.class, null);
+        response.release();
+        assertTrue(result.release());
+        assertEquals(0, response.refCnt());
+        assertNull(result.getValue());
+    }
+
+    @Test
+    public void testFailedDeserialization() throws Exception {
+        final DubboMessage response = response(DubboRpcResult.success(1L, (byte) 2, "a"));
+        final DubboRpcResult result = ClientCodecHelper.toLazyRpcResult(response, List.class, List.class, null);
+        response.release();
+        assertEquals(DubboConstants.RESPONSE_STATUS.OK, result.getStatus());
+        assertNotNull(result.getException());
+        assertEquals(DubboConstants.RESPONSE_STATUS.CLIENT_ERROR, result.getStatus());
+        assertEquals(0, response.refCnt());
+    }
+
+    @Test
+    public void testThrownException() throws Exception {
+        final DubboMessage response = response(
+                DubboRpcResult.error(1L, (byte) 2, new IllegalStateException("failed")));
+        final DubboRpcResult result = ClientCodecHelper.toLazyRpcResult(response, String.class, String.class, null);
+        response.release();
+        assertTrue(result instanceof LazyDubboRpcResult);
+        assertTrue(result.getException() instanceof IllegalStateException);
+        assertNull(result.getValue());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dubbo.lite.test.loadgen;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent latency histogram with HdrHistogram style log-linear buckets. Every power of two is split
+ * into {@link #SUB_BUCKET_HALF_COUNT} linear sub buckets, which keeps the relative error below 1% over the
+ * whole trackable range while allowing lock free recording from any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 7;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final int SUB_BUCKET_COUNT = SUB_BUCKET_HALF_COUNT << 1;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int LEADING_ZERO_COUNT_BASE = 64 - SUB_BUCKET_HALF_COUNT_MAGNITUDE - 1;
+    private static final int PERCENTILE_TICKS_PER_HALF_DISTANCE = 5;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator minValue = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    public LatencyHistogram(final long highestTrackableValue) {
+        if (highestTrackableValue < SUB_BUCKET_COUNT) {
+            throw new IllegalArgumentException("highestTrackableValue must be >= " + SUB_BUCKET_COUNT);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(countsIndex(highestTrackableValue) + 1);
+    }
+
+    public void recordValue(final long value) {
+        final long clamped = Math.min(Math.max(value, 0), highestTrackableValue);
+        counts.incrementAndGet(countsIndex(clamped));
+        totalCount.increment();
+        totalValue.add(clamped);
+        maxValue.accumulate(clamped);
+        minValue.accumulate(clamped);
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxValue() {
+        return getTotalCount() == 0 ? 0 : highestEquivalentValue(maxValue.get());
+    }
+
+    public long getMinValue() {
+        return getTotalCount() == 0 ? 0 : lowestEquivalentValue(minValue.get());
+    }
+
+    public double getMean() {
+        final long count = getTotalCount();
+        return count == 0 ? 0 : (double) totalValue.sum() / count;
+    }
+
+    public long getValueAtPercentile(final double percentile) {
+        final long count = getTotalCount();
+        if (count == 0) {
+            return 0;
+        }
+        final double requested = Math.min(Math.max(percentile, 0), 100.0);
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(requested / 100.0 * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= countAtPercentile) {
+                return Math.min(highestEquivalentValue(valueFromIndex(i)), getMaxValue());
+            }
+        }
+        return getMaxValue();
+    }
+
+    /**
+     * Prints the percentile distribution in the same layout as HdrHistogram's
+     * {@code outputPercentileDistribution}, so the output can be fed to the usual HdrHistogram plotters.
+     *
+     * @param out           target stream
+     * @param unit          unit the values were recorded in
+     * @param reportingUnit unit used for the printed values
+     */
+    public void outputPercentileDistribution(final PrintStream out, final TimeUnit unit, final TimeUnit reportingUnit) {
+        final double scale = unit.convert(1, reportingUnit);
+        final long count = getTotalCount();
+        out.println(String.format("%12s %14s %10s %14s%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+        if (count > 0) {
+            double percentile = 0.0;
+            long previousValue = -1;
+            while (true) {
+                final long value = getValueAtPercentile(percentile);
+                if (value != previousValue || percentile == 100.0) {
+                    final long countAtValue = countAtOrBelow(value);
+                    final double reportedPercentile = (double) countAtValue / count;
+                    if (reportedPercentile >= 1.0) {
+                        out.println(String.format("%12.3f %1.12f %10d", value / scale, 1.0, countAtValue));
+                        break;
+                    }
+                    out.println(String.format("%12.3f %1.12f %10d %14.2f", value / scale, reportedPercentile,
+                            countAtValue, 1 / (1.0 - reportedPercentile)));
+                    previousValue = value;
+                }
+                if (percentile >= 100.0) {
+                    break;
+                }
+                final long halfDistance = (long) Math.pow(2,
+                        (long) (Math.log(100.0 / (100.0 - percentile)) / Math.log(2)) + 1);
+                percentile = Math.min(100.0,
+                        percentile + 100.0 / (halfDistance * PERCENTILE_TICKS_PER_HALF_DISTANCE));
+            }
+        }
+        out.println(String.format("#[Mean    = %12.3f, Min            = %12.3f]", getMean() / scale,
+                getMinValue() / scale));
+        out.println(String.format("#[Max     = %12.3f, Total count    = %12d]", getMaxValue() / scale, count));
+        out.println(String.format("#[Buckets = %12d, SubBuckets     = %12d]",
+                counts.length() / SUB_BUCKET_HALF_COUNT, SUB_BUCKET_COUNT));
+    }
+
+    private long countAtOrBelow(final long value) {
+        final int index = Math.min(countsIndex(Math.min(value, highestTrackableValue)), counts.length() - 1);
+        long cumulative = 0;
+        for (int i = 0; i <= index; i++) {
+            cumulative += counts.get(i);
+        }
+        return cumulative;
+    }
+
+    private static int countsIndex(final long value) {
+        final int bucketIndex = LEADING_ZERO_COUNT_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        final int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+    }
+
+    private static long valueFromIndex(final int index) {
+        int bucketIndex = (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        int subBucketIndex = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucketIndex < 0) {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex) << bucketIndex;
+    }
+
+    private static long lowestEquivalentValue(final long value) {
+        return valueFromIndex(countsIndex(value));
+    }
+
+    private static long highestEquivalentValue(final long value) {
+        final int bucketIndex = Math.max(0,
+                LEADING_ZERO_COUNT_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK));
+        return lowestEquivalentValue(value) + (1L << bucketIndex) - 1;
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dubbo.lite.test.loadgen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Options of {@link LoadGenerator}, parsed from {@code --name=value} program arguments.
+ */
+public class LoadGenOptions {
+
+    public enum Mode {
+        /**
+         * Requests are issued on a fixed schedule regardless of response times, latency is measured from the
+         * intended send time so that stalls are not hidden by coordinated omission.
+         */
+        OPEN,
+        /**
+         * Every worker sends the next request only after the previous one completed.
+         */
+        CLOSED
+    }
+
+    public enum Transport {
+        TCP,
+        UDS
+    }
+
+    private Mode mode = Mode.CLOSED;
+    private Transport transport = Transport.TCP;
+    private String host = "127.0.0.1";
+    private int port = 20990;
+    private String udsPath = "\0/codec-dubbo/loadgen.sock";
+    private int concurrency = 64;
+    private int rate = 20000;
+    private int durationSeconds = 30;
+    private int warmupSeconds = 10;
+    private int payloadSize = 1024;
+    private String seriType = "hessian2";
+    private int maxPoolSize = 1;
+    private int timeoutMillis = 3000;
+    private int serverIoThreads;
+    private int clientIoThreads;
+    private int flushConsolidation;
+    private boolean leastInFlight;
+    private int writeQueueSize;
+    private String concurrencyLimit = "none";
+    private int hedgeDelayMillis = -1;
+    private double hedgePercentile;
+    private String deserialize = "io";
+    private int inlineBelow;
+    private String callers = "async";
+    private int batch;
+    private boolean pooledResponses;
+
+    public static LoadGenOptions parse(final String[] args) {
+        final Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Illegal argument: " + arg + ", expected --name=value");
+            }
+            final int idx = arg.indexOf('=');
+            values.put(arg.substring(2, idx), arg.substring(idx + 1));
+        }
+
+        final LoadGenOptions options = new LoadGenOptions();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            final String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "mode":
+                    options.mode = Mode.valueOf(value.toUpperCase());
+                    break;
+                case "transport":
+                    options.transport = Transport.valueOf(value.toUpperCase());
+                    break;
+                case "host":
+                    options.host = value;
+                    break;
+                case "port":
+                    options.port = Integer.parseInt(value);
+                    break;
+                case "udsPath":
+                    options.udsPath = value;
+                    break;
+                case "concurrency":
+                    options.concurrency = Integer.parseInt(value);
+                    break;
+                case "rate":
+                    options.rate = Integer.parseInt(value);
+                    break;
+                case "duration":
+                    options.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    options.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "payload":
+                    options.payloadSize = Integer.parseInt(value);
+                    break;
+                case "seriType":
+                    options.seriType = value;
+                    break;
+                case "maxPoolSize":
+                    options.maxPoolSize = Integer.parseInt(value);
+                    break;
+                case "timeout":
+                    options.timeoutMillis = Integer.parseInt(value);
+                    break;
+                case "serverIoThreads":
+                    options.serverIoThreads = Integer.parseInt(value);
+                    break;
+                case "clientIoThreads":
+                    options.clientIoThreads = Integer.parseInt(value);
+                    break;
+                case "flushConsolidation":
+                    options.flushConsolidation = Integer.parseInt(value);
+                    break;
+                case "poolSelection":
+                    if (!"random".equalsIgnoreCase(value) && !"leastInFlight".equalsIgnoreCase(value)) {
+                        throw new IllegalArgumentException("Unknown pool selection: " + value);
+                    }
+                    options.leastInFlight = "leastInFlight".equalsIgnoreCase(value);
+                    break;
+                case "writeQueueSize":
+                    options.writeQueueSize = Integer.parseInt(value);
+                    break;
+                case "concurrencyLimit":
+                    if (!"none".equalsIgnoreCase(value) && !"aimd".equalsIgnoreCase(value) &&
+                            !"gradient".equalsIgnoreCase(value)) {
+                        throw new IllegalArgumentException("Unknown concurrency limit: " + value);
+                    }
+                    options.concurrencyLimit = value.toLowerCase();
+                    break;
+                case "hedgeDelay":
+                    options.hedgeDelayMillis = Integer.parseInt(value);
+                    break;
+                case "hedgePercentile":
+                    options.hedgePercentile = Double.parseDouble(value);
+                    break;
+                case "deserialize":
+                    if (!"io".equalsIgnoreCase(value) && !"workStealing".equalsIgnoreCase(value) &&
+                            !"virtual".equalsIgnoreCase(value) && !"lazy".equalsIgnoreCase(value)) {
+                        throw new IllegalArgumentException("Unknown deserialization: " + value);
+                    }
+                    options.deserialize = value;
+                    break;
+                case "inlineBelow":
+                    options.inlineBelow = Integer.parseInt(value);
+                    break;
+                case "callers":
+                    if (!"async".equalsIgnoreCase(value) && !"blocking".equalsIgnoreCase(value) &&
+                            !"virtual".equalsIgnoreCase(value)) {
+                        throw new IllegalArgumentException("Unknown callers: " + value);
+                    }
+                    options.callers = value;
+                    break;
+                case "batch":
+                    options.batch = Integer.parseInt(value);
+                    break;
+                case "pooledResponses":
+                    options.pooledResponses = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: --" + entry.getKey());
+            }
+        }
+        if (options.concurrency <= 0 || options.durationSeconds <= 0 || options.warmupSeconds < 0 ||
+                options.payloadSize < 0 || options.maxPoolSize <= 0 || options.timeoutMillis <= 0 ||
+                options.flushConsolidation < 0 || options.writeQueueSize < 0 || options.clientIoThreads < 0 ||
+                options.hedgePercentile < 0 || options.hedgePercentile >= 100 || options.inlineBelow < 0 ||
+                options.batch < 0) {
+            throw new IllegalArgumentException("Illegal options: " + options);
+        }
+        if (options.mode == Mode.OPEN && options.rate <= 0) {
+            throw new IllegalArgumentException("--rate must be positive in open loop mode");
+        }
+        if (options.mode == Mode.OPEN && !"async".equalsIgnoreCase(options.callers)) {
+            throw new IllegalArgumentException("--callers only applies to closed loop mode");
+        }
+        if (options.batch > 0 && (options.mode == Mode.OPEN || !"async".equalsIgnoreCase(options.callers))) {
+            throw new IllegalArgumentException("--batch only applies to closed loop mode with async callers");
+        }
+        return options;
+    }
+
+    public static String usage() {
+        return "Usage: LoadGenerator [--name=value]...\n" +
+                "  --mode=closed|open       closed loop or fixed arrival rate open loop (default closed)\n" +
+                "  --transport=tcp|uds      loopback tcp or unix domain socket, uds requires epoll (default tcp)\n" +
+                "  --host=127.0.0.1         tcp host\n" +
+                "  --port=20990             tcp port\n" +
+                "  --udsPath=...            unix domain socket path, a leading \\0 means abstract namespace\n" +
+                "  --concurrency=64         closed loop workers, or open loop sender threads\n" +
+                "  --rate=20000             open loop target requests per second\n" +
+                "  --duration=30            measured seconds\n" +
+                "  --warmup=10              unrecorded warmup seconds\n" +
+                "  --payload=1024           request and response payload in bytes\n" +
+                "  --seriType=hessian2      serialization name\n" +
+                "  --maxPoolSize=1          connections of the client multiplex pool\n" +
+                "  --timeout=3000           request timeout in milliseconds\n" +
+                "  --serverIoThreads=0      server I/O threads, 0 means available processors\n" +
+                "  --clientIoThreads=0      I/O threads of the client's own event loops, 0 means the event loops\n" +
+                "                           shared by the clients\n" +
+                "  --flushConsolidation=0   consolidate the flushes of client and server, forcing a flush after\n" +
+                "                           the given number of flushes, 0 means flush every message\n" +
+                "  --poolSelection=random   random or leastInFlight connection of the client multiplex pool\n" +
+                "  --writeQueueSize=0       requests each client connection parks while its write buffer is full,\n" +
+                "                           0 means fail them right away\n" +
+                "  --concurrencyLimit=none  none, aimd or gradient adaptive limit of the concurrent requests of\n" +
+                "                           the client, the requests beyond the limit fail right away\n" +
+                "  --hedgeDelay=-1          send a backup request on another connection after the given\n" +
+                "                           milliseconds, within a 5% budget, -1 means no backup request\n" +
+                "  --hedgePercentile=0      use the given percentile of the recent latencies as the delay once\n" +
+                "                           known, 0 means the fixed delay only\n" +
+                "  --deserialize=io         io, workStealing or virtual threads deserializing the responses, or\n" +
+                "                           lazy for the threads reading the results\n" +
+                "  --inlineBelow=0          deserialize the response bodies below the given bytes on the I/O\n" +
+                "                           thread whatever --deserialize\n" +
+                "  --callers=async          closed loop workers waiting for the async client, or blocking platform\n" +
+                "                           or virtual threads calling the blocking client, virtual requires JDK 21\n" +
+                "  --batch=0                closed loop workers sending the given number of requests at once by\n" +
+                "                           sendBatch, 0 means one request at a time\n" +
+                "  --pooledResponses=false  decode the responses into recycled messages";
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUdsPath() {
+        return udsPath;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    public String getSeriType() {
+        return seriType;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getServerIoThreads() {
+        return serverIoThreads;
+    }
+
+    public int getClientIoThreads() {
+        return clientIoThreads;
+    }
+
+    public int getFlushConsolidation() {
+        return flushConsolidation;
+    }
+
+    public boolean isLeastInFlight() {
+        return leastInFlight;
+    }
+
+    public int getWriteQueueSize() {
+        return writeQueueSize;
+    }
+
+    public String getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public int getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public String getDeserialize() {
+        return deserialize;
+    }
+
+    public int getInlineBelow() {
+        return inlineBelow;
+    }
+
+    public String getCallers() {
+        return callers;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public boolean isPooledResponses() {
+        return pooledResponses;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadGenOptions{" +
+                "mode=" + mode +
+                ", transport=" + transport +
+                ", host='" + host + '\'' +
+                ", port=" + port +
+                ", udsPath='" + udsPath.replace("\0", "\\0") + '\'' +
+                ", concurrency=" + concurrency +
+                ", rate=" + rate +
+                ", durationSeconds=" + durationSeconds +
+                ", warmupSeconds=" + warmupSeconds +
+                ", payloadSize=" + payloadSize +
+                ", seriType='" + seriType + '\'' +
+                ", maxPoolSize=" + maxPoolSize +
+                ", timeoutMillis=" + timeoutMillis +
+                ", serverIoThreads=" + serverIoThreads +
+                ", clientIoThreads=" + clientIoThreads +
+                ", flushConsolidation=" + flushConsolidation +
+                ", poolSelection=" + (leastInFlight ? "leastInFlight" : "random") +
+                ", writeQueueSize=" + writeQueueSize +
+                ", concurrencyLimit=" + concurrencyLimit +
+                ", hedgeDelayMillis=" + hedgeDelayMillis +
+                ", hedgePercentile=" + hedgePercentile +
+                ", deserialize=" + deserialize +
+                ", inlineBelow=" + inlineBelow +
+                ", callers=" + callers +
+                ", batch=" + batch +
+                ", pooledResponses=" + pooledResponses +
+                '}';
+    }
+}
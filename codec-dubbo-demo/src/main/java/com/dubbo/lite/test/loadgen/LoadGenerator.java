@@ -0,0 +1,436 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dubbo.lite.test.loadgen;
+
+import esa.commons.logging.Logger;
+import esa.commons.logging.LoggerFactory;
+import io.esastack.codec.common.connection.NettyConnectionConfig;
+import io.esastack.codec.common.connection.NettyConnectionConfig.MultiplexPoolBuilder;
+import io.esastack.codec.common.limiter.AimdLimit;
+import io.esastack.codec.common.limiter.GradientLimit;
+import io.esastack.codec.commons.pool.SelectionStrategy;
+import io.esastack.codec.common.server.NettyServerConfig;
+import io.esastack.codec.dubbo.client.BatchResponses;
+import io.esastack.codec.dubbo.client.BlockingDubboClient;
+import io.esastack.codec.dubbo.client.DubboClientBuilder;
+import io.esastack.codec.dubbo.client.HedgingPolicy;
+import io.esastack.codec.dubbo.client.NettyDubboClient;
+import io.esastack.codec.dubbo.client.serialize.DeserializationStrategy;
+import io.esastack.codec.dubbo.core.DubboRpcResult;
+import io.esastack.codec.dubbo.core.RpcInvocation;
+import io.esastack.codec.dubbo.core.codec.DubboMessage;
+import io.esastack.codec.dubbo.core.codec.helper.ClientCodecHelper;
+import io.esastack.codec.dubbo.core.codec.helper.ServerCodecHelper;
+import io.esastack.codec.dubbo.server.DubboServerBuilder;
+import io.esastack.codec.dubbo.server.NettyDubboServer;
+import io.esastack.codec.dubbo.server.handler.DubboResponseHolder;
+import io.esastack.codec.dubbo.server.handler.DubboServerBizHandler;
+import io.esastack.codec.serialization.api.Serialization;
+import io.esastack.codec.serialization.api.SerializeFactory;
+import io.netty.channel.epoll.Epoll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loopback load generator which runs a {@link NettyDubboServer} and a {@link NettyDubboClient} in the same JVM,
+ * connected by tcp or unix domain socket, and reports throughput together with the latency distribution.
+ * <p>
+ * In {@link LoadGenOptions.Mode#OPEN} mode requests follow a fixed arrival schedule and each latency is taken
+ * from the intended send time, so a stalled client or server shows up in the tail instead of silently lowering
+ * the request rate (coordinated omission). {@link LoadGenOptions.Mode#CLOSED} mode measures the classic
+ * "N outstanding requests" throughput.
+ * <pre>
+ * java -cp codec-dubbo-demo.jar com.dubbo.lite.test.loadgen.LoadGenerator --mode=open --rate=50000 \
+ *     --transport=uds --payload=4096 --seriType=hessian2 --maxPoolSize=2
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final String INTERFACE_NAME = "com.dubbo.lite.test.loadgen.EchoService";
+    private static final String METHOD_NAME = "echo";
+    private static final long PROBE_TIMEOUT_MILLIS = 5000L;
+
+    private final LoadGenOptions options;
+    private final byte seriType;
+    private final String payload;
+    private final LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MINUTES.toNanos(1));
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+
+    private NettyDubboServer server;
+    private NettyDubboClient client;
+    private BlockingDubboClient blockingClient;
+
+    public LoadGenerator(final LoadGenOptions options) {
+        final Serialization serialization = SerializeFactory.getSerialization(options.getSeriType());
+        if (serialization == null) {
+            throw new IllegalArgumentException("Unsupported seriType: " + options.getSeriType() +
+                    ", available: " + SerializeFactory.getAllByName().keySet());
+        }
+        if (options.getTransport() == LoadGenOptions.Transport.UDS && !Epoll.isAvailable()) {
+            throw new IllegalStateException("Unix domain socket transport requires native epoll",
+                    Epoll.unavailabilityCause());
+        }
+        this.options = options;
+        this.seriType = serialization.getSeriTypeId();
+        final char[] chars = new char[options.getPayloadSize()];
+        Arrays.fill(chars, 'x');
+        this.payload = new String(chars);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final LoadGenOptions options;
+        try {
+            options = LoadGenOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadGenOptions.usage());
+            System.exit(1);
+            return;
+        }
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        System.out.println("Load generator started with " + options);
+        startServer();
+        try {
+            startClient();
+            final long warmupNanos = TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+            final long startNanos = System.nanoTime();
+            final long measureStartNanos = startNanos + warmupNanos;
+            final long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+            final Thread[] workers = new Thread[options.getConcurrency()];
+            for (int i = 0; i < workers.length; i++) {
+                final int index = i;
+                workers[i] = newWorker(options.getMode() == LoadGenOptions.Mode.OPEN
+                        ? () -> runOpenLoop(index, startNanos, measureStartNanos, endNanos)
+                        : () -> runClosedLoop(measureStartNanos, endNanos), "LoadGenerator-Worker-" + i);
+                workers[i].start();
+            }
+            LockSupport.parkNanos(measureStartNanos - System.nanoTime());
+            final SyscallCounters measureStart = SyscallCounters.snapshot();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            final SyscallCounters measureEnd = SyscallCounters.snapshot();
+            // failed requests may not reach the network, so only the completed ones are counted
+            final long completedInMeasure = completed.sum();
+            awaitInFlight();
+            report(TimeUnit.NANOSECONDS.toSeconds(endNanos - measureStartNanos), measureStart, measureEnd,
+                    completedInMeasure);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+            server.shutdown();
+        }
+    }
+
+    private Thread newWorker(final Runnable task, final String name) throws Exception {
+        if ("virtual".equalsIgnoreCase(options.getCallers())) {
+            // Thread.ofVirtual().name(name).unstarted(task), looked up reflectively to keep building on JDK 8
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderClass.getMethod("name", String.class).invoke(builder, name);
+            return (Thread) builderClass.getMethod("unstarted", Runnable.class).invoke(builder, task);
+        }
+        final Thread worker = new Thread(task, name);
+        worker.setDaemon(true);
+        return worker;
+    }
+
+    private void runOpenLoop(final int index,
+                             final long startNanos,
+                             final long measureStartNanos,
+                             final long endNanos) {
+        // every sender owns an equal share of the target rate, staggered so the senders do not fire together
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(options.getConcurrency()) / options.getRate();
+        long intendedNanos = startNanos + intervalNanos * index / options.getConcurrency();
+        while (intendedNanos < endNanos) {
+            final long delay = intendedNanos - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+                continue;
+            }
+            final long intended = intendedNanos;
+            final boolean recorded = intended >= measureStartNanos;
+            inFlight.increment();
+            send().whenComplete((result, t) -> {
+                onComplete(recorded, System.nanoTime() - intended, result, t);
+                inFlight.decrement();
+            });
+            intendedNanos += intervalNanos;
+        }
+    }
+
+    private void runClosedLoop(final long measureStartNanos, final long endNanos) {
+        if (options.getBatch() > 0) {
+            runBatchLoop(measureStartNanos, endNanos);
+            return;
+        }
+        long start;
+        while ((start = System.nanoTime()) < endNanos) {
+            DubboRpcResult result = null;
+            Throwable error = null;
+            try {
+                result = blockingClient == null
+                        ? send().get() : blockingClient.invoke(newRequest(), String.class);
+            } catch (Throwable t) {
+                error = t;
+            }
+            onComplete(start >= measureStartNanos, System.nanoTime() - start, result, error);
+        }
+    }
+
+    /**
+     * Sends {@link LoadGenOptions#getBatch()} requests at once and waits for all of them, each latency is taken from
+     * the sending of the batch.
+     */
+    private void runBatchLoop(final long measureStartNanos, final long endNanos) {
+        final List<DubboMessage> requests = new ArrayList<>(options.getBatch());
+        long start;
+        while ((start = System.nanoTime()) < endNanos) {
+            requests.clear();
+            try {
+                for (int i = 0; i < options.getBatch(); i++) {
+                    requests.add(newRequest());
+                }
+            } catch (Throwable t) {
+                onComplete(start >= measureStartNanos, System.nanoTime() - start, null, t);
+                continue;
+            }
+            final BatchResponses responses = client.sendBatch(requests, String.class, String.class,
+                    options.getTimeoutMillis());
+            for (CompletableFuture<DubboRpcResult> future : responses.getFutures()) {
+                DubboRpcResult result = null;
+                Throwable error = null;
+                try {
+                    result = future.get();
+                } catch (Throwable t) {
+                    error = t;
+                }
+                onComplete(start >= measureStartNanos, System.nanoTime() - start, result, error);
+            }
+        }
+    }
+
+    private CompletableFuture<DubboRpcResult> send() {
+        return send(options.getTimeoutMillis());
+    }
+
+    private CompletableFuture<DubboRpcResult> send(final long timeoutMillis) {
+        try {
+            return client.sendRequest(newRequest(), String.class, timeoutMillis);
+        } catch (Throwable t) {
+            final CompletableFuture<DubboRpcResult> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            return future;
+        }
+    }
+
+    private DubboMessage newRequest() throws Exception {
+        final RpcInvocation invocation = new RpcInvocation();
+        invocation.setSeriType(seriType);
+        invocation.setInterfaceName(INTERFACE_NAME);
+        invocation.setMethodName(METHOD_NAME);
+        invocation.setParameterTypes(new Class[]{String.class});
+        invocation.setArguments(new Object[]{payload});
+        invocation.setReturnType(String.class);
+        invocation.setAttachments(new HashMap<>());
+        return ClientCodecHelper.toDubboMessage(invocation);
+    }
+
+    private void onComplete(final boolean recorded,
+                            final long latencyNanos,
+                            final DubboRpcResult result,
+                            final Throwable t) {
+        if (!recorded) {
+            return;
+        }
+        if (t != null || result == null || result.getException() != null) {
+            errors.increment();
+        } else {
+            completed.increment();
+        }
+        // failed requests are part of the latency distribution as well, dropping them would flatter the tail
+        histogram.recordValue(latencyNanos);
+    }
+
+    private void awaitInFlight() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeoutMillis() * 2L);
+        while (inFlight.sum() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        if (inFlight.sum() > 0) {
+            LOGGER.warn("{} requests are still in flight after the run", inFlight.sum());
+        }
+    }
+
+    private void report(final long durationSeconds,
+                        final SyscallCounters measureStart,
+                        final SyscallCounters measureEnd,
+                        final long completedInMeasure) {
+        final long total = completed.sum();
+        System.out.println();
+        System.out.println(String.format("Mode: %s, transport: %s, seriType: %s, payload: %dB, concurrency: %d, " +
+                        "maxPoolSize: %d", options.getMode(), options.getTransport(), options.getSeriType(),
+                options.getPayloadSize(), options.getConcurrency(), options.getMaxPoolSize()));
+        if (options.getMode() == LoadGenOptions.Mode.OPEN) {
+            System.out.println("Target rate: " + options.getRate() + " req/s");
+        }
+        System.out.println(String.format("Completed: %d, errors: %d, throughput: %.1f req/s",
+                total, errors.sum(), (double) total / durationSeconds));
+        System.out.println(String.format("Latency(us) p50: %.1f, p90: %.1f, p99: %.1f, p99.9: %.1f, " +
+                        "p99.99: %.1f, max: %.1f",
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getValueAtPercentile(99.99) / 1000.0,
+                histogram.getMaxValue() / 1000.0));
+        reportSyscalls(measureStart, measureEnd, completedInMeasure);
+        if (options.getWriteQueueSize() > 0) {
+            System.out.println("Write queue: " + client.getWriteQueueStats());
+        }
+        if (client.getConcurrencyLimiter() != null) {
+            System.out.println("Concurrency limiter: " + client.getConcurrencyLimiter());
+        }
+        if (client.getHedgingStats() != null) {
+            System.out.println("Hedging: " + client.getHedgingStats());
+        }
+        if (!"io".equalsIgnoreCase(options.getDeserialize())) {
+            System.out.println("Deserialization: " + client.getDeserializationStats());
+        }
+        System.out.println();
+        System.out.println("Latency distribution in microseconds:");
+        histogram.outputPercentileDistribution(System.out, TimeUnit.NANOSECONDS, TimeUnit.MICROSECONDS);
+    }
+
+    private void reportSyscalls(final SyscallCounters start, final SyscallCounters end, final long requests) {
+        if (start == null || end == null || requests <= 0L) {
+            System.out.println("Syscalls per request: not available on this platform");
+            return;
+        }
+        // client and server run in this process, so a request costs a request write and a response write at least
+        System.out.println(String.format("Syscalls per request (client + server): write %.3f, read %.3f",
+                (double) (end.writes - start.writes) / requests, (double) (end.reads - start.reads) / requests));
+    }
+
+    private void startServer() {
+        final NettyServerConfig serverConfig = new NettyServerConfig()
+                .setBindIp(options.getHost())
+                .setPort(options.getPort())
+                .setIoThreads(options.getServerIoThreads())
+                .setFlushConsolidationThreshold(options.getFlushConsolidation());
+        if (options.getTransport() == LoadGenOptions.Transport.UDS) {
+            serverConfig.setUnixDomainSocketFile(options.getUdsPath());
+        }
+        server = new NettyDubboServer(new DubboServerBuilder()
+                .setServerConfig(serverConfig)
+                .setBizHandler(new EchoBizHandler()));
+        server.start();
+    }
+
+    private void startClient() throws Exception {
+        final NettyConnectionConfig connectionConfig = new NettyConnectionConfig()
+                .setHost(options.getHost())
+                .setPort(options.getPort())
+                .setConnectTimeout(options.getTimeoutMillis())
+                .setFlushConsolidationThreshold(options.getFlushConsolidation())
+                .setWriteQueueSize(options.getWriteQueueSize())
+                .setIoThreads(options.getClientIoThreads())
+                .setMultiplexPoolBuilder(MultiplexPoolBuilder.newBuilder()
+                        .setMaxPoolSize(options.getMaxPoolSize())
+                        .setSelectionStrategy(options.isLeastInFlight()
+                                ? MultiplexPoolBuilder.leastInFlight() : SelectionStrategy.random()));
+        if (options.getTransport() == LoadGenOptions.Transport.UDS) {
+            connectionConfig.setUnixDomainSocketFile(options.getUdsPath());
+        }
+        final DubboClientBuilder builder = new DubboClientBuilder()
+                .setConnectionConfig(connectionConfig)
+                .setReadTimeout(options.getTimeoutMillis())
+                .setWriteTimeout(options.getTimeoutMillis())
+                .setPooledResponses(options.isPooledResponses());
+        if ("aimd".equals(options.getConcurrencyLimit())) {
+            builder.setConcurrencyLimit(AimdLimit::new);
+        } else if ("gradient".equals(options.getConcurrencyLimit())) {
+            builder.setConcurrencyLimit(GradientLimit::new);
+        }
+        if (options.getHedgeDelayMillis() >= 0) {
+            builder.setHedgingPolicy(new HedgingPolicy()
+                    .setDelayMillis(options.getHedgeDelayMillis())
+                    .setDelayPercentile(options.getHedgePercentile())
+                    // the requests of the load generator are all idempotent
+                    .setHedgeable(request -> true));
+        }
+        if ("workStealing".equalsIgnoreCase(options.getDeserialize())) {
+            builder.setDeserializationStrategy(
+                    DeserializationStrategy.workStealing().inlineBelow(options.getInlineBelow()));
+        } else if ("virtual".equalsIgnoreCase(options.getDeserialize())) {
+            builder.setDeserializationStrategy(
+                    DeserializationStrategy.virtualThreads().inlineBelow(options.getInlineBelow()));
+        } else if ("lazy".equalsIgnoreCase(options.getDeserialize())) {
+            builder.setDeserializationStrategy(DeserializationStrategy.lazy().inlineBelow(options.getInlineBelow()));
+        }
+        client = builder.build();
+        if (!"async".equalsIgnoreCase(options.getCallers())) {
+            blockingClient = new BlockingDubboClient(client, options.getTimeoutMillis());
+        }
+        // make sure the connection is established before the clock starts, the first call also pays for the class
+        // loading, so it does not use the timeout under test
+        final long probeTimeout = Math.max(options.getTimeoutMillis(), PROBE_TIMEOUT_MILLIS);
+        final DubboRpcResult result = send(probeTimeout).get(probeTimeout, TimeUnit.MILLISECONDS);
+        if (result.getException() != null) {
+            throw new IllegalStateException("Failed to call the echo server", result.getException());
+        }
+    }
+
+    /**
+     * Echoes the argument back on the I/O thread, so the numbers reflect the transport and the codec only.
+     */
+    private static class EchoBizHandler implements DubboServerBizHandler {
+
+        @Override
+        public void process(final DubboMessage request, final DubboResponseHolder responseHolder) {
+            DubboMessage response;
+            try {
+                final RpcInvocation invocation = ServerCodecHelper.toRpcInvocation(request);
+                response = ServerCodecHelper.toDubboMessage(DubboRpcResult.success(invocation.getRequestId(),
+                        invocation.getSeriType(), invocation.getArguments()[0]), request.getBody().alloc());
+            } catch (Exception e) {
+                LOGGER.error("Failed to echo request", e);
+                response = null;
+            }
+            responseHolder.end(response);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 OPPO ESA Stack Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dubbo.lite.test.loadgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Read and write syscall counters of this process from {@code /proc/self/io}, only available on Linux. The load
+ * generator runs the client and the server in the same process, so the counters cover both sides.
+ */
+final class SyscallCounters {
+
+    private static final Path PROC_IO = Paths.get("/proc/self/io");
+
+    final long reads;
+    final long writes;
+
+    private SyscallCounters(final long reads, final long writes) {
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    /**
+     * @return the current counters, or {@code null} if they are not available on this platform
+     */
+    static SyscallCounters snapshot() {
+        if (!Files.isReadable(PROC_IO)) {
+            return null;
+        }
+        long reads = -1L;
+        long writes = -1L;
+        try {
+            for (String line : Files.readAllLines(PROC_IO, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("syscr:")) {
+                    reads = Long.parseLong(line.substring(6).trim());
+                } else if (line.startsWith("syscw:")) {
+                    writes = Long.parseLong(line.substring(6).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+        return reads < 0L || writes < 0L ? null : new SyscallCounters(reads, writes);
+    }
+}
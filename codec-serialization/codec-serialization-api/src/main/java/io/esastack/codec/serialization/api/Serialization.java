@@ -33,4 +33,13 @@ public interface Serialization {
     DataOutputStream serialize(OutputStream output) throws IOException;
 
     DataInputStream deserialize(InputStream input) throws IOException;
+
+    /**
+     * Whether {@link DataOutputStream#writeUTF(String)} encodes a string to the same bytes no matter what has been
+     * written to the stream before, and writes nothing when the stream is created. If so, the encoded bytes of
+     * constant strings can be cached and written to the underlying stream directly.
+     */
+    default boolean isStringEncodingContextFree() {
+        return false;
+    }
 }
@@ -50,4 +50,9 @@ public class FastJsonSerialization implements Serialization {
     public DataInputStream deserialize(final InputStream input) throws IOException {
         return new FastJsonDataInputStream(input);
     }
+
+    @Override
+    public boolean isStringEncodingContextFree() {
+        return true;
+    }
 }
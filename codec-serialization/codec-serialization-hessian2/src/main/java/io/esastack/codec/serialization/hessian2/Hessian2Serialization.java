@@ -69,4 +69,8 @@ public class Hessian2Serialization implements Serialization {
         return new Hessian2DataInputStream(is);
     }
 
+    @Override
+    public boolean isStringEncodingContextFree() {
+        return true;
+    }
 }
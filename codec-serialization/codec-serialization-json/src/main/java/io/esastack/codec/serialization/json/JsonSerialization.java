@@ -50,4 +50,9 @@ public class JsonSerialization implements Serialization {
     public DataInputStream deserialize(final InputStream input) throws IOException {
         return new JsonDataInputStream(input);
     }
+
+    @Override
+    public boolean isStringEncodingContextFree() {
+        return true;
+    }
 }
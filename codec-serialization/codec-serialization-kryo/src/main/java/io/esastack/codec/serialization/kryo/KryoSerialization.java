@@ -68,4 +68,9 @@ public class KryoSerialization implements Serialization {
     public DataInputStream deserialize(InputStream is) throws IOException {
         return new KryoDataInputStream(is);
     }
+
+    @Override
+    public boolean isStringEncodingContextFree() {
+        return true;
+    }
 }
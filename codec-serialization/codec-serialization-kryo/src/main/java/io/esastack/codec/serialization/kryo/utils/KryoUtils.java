@@ -41,7 +41,12 @@ import com.esotericsoftware.kryo.Serializer;
  * @since 2.6.0
  */
 public class KryoUtils {
-    private static final AbstractKryoFactory KRYO_FACTORY = new ThreadLocalKryoFactory();
+    /**
+     * {@code codec.kryo.pooled} shares a pool of Kryo instances between the threads instead of one per thread, which
+     * suits many short-lived threads such as virtual threads.
+     */
+    private static final AbstractKryoFactory KRYO_FACTORY = Boolean.getBoolean("codec.kryo.pooled")
+            ? new PooledKryoFactory() : new ThreadLocalKryoFactory();
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     public static void setDefaultSerializer(final String serializerClazz) {
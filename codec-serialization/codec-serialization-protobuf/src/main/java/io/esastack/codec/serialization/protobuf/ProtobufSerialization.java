@@ -56,4 +56,9 @@ public class ProtobufSerialization implements Serialization {
     public DataInputStream deserialize(InputStream input) throws IOException {
         return new ProtobufDataInputStream(input);
     }
+
+    @Override
+    public boolean isStringEncodingContextFree() {
+        return true;
+    }
 }
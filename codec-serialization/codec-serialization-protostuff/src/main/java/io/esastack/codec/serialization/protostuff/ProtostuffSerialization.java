@@ -50,4 +50,9 @@ public class ProtostuffSerialization implements Serialization {
     public DataInputStream deserialize(InputStream input) throws IOException {
         return new ProtostuffDataInputStream(input);
     }
+
+    @Override
+    public boolean isStringEncodingContextFree() {
+        return true;
+    }
 }